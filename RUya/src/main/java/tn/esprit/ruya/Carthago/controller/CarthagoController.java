@@ -1,12 +1,26 @@
 package tn.esprit.ruya.Carthago.controller;
 
 import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import tn.esprit.ruya.Carthago.service.CarthagoImportService;
 import tn.esprit.ruya.Carthago.service.CarthagoService;
+import tn.esprit.ruya.Carthago.service.ClotureSessionService;
+import tn.esprit.ruya.Carthago.service.FichierEnvoiGenerator;
 import tn.esprit.ruya.models.Carthago;
+import tn.esprit.ruya.models.CarthagoFiltreDTO;
+import tn.esprit.ruya.models.CarthagoImportDTO;
+import tn.esprit.ruya.models.ClotureSessionDTO;
+import tn.esprit.ruya.models.CarthagoListeDTO;
+import tn.esprit.ruya.models.GenerationFichierDTO;
+import tn.esprit.ruya.models.PageDTO;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.Optional;
 
 @RestController
@@ -14,11 +28,39 @@ import java.util.Optional;
 @AllArgsConstructor
 public class CarthagoController {
 
+    private static final int TAILLE_PAGE_MAX = 500;
+
     private final CarthagoService carthagoService;
+    private final CarthagoImportService carthagoImportService;
+    private final ClotureSessionService clotureSessionService;
+    private final FichierEnvoiGenerator fichierEnvoiGenerator;
 
+    /**
+     * Liste paginée des chèques ; chaque filtre est optionnel.
+     */
     @GetMapping
-    public ResponseEntity<List<Carthago>> getAll() {
-        return ResponseEntity.ok(carthagoService.getAll());
+    public ResponseEntity<PageDTO<CarthagoListeDTO>> getAll(
+            @RequestParam(value = "sessionDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate sessionDate,
+            @RequestParam(value = "statutCheque", required = false) String statutCheque,
+            @RequestParam(value = "banqueEmettrice", required = false) String banqueEmettrice,
+            @RequestParam(value = "avantCTR", required = false) Boolean avantCTR,
+            @RequestParam(value = "apresCTR", required = false) Boolean apresCTR,
+            @RequestParam(value = "aVerifier", required = false) Boolean aVerifier,
+            @RequestParam(value = "montantMin", required = false) Double montantMin,
+            @RequestParam(value = "montantMax", required = false) Double montantMax,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "taille", defaultValue = "50") int taille) {
+        CarthagoFiltreDTO filtre = new CarthagoFiltreDTO();
+        filtre.setSessionDate(sessionDate);
+        filtre.setStatutCheque(statutCheque);
+        filtre.setBanqueEmettrice(banqueEmettrice);
+        filtre.setAvantCTR(avantCTR);
+        filtre.setApresCTR(apresCTR);
+        filtre.setAVerifier(aVerifier);
+        filtre.setMontantMin(montantMin);
+        filtre.setMontantMax(montantMax);
+        return ResponseEntity.ok(carthagoService.rechercher(filtre,
+                Math.max(0, page), Math.max(1, Math.min(taille, TAILLE_PAGE_MAX))));
     }
 
     @GetMapping("/{id}")
@@ -41,9 +83,81 @@ public class CarthagoController {
             return ResponseEntity.notFound().build();
     }
 
+    /**
+     * Change le statut d'image du chèque (1, 2 ou 3).
+     */
+    @PatchMapping("/{id}/statut-image")
+    public ResponseEntity<?> changerStatutImage(@PathVariable Long id, @RequestParam("statut") int statut) {
+        try {
+            Carthago modifie = carthagoService.changerStatutImage(id, statut);
+            if (modifie != null)
+                return ResponseEntity.ok(modifie);
+            else
+                return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> delete(@PathVariable Long id) {
         carthagoService.delete(id);
         return ResponseEntity.noContent().build();
     }
+
+    /**
+     * Charge les chèques d'une session depuis un extrait CSV (layout absent) ou à largeur fixe.
+     */
+    @PostMapping("/import")
+    public ResponseEntity<?> importer(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("session") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate session,
+            @RequestParam("idUser") Long idUser,
+            @RequestParam(value = "layout", required = false) String layout,
+            @RequestParam(value = "separateur", defaultValue = ";") char separateur) {
+        try (InputStream flux = file.getInputStream()) {
+            CarthagoImportDTO resultat = carthagoImportService.importer(flux, file.getOriginalFilename(),
+                    session, idUser, layout, separateur);
+            return ResponseEntity.ok(resultat);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            System.err.println("❌ Erreur lors de l'import CARTHAGO: " + e.getMessage());
+            return ResponseEntity.internalServerError().body("Erreur lors de la lecture du fichier");
+        }
+    }
+
+    /**
+     * Clôture la session : chèques avant CTR passés après CTR, CTR reçus ou en cours passés à TRAITE.
+     */
+    @PostMapping("/sessions/{date}/cloture")
+    public ResponseEntity<?> cloturerSession(@PathVariable("date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        try {
+            ClotureSessionDTO resultat = clotureSessionService.cloturer(date);
+            return ResponseEntity.ok(resultat);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            System.err.println("❌ Erreur lors de la clôture de la session " + date + ": " + e.getMessage());
+            return ResponseEntity.internalServerError().body("Erreur lors de la clôture de la session");
+        }
+    }
+
+    /**
+     * Génère le fichier d'envoi CTR de la session (chèques encore avant CTR).
+     */
+    @PostMapping("/envoi")
+    public ResponseEntity<?> genererFichierEnvoi(
+            @RequestParam("session") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate session,
+            @RequestParam(value = "layout", defaultValue = "carthago-envoi") String layout) {
+        try {
+            GenerationFichierDTO resultat = fichierEnvoiGenerator.generer(session, layout);
+            return ResponseEntity.ok(resultat);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            System.err.println("❌ Erreur lors de la génération du fichier d'envoi: " + e.getMessage());
+            return ResponseEntity.internalServerError().body("Erreur lors de la génération du fichier d'envoi");
+        }
+    }
 }
@@ -0,0 +1,357 @@
+package tn.esprit.ruya.Carthago.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tn.esprit.ruya.models.Carthago;
+import tn.esprit.ruya.models.CarthagoImportDTO;
+import tn.esprit.ruya.models.User;
+import tn.esprit.ruya.services.EquilibrageCtrService;
+import tn.esprit.ruya.traitement_fichier.layout.CompiledLayout;
+import tn.esprit.ruya.traitement_fichier.layout.DecodedRecord;
+import tn.esprit.ruya.traitement_fichier.layout.LayoutRegistry;
+import tn.esprit.ruya.traitement_fichier.parser.BlocLignes;
+import tn.esprit.ruya.traitement_fichier.parser.ParseLigneException;
+import tn.esprit.ruya.traitement_fichier.parser.StreamBlockReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Chargement en masse des chèques d'une session CARTHAGO depuis un extrait CSV (ligne d'en-tête avec les noms
+ * de champs) ou à largeur fixe (layout déclaré sous ruya.ingestion.layouts).
+ * Le flux est lu par blocs sans être chargé en mémoire ; les chèques sont persistés par lots : identifiants
+ * pris dans la séquence SEQ_CARTHAGO par plages, inserts groupés en batch JDBC, contexte vidé à chaque lot.
+ * Chaque chèque passe par le détecteur de remises en double avant d'être persisté, puis est compté
+ * dans les métriques d'images.
+ * Une ligne invalide (dont un statut d'image hors de 1 à 3) est rejetée et signalée, le reste de la session est chargé dans la même transaction ;
+ * un en-tête CSV ou un layout inutilisable annule tout l'import.
+ */
+@Service
+public class CarthagoImportService {
+
+    public static final String FORMAT_CSV = "CSV";
+    private static final int ERREURS_MAX = 100;
+
+    // champs reconnus dans l'extrait, en plus des champs obligatoires
+    private static final String NUMERO_CHEQUE = "numeroCheque";
+    private static final String BANQUE_EMETTRICE = "banqueEmettrice";
+    private static final String MONTANT = "montant";
+    private static final String STATUT_CHEQUE = "statutCheque";
+    private static final String STATUT_IMAGE = "statutImage";
+    private static final String CODE_VALEUR = "codeValeur";
+    private static final String COD_EN = "codEn";
+
+    private final LayoutRegistry layoutRegistry;
+    private final DetecteurDoublons detecteurDoublons;
+    private final MetriquesImages metriquesImages;
+    private final EquilibrageCtrService equilibrageCtrService;
+    private final int tailleLot;
+    private final int tailleBloc;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public CarthagoImportService(LayoutRegistry layoutRegistry,
+                                 DetecteurDoublons detecteurDoublons,
+                                 MetriquesImages metriquesImages,
+                                 EquilibrageCtrService equilibrageCtrService,
+                                 @Value("${ruya.carthago.import.taille-lot:500}") int tailleLot,
+                                 @Value("${ruya.ingestion.taille-bloc:1048576}") int tailleBloc) {
+        this.layoutRegistry = layoutRegistry;
+        this.detecteurDoublons = detecteurDoublons;
+        this.metriquesImages = metriquesImages;
+        this.equilibrageCtrService = equilibrageCtrService;
+        this.tailleLot = tailleLot;
+        this.tailleBloc = tailleBloc;
+    }
+
+    /**
+     * Importe les chèques du flux dans la session : avant CTR, pas encore après.
+     *
+     * @param layout nom du layout à largeur fixe, ou null pour un CSV
+     */
+    @Transactional
+    public CarthagoImportDTO importer(InputStream flux, String nomFichier, LocalDate session, Long idUser,
+                                      String layout, char separateur) throws IOException {
+        long debut = System.currentTimeMillis();
+        if (entityManager.find(User.class, idUser) == null) {
+            throw new IllegalArgumentException("Utilisateur introuvable : " + idUser);
+        }
+        Decodeur decodeur = layout == null || layout.isBlank()
+                ? new DecodeurCsv(separateur)
+                : new DecodeurLargeurFixe(layoutRegistry.getLayout(layout)
+                .orElseThrow(() -> new IllegalArgumentException("Layout inconnu : " + layout)));
+
+        CarthagoImportDTO resultat = new CarthagoImportDTO();
+        resultat.setNomFichier(nomFichier);
+        resultat.setFormat(decodeur.format());
+        resultat.setSessionDate(session);
+        Chargement chargement = new Chargement(nomFichier, session, idUser, resultat);
+
+        try (StreamBlockReader reader = new StreamBlockReader(flux, tailleBloc)) {
+            BlocLignes bloc;
+            while ((bloc = reader.next()) != null) {
+                long lignesPrecedentes = chargement.lignes;
+                chargement.lignes += bloc.parcourirLignes((buf, d, f, index) ->
+                        chargement.ligne(decodeur, buf, d, f, lignesPrecedentes + index + 1));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        equilibrageCtrService.signaler(session);
+
+        resultat.setLignesLues(chargement.lignes);
+        resultat.setChequesImportes(chargement.importes);
+        resultat.setLignesRejetees(chargement.rejetees);
+        resultat.setRemisesDouble(chargement.doubles);
+        resultat.setDureeMs(System.currentTimeMillis() - debut);
+        System.out.println("✅ Import CARTHAGO " + nomFichier + " : " + chargement.importes + " chèques, "
+                + chargement.rejetees + " lignes rejetées (" + resultat.getDureeMs() + " ms)");
+        return resultat;
+    }
+
+    /**
+     * État d'un import : compteurs et référence de l'utilisateur, renouvelée à chaque vidage du contexte.
+     */
+    private final class Chargement {
+        private final String nomFichier;
+        private final LocalDate session;
+        private final Long idUser;
+        private final CarthagoImportDTO resultat;
+        private User user;
+        private long lignes;
+        private long importes;
+        private long rejetees;
+        private long doubles;
+        private int enAttente;
+
+        private Chargement(String nomFichier, LocalDate session, Long idUser, CarthagoImportDTO resultat) {
+            this.nomFichier = nomFichier;
+            this.session = session;
+            this.idUser = idUser;
+            this.resultat = resultat;
+            this.user = entityManager.getReference(User.class, idUser);
+        }
+
+        private void ligne(Decodeur decodeur, ByteBuffer buf, int debut, int fin, long numero) {
+            Carthago c = nouveauCheque();
+            try {
+                if (!decodeur.remplir(buf, debut, fin, c)) {
+                    return;
+                }
+            } catch (ParseLigneException e) {
+                rejeter(numero, e.getRaison());
+                return;
+            } catch (NumberFormatException e) {
+                rejeter(numero, "valeur numérique invalide : " + e.getMessage());
+                return;
+            }
+            if (detecteurDoublons.marquer(c)) {
+                doubles++;
+            }
+            entityManager.persist(c);
+            detecteurDoublons.indexer(c);
+            metriquesImages.enregistrer(c);
+            importes++;
+            if (++enAttente >= tailleLot) {
+                entityManager.flush();
+                entityManager.clear();
+                user = entityManager.getReference(User.class, idUser);
+                enAttente = 0;
+            }
+        }
+
+        private void rejeter(long numero, String raison) {
+            rejetees++;
+            if (resultat.getErreurs().size() < ERREURS_MAX) {
+                resultat.getErreurs().add("ligne " + numero + " : " + raison);
+            }
+        }
+
+        private Carthago nouveauCheque() {
+            Carthago c = new Carthago();
+            c.setUser(user);
+            c.setNomFichier(nomFichier);
+            c.setTypeFichier("ELECTRONIQUE");
+            c.setNatureFichier("FICHIER");
+            c.setCodeValeur("AVANT_CTR");
+            c.setSens("ENTRANT");
+            c.setStatutCheque("PENDING");
+            c.setSessionDate(session);
+            c.setAvantCTR(true);
+            c.setApresCTR(false);
+            c.setTraiteParCTR(false);
+            return c;
+        }
+    }
+
+    /**
+     * Statut d'image validé comme par {@link CarthagoService#changerStatutImage} : une ligne hors plage est rejetée.
+     */
+    private static int statutImage(int statut) {
+        if (statut < 1 || statut > MetriquesImages.STATUT_BLOQUANT) {
+            throw new ParseLigneException("statut d'image invalide (1 à " + MetriquesImages.STATUT_BLOQUANT + ") : " + statut);
+        }
+        return statut;
+    }
+
+    private interface Decodeur {
+
+        String format();
+
+        /**
+         * Reporte les champs de la ligne sur le chèque.
+         *
+         * @return false si la ligne ne porte pas de chèque (en-tête, pied)
+         */
+        boolean remplir(ByteBuffer buf, int debut, int fin, Carthago c);
+    }
+
+    private static final class DecodeurLargeurFixe implements Decodeur {
+        private final CompiledLayout layout;
+        private final DecodedRecord record;
+        private final int numeroCheque;
+        private final int banqueEmettrice;
+        private final int montant;
+        private final int statutCheque;
+        private final int statutImage;
+        private final int codeValeur;
+        private final int codEn;
+
+        private DecodeurLargeurFixe(CompiledLayout layout) {
+            this.layout = layout;
+            this.record = layout.nouvelEnregistrement();
+            this.numeroCheque = layout.indexObligatoire(NUMERO_CHEQUE);
+            this.banqueEmettrice = layout.indexObligatoire(BANQUE_EMETTRICE);
+            this.montant = layout.indexObligatoire(MONTANT);
+            this.statutCheque = layout.indexDe(STATUT_CHEQUE);
+            this.statutImage = layout.indexDe(STATUT_IMAGE);
+            this.codeValeur = layout.indexDe(CODE_VALEUR);
+            this.codEn = layout.indexDe(COD_EN);
+        }
+
+        @Override
+        public String format() {
+            return layout.getNom();
+        }
+
+        @Override
+        public boolean remplir(ByteBuffer buf, int debut, int fin, Carthago c) {
+            if (layout.estHorsDonnees(buf, debut, fin)) {
+                return false;
+            }
+            layout.decoder(buf, debut, fin, record);
+            c.setNumeroCheque(record.getTexte(numeroCheque));
+            c.setBanqueEmettrice(record.getTexte(banqueEmettrice));
+            c.setMontant(record.getMontant(montant).doubleValue());
+            if (statutCheque >= 0) {
+                c.setStatutCheque(record.getTexte(statutCheque));
+            }
+            if (statutImage >= 0) {
+                c.setStatutImage(statutImage(record.getInt(statutImage)));
+            }
+            if (codeValeur >= 0) {
+                c.setCodeValeur(record.getTexte(codeValeur));
+            }
+            if (codEn >= 0) {
+                c.setCodEn(record.getTexte(codEn));
+            }
+            return true;
+        }
+    }
+
+    /**
+     * CSV simple : la première ligne nomme les colonnes (noms de champs, casse indifférente),
+     * les guillemets entourant une valeur sont retirés, le montant accepte la virgule décimale.
+     */
+    private static final class DecodeurCsv implements Decodeur {
+        private final Pattern separateur;
+        private Map<String, Integer> colonnes;
+
+        private DecodeurCsv(char separateur) {
+            this.separateur = Pattern.compile(Pattern.quote(String.valueOf(separateur)));
+        }
+
+        @Override
+        public String format() {
+            return FORMAT_CSV;
+        }
+
+        @Override
+        public boolean remplir(ByteBuffer buf, int debut, int fin, Carthago c) {
+            byte[] octets = new byte[fin - debut];
+            buf.get(debut, octets);
+            String[] valeurs = decouper(new String(octets, StandardCharsets.ISO_8859_1));
+            if (colonnes == null) {
+                lireEntete(valeurs);
+                return false;
+            }
+            c.setNumeroCheque(obligatoire(valeurs, NUMERO_CHEQUE));
+            c.setBanqueEmettrice(obligatoire(valeurs, BANQUE_EMETTRICE));
+            c.setMontant(Double.parseDouble(obligatoire(valeurs, MONTANT).replace(',', '.')));
+            String statutCheque = valeur(valeurs, STATUT_CHEQUE);
+            if (statutCheque != null) {
+                c.setStatutCheque(statutCheque);
+            }
+            String statutImage = valeur(valeurs, STATUT_IMAGE);
+            if (statutImage != null) {
+                c.setStatutImage(statutImage(Integer.parseInt(statutImage)));
+            }
+            String codeValeur = valeur(valeurs, CODE_VALEUR);
+            if (codeValeur != null) {
+                c.setCodeValeur(codeValeur);
+            }
+            c.setCodEn(valeur(valeurs, COD_EN));
+            return true;
+        }
+
+        private void lireEntete(String[] valeurs) {
+            colonnes = new HashMap<>();
+            for (int i = 0; i < valeurs.length; i++) {
+                colonnes.put(valeurs[i].toLowerCase(), i);
+            }
+            for (String champ : new String[]{NUMERO_CHEQUE, BANQUE_EMETTRICE, MONTANT}) {
+                if (!colonnes.containsKey(champ.toLowerCase())) {
+                    throw new IllegalArgumentException("Colonne obligatoire absente de l'en-tête CSV : " + champ);
+                }
+            }
+        }
+
+        private String obligatoire(String[] valeurs, String champ) {
+            String valeur = valeur(valeurs, champ);
+            if (valeur == null) {
+                throw new ParseLigneException("champ " + champ + " : valeur vide");
+            }
+            return valeur;
+        }
+
+        private String valeur(String[] valeurs, String champ) {
+            Integer index = colonnes.get(champ.toLowerCase());
+            if (index == null || index >= valeurs.length || valeurs[index].isEmpty()) {
+                return null;
+            }
+            return valeurs[index];
+        }
+
+        private String[] decouper(String ligne) {
+            String[] valeurs = separateur.split(ligne, -1);
+            for (int i = 0; i < valeurs.length; i++) {
+                String v = valeurs[i].trim();
+                if (v.length() >= 2 && v.charAt(0) == '"' && v.charAt(v.length() - 1) == '"') {
+                    v = v.substring(1, v.length() - 1).trim();
+                }
+                valeurs[i] = v;
+            }
+            return valeurs;
+        }
+    }
+}
@@ -1,11 +1,26 @@
 package tn.esprit.ruya.Carthago.service;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import tn.esprit.ruya.Carthago.repository.ICarthagoRepo;
 import tn.esprit.ruya.models.Carthago;
+import tn.esprit.ruya.models.CarthagoFiltreDTO;
+import tn.esprit.ruya.models.CarthagoListeDTO;
+import tn.esprit.ruya.models.PageDTO;
+import tn.esprit.ruya.services.EquilibrageCtrService;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -13,9 +28,75 @@ import java.util.Optional;
 public class CarthagoService {
 
     private final ICarthagoRepo carthagoRepo;
+    private final DetecteurDoublons detecteurDoublons;
+    private final MetriquesImages metriquesImages;
+    private final EquilibrageCtrService equilibrageCtrService;
 
-    public List<Carthago> getAll() {
-        return carthagoRepo.findAll();
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Page de la liste filtrée, triée par session décroissante puis ID_CARTHAGO.
+     * Projection directe sur CarthagoListeDTO : ni entité chargée, ni jointure sur l'utilisateur.
+     * Le comptage n'est lancé que si la page ne suffit pas à le déduire.
+     */
+    @Transactional(readOnly = true)
+    public PageDTO<CarthagoListeDTO> rechercher(CarthagoFiltreDTO filtre, int page, int taille) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<CarthagoListeDTO> requete = cb.createQuery(CarthagoListeDTO.class);
+        Root<Carthago> c = requete.from(Carthago.class);
+        requete.select(cb.construct(CarthagoListeDTO.class,
+                        c.get("id"), c.get("sessionDate"), c.get("numeroCheque"), c.get("banqueEmettrice"),
+                        c.get("montant"), c.get("statutCheque"), c.get("codeValeur"), c.get("nomFichier"),
+                        c.get("avantCTR"), c.get("apresCTR"), c.get("aVerifier"), c.get("statutImage"),
+                        c.get("user").get("id")))
+                .where(criteres(cb, c, filtre))
+                .orderBy(cb.desc(c.get("sessionDate")), cb.desc(c.get("id")));
+        List<CarthagoListeDTO> contenu = entityManager.createQuery(requete)
+                .setFirstResult(page * taille)
+                .setMaxResults(taille)
+                .getResultList();
+
+        long total;
+        if (contenu.size() < taille && (page == 0 || !contenu.isEmpty())) {
+            total = (long) page * taille + contenu.size();
+        } else {
+            CriteriaQuery<Long> comptage = cb.createQuery(Long.class);
+            Root<Carthago> cc = comptage.from(Carthago.class);
+            comptage.select(cb.count(cc)).where(criteres(cb, cc, filtre));
+            total = entityManager.createQuery(comptage).getSingleResult();
+        }
+        return new PageDTO<>(contenu, page, taille, total);
+    }
+
+    private static Predicate[] criteres(CriteriaBuilder cb, Root<Carthago> c, CarthagoFiltreDTO filtre) {
+        List<Predicate> predicats = new ArrayList<>();
+        if (filtre.getSessionDate() != null) {
+            predicats.add(cb.equal(c.get("sessionDate"), filtre.getSessionDate()));
+        }
+        if (filtre.getStatutCheque() != null) {
+            predicats.add(cb.equal(c.get("statutCheque"), filtre.getStatutCheque()));
+        }
+        if (filtre.getBanqueEmettrice() != null) {
+            predicats.add(cb.equal(c.get("banqueEmettrice"), filtre.getBanqueEmettrice()));
+        }
+        if (filtre.getAvantCTR() != null) {
+            predicats.add(cb.equal(c.get("avantCTR"), filtre.getAvantCTR()));
+        }
+        if (filtre.getApresCTR() != null) {
+            predicats.add(cb.equal(c.get("apresCTR"), filtre.getApresCTR()));
+        }
+        if (filtre.getAVerifier() != null) {
+            predicats.add(cb.equal(c.get("aVerifier"), filtre.getAVerifier()));
+        }
+        if (filtre.getMontantMin() != null) {
+            predicats.add(cb.ge(c.<Double>get("montant"), filtre.getMontantMin()));
+        }
+        if (filtre.getMontantMax() != null) {
+            predicats.add(cb.le(c.<Double>get("montant"), filtre.getMontantMax()));
+        }
+        return predicats.toArray(new Predicate[0]);
     }
 
     public Optional<Carthago> getById(Long id) {
@@ -23,7 +104,18 @@ public class CarthagoService {
     }
 
     public Carthago create(Carthago c) {
-        return carthagoRepo.save(c);
+        detecteurDoublons.marquer(c);
+        Carthago cree;
+        try {
+            cree = carthagoRepo.save(c);
+        } catch (RuntimeException e) {
+            detecteurDoublons.liberer(c);
+            throw e;
+        }
+        detecteurDoublons.indexer(cree);
+        metriquesImages.enregistrer(cree);
+        equilibrageCtrService.signaler(cree.getSessionDate());
+        return cree;
     }
 
     public Carthago update(Long id, Carthago newC) {
@@ -36,11 +128,42 @@ public class CarthagoService {
             c.setMontant(newC.getMontant());
             c.setNomber(newC.getNomber());
             c.setUser(newC.getUser());
-            return carthagoRepo.save(c);
+            Carthago modifie = carthagoRepo.save(c);
+            equilibrageCtrService.signaler(modifie.getSessionDate());
+            return modifie;
+        }).orElse(null);
+    }
+
+    /**
+     * Change le statut d'image (1, 2, 3) ; l'entrée et la sortie du statut 3 sont horodatées.
+     */
+    @Transactional
+    public Carthago changerStatutImage(Long id, int statut) {
+        if (statut < 1 || statut > MetriquesImages.STATUT_BLOQUANT) {
+            throw new IllegalArgumentException("Statut d'image invalide : " + statut);
+        }
+        return carthagoRepo.findById(id).map(c -> {
+            Integer ancien = c.getStatutImage();
+            if (Objects.equals(ancien, statut)) {
+                return c;
+            }
+            c.setStatutImage(statut);
+            if (statut == MetriquesImages.STATUT_BLOQUANT) {
+                c.setDateImageStatut3(LocalDateTime.now());
+                c.setDateResolutionImage(null);
+            } else if (Objects.equals(ancien, MetriquesImages.STATUT_BLOQUANT)) {
+                c.setDateResolutionImage(LocalDateTime.now());
+            }
+            Carthago modifie = carthagoRepo.save(c);
+            metriquesImages.changer(modifie, ancien);
+            return modifie;
         }).orElse(null);
     }
 
     public void delete(Long id) {
+        LocalDate session = carthagoRepo.findById(id).map(Carthago::getSessionDate).orElse(null);
         carthagoRepo.deleteById(id);
+        // signalée après la suppression : un recalcul entre les deux verrait encore le chèque
+        equilibrageCtrService.signaler(session);
     }
 }
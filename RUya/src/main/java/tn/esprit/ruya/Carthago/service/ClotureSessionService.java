@@ -0,0 +1,132 @@
+package tn.esprit.ruya.Carthago.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import tn.esprit.ruya.models.ClotureSessionDTO;
+import tn.esprit.ruya.services.EquilibrageCtrService;
+import tn.esprit.ruya.services.LatencesCtr;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Clôture d'une session : les chèques CARTHAGO encore avant CTR passent après CTR (traités par CTR, statut TRAITE)
+ * et les CTR reçus ou en cours de la session passent à TRAITE.
+ * Les transitions sont des UPDATE ensemblistes par tranches de ID (index SESSION_DATE, AVANT_CTR, ...,
+ * ID_CARTHAGO), validées tranche par tranche : la taille des transactions reste bornée et une clôture
+ * interrompue se termine en la relançant, les lignes déjà passées ne répondant plus au filtre.
+ * Aucun cache ne porte ces colonnes : compteurs du dashboard et liste CARTHAGO les relisent en base,
+ * et l'index des remises en double ne dépend pas du statut. Les latences CTR relisent les lignes clôturées
+ * par leur horodatage de traitement.
+ */
+@Service
+public class ClotureSessionService {
+
+    private static final String BORNES_CARTHAGO =
+            "SELECT MIN(ID_CARTHAGO), MAX(ID_CARTHAGO) FROM CARTHAGO WHERE SESSION_DATE = ? AND AVANT_CTR = 1";
+    private static final String CLOTURE_CARTHAGO =
+            "UPDATE CARTHAGO SET AVANT_CTR = 0, APRES_CTR = 1, TRAITE_PAR_CTR = 1, DATE_TRAITEMENT_CTR = ?, " +
+            "STATUT_CHEQUE = 'TRAITE', UPDATED_AT = ? " +
+            "WHERE SESSION_DATE = ? AND AVANT_CTR = 1 AND ID_CARTHAGO BETWEEN ? AND ? " +
+            "AND (STATUT_CHEQUE IS NULL OR STATUT_CHEQUE <> 'REJETE')";
+    private static final String RESTANTS_CARTHAGO =
+            "SELECT COUNT(*) FROM CARTHAGO WHERE SESSION_DATE = ? AND AVANT_CTR = 1";
+    private static final String BORNES_CTR =
+            "SELECT MIN(ID_CTR), MAX(ID_CTR) FROM CTR WHERE SESSION_CTR = ? AND STATUT_CTR IN ('RECU', 'EN_COURS')";
+    private static final String CLOTURE_CTR =
+            "UPDATE CTR SET STATUT_CTR = 'TRAITE', RECU_PAR_CTR = 1, DATE_TRAITEMENT = ?, UPDATED_AT = ?, VERSION = VERSION + 1 " +
+            "WHERE SESSION_CTR = ? AND STATUT_CTR IN ('RECU', 'EN_COURS') AND ID_CTR BETWEEN ? AND ?";
+
+    private static final DateTimeFormatter FORMAT_SESSION_CTR = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EquilibrageCtrService equilibrageCtrService;
+    private final LatencesCtr latencesCtr;
+    private final long tailleTranche;
+    private final Set<LocalDate> enCours = ConcurrentHashMap.newKeySet();
+
+    public ClotureSessionService(JdbcTemplate jdbcTemplate,
+                                 EquilibrageCtrService equilibrageCtrService,
+                                 LatencesCtr latencesCtr,
+                                 @Value("${ruya.cloture.taille-tranche:10000}") long tailleTranche) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.equilibrageCtrService = equilibrageCtrService;
+        this.latencesCtr = latencesCtr;
+        this.tailleTranche = tailleTranche;
+    }
+
+    /**
+     * @throws IllegalStateException si la même session est déjà en cours de clôture
+     */
+    public ClotureSessionDTO cloturer(LocalDate session) {
+        if (!enCours.add(session)) {
+            throw new IllegalStateException("Clôture de la session " + session + " déjà en cours");
+        }
+        try {
+            long debut = System.currentTimeMillis();
+            // à la microseconde, précision des colonnes : les lignes clôturées sont relues par cet horodatage
+            LocalDateTime maintenant = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+            Timestamp horodatage = Timestamp.valueOf(maintenant);
+            Date dateSession = Date.valueOf(session);
+            String sessionCtr = session.format(FORMAT_SESSION_CTR);
+
+            ClotureSessionDTO resultat = new ClotureSessionDTO();
+            resultat.setSessionDate(session);
+            resultat.setDateCloture(maintenant);
+            int[] tranches = {0};
+
+            resultat.setChequesTraites(parTranches(BORNES_CARTHAGO, dateSession, tranches,
+                    (min, max) -> jdbcTemplate.update(CLOTURE_CARTHAGO, horodatage, horodatage, dateSession, min, max)));
+            resultat.setChequesRestantsAvantCtr(jdbcTemplate.queryForObject(RESTANTS_CARTHAGO, Long.class, dateSession));
+            resultat.setCtrTraites(parTranches(BORNES_CTR, sessionCtr, tranches,
+                    (min, max) -> jdbcTemplate.update(CLOTURE_CTR, horodatage, horodatage, sessionCtr, min, max)));
+
+            // les chèques passés à TRAITE entrent dans les sources de l'équilibrage de la session
+            equilibrageCtrService.signaler(sessionCtr);
+            latencesCtr.enregistrerHorodatees(maintenant);
+
+            resultat.setTranches(tranches[0]);
+            resultat.setDureeMs(System.currentTimeMillis() - debut);
+            System.out.println("✅ Session " + session + " clôturée : " + resultat.getChequesTraites() + " chèques, "
+                    + resultat.getCtrTraites() + " CTR (" + resultat.getDureeMs() + " ms)");
+            return resultat;
+        } finally {
+            enCours.remove(session);
+        }
+    }
+
+    /**
+     * Applique la mise à jour sur [min, max] des identifiants concernés, par tranches de tailleTranche.
+     *
+     * @return le nombre total de lignes mises à jour
+     */
+    private long parTranches(String bornes, Object session, int[] tranches, MiseAJour miseAJour) {
+        long[] intervalle = jdbcTemplate.queryForObject(bornes, (rs, n) -> {
+            long min = rs.getLong(1);
+            return rs.wasNull() ? null : new long[]{min, rs.getLong(2)};
+        }, session);
+        if (intervalle == null) {
+            return 0;
+        }
+        long min = intervalle[0];
+        long max = intervalle[1];
+        long total = 0;
+        for (long debut = min; debut <= max; debut += tailleTranche) {
+            total += miseAJour.appliquer(debut, Math.min(debut + tailleTranche - 1, max));
+            tranches[0]++;
+        }
+        return total;
+    }
+
+    @FunctionalInterface
+    private interface MiseAJour {
+        int appliquer(long min, long max);
+    }
+}
@@ -0,0 +1,307 @@
+package tn.esprit.ruya.Carthago.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tn.esprit.ruya.Carthago.repository.ICarthagoRepo;
+import tn.esprit.ruya.models.Carthago;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Détection des remises en double sur (numeroCheque, banqueEmettrice, montant).
+ * Les chèques des sessions récentes sont indexés en mémoire par empreinte 64 bits, un index par session :
+ * la vérification d'un chèque ne coûte qu'une recherche par session retenue, sans requête.
+ * Seule une empreinte déjà connue déclenche une lecture du chèque d'origine par sa clé, hors verrou, qui écarte
+ * les collisions d'empreinte et les chèques d'une transaction annulée.
+ * Un chèque reconnu nouveau réserve son empreinte jusqu'à son indexation (jusqu'à la fin de la transaction
+ * en cours s'il y en a une) : un chèque identique soumis en même temps attend cette fin, puis est vu en double.
+ */
+@Component
+public class DetecteurDoublons {
+
+    private static final String SELECT_SESSIONS =
+            "SELECT ID_CARTHAGO, NUMERO_CHEQUE, BANQUE_EMETTRICE, MONTANT, SESSION_DATE FROM CARTHAGO " +
+            "WHERE SESSION_DATE >= ? ORDER BY ID_CARTHAGO";
+    // dimensionnement des index au rechargement
+    private static final String SELECT_TAILLES =
+            "SELECT SESSION_DATE, COUNT(*) FROM CARTHAGO WHERE SESSION_DATE >= ? GROUP BY SESSION_DATE";
+
+    private final ICarthagoRepo carthagoRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final int retentionJours;
+    private final int capaciteSession;
+    private final long attenteMaxNanos;
+
+    // index par date de session, des plus anciennes aux plus récentes (sous le verrou this)
+    private TreeMap<LocalDate, IndexEmpreintes> sessions = new TreeMap<>();
+    // empreintes des chèques vérifiés mais pas encore indexés, par thread titulaire (sous le verrou this)
+    private final Map<Long, Thread> reservees = new HashMap<>();
+    // indexations survenues pendant un rechargement, rejouées sur le nouvel index (sous le verrou this)
+    private List<Indexation> pendantChargement;
+
+    public DetecteurDoublons(ICarthagoRepo carthagoRepo,
+                             JdbcTemplate jdbcTemplate,
+                             @Value("${ruya.doublons.retention-jours:7}") int retentionJours,
+                             @Value("${ruya.doublons.capacite-session:100000}") int capaciteSession,
+                             @Value("${ruya.doublons.attente-max-ms:30000}") long attenteMaxMs) {
+        this.carthagoRepo = carthagoRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.retentionJours = retentionJours;
+        this.capaciteSession = capaciteSession;
+        this.attenteMaxNanos = TimeUnit.MILLISECONDS.toNanos(attenteMaxMs);
+    }
+
+    /**
+     * Reconstruit l'index des sessions retenues à partir de CARTHAGO. La lecture se fait hors verrou ;
+     * le nouvel index remplace l'ancien une fois complet, avec les indexations survenues entre-temps.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void charger() {
+        try {
+            long debut = System.currentTimeMillis();
+            LocalDate limite = limite();
+            synchronized (this) {
+                pendantChargement = new ArrayList<>();
+            }
+            TreeMap<LocalDate, IndexEmpreintes> charge = new TreeMap<>();
+            int[] charges = {0};
+            try {
+                // chaque index est dimensionné pour les chèques de sa session, au plus capacite-session
+                jdbcTemplate.query(SELECT_TAILLES, rs -> {
+                    charge.put(rs.getDate(1).toLocalDate(),
+                            new IndexEmpreintes((int) Math.min(rs.getLong(2), capaciteSession)));
+                }, Date.valueOf(limite));
+                jdbcTemplate.query(SELECT_SESSIONS, rs -> {
+                    double montant = rs.getDouble(4);
+                    if (!rs.wasNull()) {
+                        long id = rs.getLong(1);
+                        String numero = rs.getString(2);
+                        String banque = rs.getString(3);
+                        LocalDate session = rs.getDate(5).toLocalDate();
+                        if (numero != null && banque != null) {
+                            indexer(charge, limite, session, empreinte(numero, banque, montant), id);
+                            charges[0]++;
+                        }
+                    }
+                }, Date.valueOf(limite));
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    pendantChargement = null;
+                }
+                throw e;
+            }
+            int nombreSessions;
+            synchronized (this) {
+                for (Indexation indexation : pendantChargement) {
+                    indexer(charge, limite(), indexation.session(), indexation.empreinte(), indexation.id());
+                }
+                pendantChargement = null;
+                sessions = charge;
+                nombreSessions = charge.size();
+            }
+            System.out.println("✅ Index des remises en double : " + charges[0] + " chèques sur "
+                    + nombreSessions + " sessions (" + (System.currentTimeMillis() - debut) + " ms)");
+        } catch (RuntimeException e) {
+            System.err.println("❌ Chargement de l'index des remises en double impossible : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Positionne remiseDouble et referenceOriginale (ID_CARTHAGO du chèque d'origine) sur un chèque
+     * avant sa persistance. Un chèque reconnu nouveau garde son empreinte réservée jusqu'à {@link #indexer}
+     * (ou la fin de la transaction en cours) ; en cas d'échec hors transaction, l'appelant la rend par {@link #liberer}.
+     *
+     * @return true si le chèque est une remise en double
+     */
+    public boolean marquer(Carthago c) {
+        c.setRemiseDouble(false);
+        if (!indexable(c)) {
+            return false;
+        }
+        long empreinte = empreinte(c.getNumeroCheque(), c.getBanqueEmettrice(), c.getMontant());
+        long echeance = System.nanoTime() + attenteMaxNanos;
+        Set<Long> ecartes = new HashSet<>();
+        while (true) {
+            List<Long> candidats = new ArrayList<>();
+            synchronized (this) {
+                attendreReservation(empreinte, echeance);
+                for (IndexEmpreintes index : sessions.descendingMap().values()) {
+                    long idOrigine = index.chercher(empreinte);
+                    if (idOrigine != IndexEmpreintes.ABSENT && !Objects.equals(idOrigine, c.getId())
+                            && !ecartes.contains(idOrigine)) {
+                        candidats.add(idOrigine);
+                    }
+                }
+                if (candidats.isEmpty()) {
+                    reserver(empreinte);
+                    return false;
+                }
+            }
+            // lecture en base hors verrou ; l'index a pu changer entre-temps, d'où le nouveau passage
+            for (long idOrigine : candidats) {
+                if (confirmer(idOrigine, c)) {
+                    c.setRemiseDouble(true);
+                    c.setReferenceOriginale(String.valueOf(idOrigine));
+                    System.err.println("❌ Remise en double : chèque " + c.getNumeroCheque() + " / " + c.getBanqueEmettrice()
+                            + " déjà remis (ID_CARTHAGO " + idOrigine + ")");
+                    return true;
+                }
+                ecartes.add(idOrigine);
+            }
+        }
+    }
+
+    /**
+     * Ajoute un chèque persisté (identifiant attribué) à l'index de sa session.
+     * Une remise en double n'est pas indexée : l'empreinte reste associée au chèque d'origine.
+     * Hors transaction, la réservation posée par {@link #marquer} est rendue ici.
+     */
+    public void indexer(Carthago c) {
+        if (!indexable(c)) {
+            return;
+        }
+        long empreinte = empreinte(c.getNumeroCheque(), c.getBanqueEmettrice(), c.getMontant());
+        synchronized (this) {
+            if (c.getId() != null && !Boolean.TRUE.equals(c.getRemiseDouble())) {
+                LocalDate session = session(c);
+                indexer(sessions, limite(), session, empreinte, c.getId());
+                if (pendantChargement != null) {
+                    pendantChargement.add(new Indexation(session, empreinte, c.getId()));
+                }
+            }
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                rendre(empreinte);
+            }
+        }
+    }
+
+    /**
+     * Rend la réservation d'un chèque qui ne sera pas persisté (échec hors transaction).
+     */
+    public void liberer(Carthago c) {
+        if (indexable(c)) {
+            synchronized (this) {
+                rendre(empreinte(c.getNumeroCheque(), c.getBanqueEmettrice(), c.getMontant()));
+            }
+        }
+    }
+
+    /**
+     * Libère les index des sessions sorties de la période de rétention.
+     */
+    @Scheduled(cron = "${ruya.doublons.purge-cron:0 5 0 * * *}")
+    public synchronized void purger() {
+        sessions.headMap(limite()).clear();
+    }
+
+    private void indexer(TreeMap<LocalDate, IndexEmpreintes> cible, LocalDate limite, LocalDate session,
+                         long empreinte, long id) {
+        if (session.isBefore(limite)) {
+            return;
+        }
+        // une session apparue depuis le rechargement part d'un petit index, agrandi au besoin
+        cible.computeIfAbsent(session, s -> new IndexEmpreintes(0)).associer(empreinte, id);
+    }
+
+    /**
+     * Attend, sous le verrou, qu'une empreinte réservée par un autre thread soit rendue ; au-delà de l'échéance
+     * (titulaire bloqué dans une longue transaction), la réservation est ignorée.
+     */
+    private void attendreReservation(long empreinte, long echeance) {
+        Thread titulaire;
+        while ((titulaire = reservees.get(empreinte)) != null && titulaire != Thread.currentThread()) {
+            long reste = echeance - System.nanoTime();
+            if (reste <= 0) {
+                System.err.println("❌ Réservation de l'empreinte " + empreinte + " non rendue par " + titulaire.getName());
+                return;
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, reste);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // sous le verrou ; dans une transaction, toutes les réservations du thread sont rendues à sa fin
+    private void reserver(long empreinte) {
+        Thread courant = Thread.currentThread();
+        reservees.put(empreinte, courant);
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.hasResource(this)) {
+            TransactionSynchronizationManager.bindResource(this, courant);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResource(DetecteurDoublons.this);
+                    synchronized (DetecteurDoublons.this) {
+                        reservees.values().removeIf(titulaire -> titulaire == courant);
+                        DetecteurDoublons.this.notifyAll();
+                    }
+                }
+            });
+        }
+    }
+
+    // sous le verrou
+    private void rendre(long empreinte) {
+        if (reservees.get(empreinte) == Thread.currentThread()) {
+            reservees.remove(empreinte);
+            notifyAll();
+        }
+    }
+
+    private boolean confirmer(long idOrigine, Carthago c) {
+        return carthagoRepo.findById(idOrigine)
+                .filter(o -> c.getNumeroCheque().equals(o.getNumeroCheque())
+                        && c.getBanqueEmettrice().equals(o.getBanqueEmettrice())
+                        && o.getMontant() != null && millimes(o.getMontant()) == millimes(c.getMontant()))
+                .isPresent();
+    }
+
+    private LocalDate limite() {
+        return LocalDate.now().minusDays(retentionJours);
+    }
+
+    private static boolean indexable(Carthago c) {
+        return c.getNumeroCheque() != null && c.getBanqueEmettrice() != null && c.getMontant() != null;
+    }
+
+    private static LocalDate session(Carthago c) {
+        return c.getSessionDate() != null ? c.getSessionDate() : LocalDate.now();
+    }
+
+    private static long millimes(double montant) {
+        return Math.round(montant * 1000);
+    }
+
+    /**
+     * Empreinte FNV-1a 64 bits du numéro et de la banque, mélangée au montant en millimes ; jamais 0.
+     */
+    static long empreinte(String numeroCheque, String banque, double montant) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < numeroCheque.length(); i++) {
+            h = (h ^ numeroCheque.charAt(i)) * 0x100000001b3L;
+        }
+        h = (h ^ '|') * 0x100000001b3L;
+        for (int i = 0; i < banque.length(); i++) {
+            h = (h ^ banque.charAt(i)) * 0x100000001b3L;
+        }
+        h = (h ^ millimes(montant)) * 0x100000001b3L;
+        h ^= h >>> 29;
+        return h != 0 ? h : 1;
+    }
+
+    private record Indexation(LocalDate session, long empreinte, long id) {
+    }
+}
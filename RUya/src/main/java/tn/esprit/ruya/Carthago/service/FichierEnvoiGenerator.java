@@ -0,0 +1,251 @@
+package tn.esprit.ruya.Carthago.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import tn.esprit.ruya.models.GenerationFichierDTO;
+import tn.esprit.ruya.traitement_fichier.layout.CompiledLayout;
+import tn.esprit.ruya.traitement_fichier.layout.LayoutDescriptor;
+import tn.esprit.ruya.traitement_fichier.layout.LayoutRegistry;
+import tn.esprit.ruya.traitement_fichier.layout.TypeChamp;
+import tn.esprit.ruya.traitement_fichier.layout.ValeursLigne;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Génération des fichiers envoyés au CTR à partir de CARTHAGO.
+ * Les lignes d'une session sont lues par curseur (fetch size borné) et encodées selon un layout SORTANT
+ * directement dans un tampon NIO vidé vers le canal du fichier : la mémoire reste constante quel que soit
+ * le volume. Le fichier est écrit sous un nom temporaire puis renommé atomiquement, avec une ligne d'en-tête
+ * (préfixe, date de session, horodatage) et une ligne de pied (préfixe, nombre de lignes, total des montants).
+ */
+@Service
+public class FichierEnvoiGenerator {
+
+    // colonnes CARTHAGO exposées aux layouts de génération, par nom de champ
+    private static final Map<String, String> COLONNES = Map.ofEntries(
+            Map.entry("id", "ID_CARTHAGO"),
+            Map.entry("nomFichier", "NOM_FICHIER"),
+            Map.entry("typeFichier", "TYPE_FICHIER"),
+            Map.entry("natureFichier", "NATURE_FICHIER"),
+            Map.entry("codeValeur", "CODE_VALEUR"),
+            Map.entry("codEn", "COD_EN"),
+            Map.entry("sens", "SENS"),
+            Map.entry("montant", "MONTANT"),
+            Map.entry("nomber", "NOMBER"),
+            Map.entry("sessionDate", "SESSION_DATE"),
+            Map.entry("statutCheque", "STATUT_CHEQUE"),
+            Map.entry("numeroCheque", "NUMERO_CHEQUE"),
+            Map.entry("banqueEmettrice", "BANQUE_EMETTRICE"),
+            Map.entry("statutImage", "STATUT_IMAGE"),
+            Map.entry("codeEnv", "CODE_ENV"),
+            Map.entry("referenceOriginale", "REFERENCE_ORIGINALE"));
+
+    private static final DateTimeFormatter FORMAT_SESSION = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final DateTimeFormatter FORMAT_HORODATAGE = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final byte FIN_LIGNE = '\n';
+
+    private final LayoutRegistry layoutRegistry;
+    private final JdbcTemplate curseur;
+    private final Path repertoireEnvoi;
+    private final int tailleTampon;
+
+    public FichierEnvoiGenerator(LayoutRegistry layoutRegistry,
+                                 DataSource dataSource,
+                                 @Value("${ruya.generation.repertoire-envoi:${java.io.tmpdir}/ruya-envoi}") String repertoireEnvoi,
+                                 @Value("${ruya.generation.fetch-size:1000}") int fetchSize,
+                                 @Value("${ruya.generation.taille-tampon:262144}") int tailleTampon) {
+        this.layoutRegistry = layoutRegistry;
+        this.curseur = new JdbcTemplate(dataSource);
+        this.curseur.setFetchSize(fetchSize);
+        this.repertoireEnvoi = Paths.get(repertoireEnvoi);
+        this.tailleTampon = tailleTampon;
+    }
+
+    /**
+     * Génère le fichier des chèques de la session encore avant CTR.
+     *
+     * @throws IllegalArgumentException si le layout est inconnu, n'est pas SORTANT ou référence une colonne inconnue
+     */
+    public GenerationFichierDTO generer(LocalDate sessionDate, String nomLayout) throws IOException {
+        long debut = System.currentTimeMillis();
+        CompiledLayout layout = layoutSortant(nomLayout);
+        LayoutDescriptor descriptor = layout.getDescriptor();
+        String sql = requete(layout);
+        int indexMontant = layout.indexDe("montant");
+        if (indexMontant >= 0 && layout.getType(indexMontant) != TypeChamp.MONTANT) {
+            indexMontant = -1;
+        }
+
+        Files.createDirectories(repertoireEnvoi);
+        LocalDateTime maintenant = LocalDateTime.now();
+        String nomFichier = "CARTHAGO_" + sessionDate.format(FORMAT_SESSION) + "_" + maintenant.format(FORMAT_HORODATAGE) + ".dat";
+        // nom temporaire caché et suffixé .part : ignoré par la surveillance de réception
+        Path temporaire = Files.createTempFile(repertoireEnvoi, "." + nomFichier, ".part");
+        Path destination = repertoireEnvoi.resolve(nomFichier);
+
+        try (FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Ecriture ecriture = new Ecriture(canal, layout, indexMontant, Math.max(tailleTampon, layout.getLongueurMin() + 1));
+            ecriture.ligneBrute(descriptor.getPrefixeEntete() + sessionDate.format(FORMAT_SESSION) + maintenant.format(FORMAT_HORODATAGE));
+
+            curseur.query(sql, rs -> {
+                try {
+                    ecriture.ligne(rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, Date.valueOf(sessionDate));
+
+            int echelle = indexMontant >= 0 ? layout.getEchelle(indexMontant) : 0;
+            ecriture.ligneBrute(descriptor.getPrefixePied()
+                    + String.format("%010d", ecriture.nombre)
+                    + (ecriture.total < 0 ? "-" + String.format("%017d", -ecriture.total) : String.format("%018d", ecriture.total)));
+            ecriture.vider();
+            canal.force(true);
+
+            Files.move(temporaire, destination, StandardCopyOption.ATOMIC_MOVE);
+
+            GenerationFichierDTO dto = new GenerationFichierDTO();
+            dto.setNomFichier(nomFichier);
+            dto.setChemin(destination.toString());
+            dto.setLayout(layout.getNom());
+            dto.setSessionDate(sessionDate);
+            dto.setNombreLignes(ecriture.nombre);
+            dto.setMontantTotal(BigDecimal.valueOf(ecriture.total, echelle));
+            dto.setOctets(ecriture.octets);
+            dto.setDureeMs(System.currentTimeMillis() - debut);
+            return dto;
+        } finally {
+            Files.deleteIfExists(temporaire);
+        }
+    }
+
+    private CompiledLayout layoutSortant(String nomLayout) {
+        CompiledLayout layout = layoutRegistry.getLayout(nomLayout)
+                .orElseThrow(() -> new IllegalArgumentException("Layout inconnu : " + nomLayout));
+        LayoutDescriptor descriptor = layout.getDescriptor();
+        if (!descriptor.isSortant()) {
+            throw new IllegalArgumentException("Le layout " + nomLayout + " n'est pas un layout SORTANT");
+        }
+        if (descriptor.getPrefixeEntete() == null || descriptor.getPrefixePied() == null) {
+            throw new IllegalArgumentException("Le layout " + nomLayout + " doit déclarer entete et pied");
+        }
+        return layout;
+    }
+
+    /**
+     * SELECT des seules colonnes du layout, dans l'ordre de ses champs.
+     */
+    private static String requete(CompiledLayout layout) {
+        StringJoiner colonnes = new StringJoiner(", ");
+        layout.getDescriptor().getChamps().forEach(champ -> {
+            String colonne = COLONNES.get(champ.getNom());
+            if (colonne == null) {
+                throw new IllegalArgumentException("Champ sans colonne CARTHAGO : " + champ.getNom());
+            }
+            colonnes.add(colonne);
+        });
+        return "SELECT " + colonnes + " FROM CARTHAGO WHERE SESSION_DATE = ? AND AVANT_CTR = 1 ORDER BY ID_CARTHAGO";
+    }
+
+    /**
+     * État d'écriture d'un fichier : tampon, valeurs de la ligne courante et totaux du pied.
+     */
+    private static final class Ecriture {
+        private final FileChannel canal;
+        private final CompiledLayout layout;
+        private final int indexMontant;
+        private final ByteBuffer tampon;
+        private final ValeursLigne valeurs;
+        private long nombre;
+        private long total;
+        private long octets;
+
+        private Ecriture(FileChannel canal, CompiledLayout layout, int indexMontant, int tailleTampon) {
+            this.canal = canal;
+            this.layout = layout;
+            this.indexMontant = indexMontant;
+            this.tampon = ByteBuffer.allocateDirect(tailleTampon);
+            this.valeurs = layout.nouvellesValeurs();
+        }
+
+        private void ligne(ResultSet rs) throws SQLException, IOException {
+            for (int i = 0; i < layout.getNombreChamps(); i++) {
+                int colonne = i + 1;
+                switch (layout.getType(i)) {
+                    case ENTIER:
+                        long entier = rs.getLong(colonne);
+                        if (rs.wasNull()) {
+                            valeurs.setNul(i);
+                        } else {
+                            valeurs.setLong(i, entier);
+                        }
+                        break;
+                    case MONTANT:
+                        BigDecimal montant = rs.getBigDecimal(colonne);
+                        if (montant == null) {
+                            valeurs.setNul(i);
+                        } else {
+                            long nonMisALEchelle = montant.setScale(layout.getEchelle(i), RoundingMode.HALF_UP)
+                                    .unscaledValue().longValueExact();
+                            valeurs.setLong(i, nonMisALEchelle);
+                            if (i == indexMontant) {
+                                total = Math.addExact(total, nonMisALEchelle);
+                            }
+                        }
+                        break;
+                    case DATE:
+                        Date date = rs.getDate(colonne);
+                        if (date == null) {
+                            valeurs.setNul(i);
+                        } else {
+                            valeurs.setLong(i, date.toLocalDate().toEpochDay());
+                        }
+                        break;
+                    default:
+                        valeurs.setTexte(i, rs.getString(colonne));
+                }
+            }
+            reserver(layout.getLongueurMin() + 1);
+            layout.encoder(tampon, valeurs);
+            tampon.put(FIN_LIGNE);
+            nombre++;
+        }
+
+        private void ligneBrute(String contenu) throws IOException {
+            byte[] octetsLigne = contenu.getBytes(StandardCharsets.ISO_8859_1);
+            reserver(octetsLigne.length + 1);
+            tampon.put(octetsLigne).put(FIN_LIGNE);
+        }
+
+        private void reserver(int taille) throws IOException {
+            if (tampon.remaining() < taille) {
+                vider();
+            }
+        }
+
+        private void vider() throws IOException {
+            tampon.flip();
+            while (tampon.hasRemaining()) {
+                octets += canal.write(tampon);
+            }
+            tampon.clear();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package tn.esprit.ruya.Carthago.service;
+
+/**
+ * Table de hachage à adressage ouvert empreinte (long) → ID_CARTHAGO (long), sur deux tableaux primitifs :
+ * 16 octets par case, sans objet par entrée ; la table double quand elle dépasse 60 % d'occupation.
+ * L'empreinte 0 marque une case libre.
+ */
+final class IndexEmpreintes {
+
+    static final long ABSENT = -1L;
+    private static final double CHARGE_MAX = 0.6;
+
+    private long[] empreintes;
+    private long[] ids;
+    private int taille;
+
+    IndexEmpreintes(int capaciteInitiale) {
+        int capacite = Integer.highestOneBit(Math.max(16, (int) (capaciteInitiale / CHARGE_MAX)) - 1) << 1;
+        this.empreintes = new long[capacite];
+        this.ids = new long[capacite];
+    }
+
+    long chercher(long empreinte) {
+        int masque = empreintes.length - 1;
+        for (int i = indice(empreinte, masque); ; i = (i + 1) & masque) {
+            long e = empreintes[i];
+            if (e == empreinte) {
+                return ids[i];
+            }
+            if (e == 0) {
+                return ABSENT;
+            }
+        }
+    }
+
+    /**
+     * Associe l'empreinte à id, en remplaçant l'identifiant précédent éventuel.
+     */
+    void associer(long empreinte, long id) {
+        if (taille + 1 > empreintes.length * CHARGE_MAX) {
+            agrandir();
+        }
+        int masque = empreintes.length - 1;
+        for (int i = indice(empreinte, masque); ; i = (i + 1) & masque) {
+            long e = empreintes[i];
+            if (e == 0) {
+                empreintes[i] = empreinte;
+                ids[i] = id;
+                taille++;
+                return;
+            }
+            if (e == empreinte) {
+                ids[i] = id;
+                return;
+            }
+        }
+    }
+
+    private void agrandir() {
+        long[] anciennesEmpreintes = empreintes;
+        long[] anciensIds = ids;
+        empreintes = new long[anciennesEmpreintes.length << 1];
+        ids = new long[anciensIds.length << 1];
+        taille = 0;
+        for (int i = 0; i < anciennesEmpreintes.length; i++) {
+            if (anciennesEmpreintes[i] != 0) {
+                associer(anciennesEmpreintes[i], anciensIds[i]);
+            }
+        }
+    }
+
+    private static int indice(long empreinte, int masque) {
+        long h = empreinte * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & masque;
+    }
+}
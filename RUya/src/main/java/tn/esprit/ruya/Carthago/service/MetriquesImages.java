@@ -0,0 +1,293 @@
+package tn.esprit.ruya.Carthago.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tn.esprit.ruya.models.Carthago;
+import tn.esprit.ruya.models.ImagesMetriquesDTO;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Métriques du statut des images chèque (1, 2, 3) : comptes par heure de création, banque et statut,
+ * et distribution du temps de résolution des images en statut 3.
+ * <p>
+ * Les compteurs sont tenus en mémoire et mis à jour à chaque création, import ou changement de statut,
+ * après le commit pour une écriture transactionnelle : le dashboard les lit sans requête. Ils sont rechargés
+ * depuis CARTHAGO au démarrage puis recalés chaque heure, ce qui corrige les écritures faites hors application
+ * (générateur, SQL).
+ * Seules les retention-heures dernières heures sont tenues ; au-delà, le dashboard revient aux requêtes.
+ */
+@Component
+public class MetriquesImages {
+
+    public static final int STATUT_BLOQUANT = 3;
+
+    // bornes hautes des classes de temps de résolution (minutes) ; une dernière classe ouverte les suit
+    static final int[] BORNES_RESOLUTION = {5, 15, 30, 60, 120, 240, 480, 1440};
+
+    private static final String BANQUE_INCONNUE = "INCONNUE";
+
+    private static final String SELECT_COMPTES =
+            "SELECT TRUNC(CREATED_AT, 'HH24'), BANQUE_EMETTRICE, STATUT_IMAGE, COUNT(*) FROM CARTHAGO " +
+            "WHERE CREATED_AT >= ? AND STATUT_IMAGE IN (1, 2, 3) " +
+            "GROUP BY TRUNC(CREATED_AT, 'HH24'), BANQUE_EMETTRICE, STATUT_IMAGE";
+    private static final String SELECT_RESOLUTIONS =
+            "SELECT DATE_RESOLUTION_IMAGE, NVL(DATE_IMAGE_STATUT3, CREATED_AT) FROM CARTHAGO " +
+            "WHERE DATE_RESOLUTION_IMAGE >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int retentionHeures;
+
+    // heure de création → banque → comptes indexés par statut (1 à 3)
+    private TreeMap<LocalDateTime, Map<String, long[]>> comptes = new TreeMap<>();
+    // heure de résolution → effectifs par classe de BORNES_RESOLUTION
+    private TreeMap<LocalDateTime, long[]> resolutions = new TreeMap<>();
+    // événements reçus pendant un rechargement, rejoués sur les nouveaux compteurs (sous le verrou this)
+    private List<Evenement> pendantChargement;
+
+    public MetriquesImages(JdbcTemplate jdbcTemplate,
+                           @Value("${ruya.images.retention-heures:72}") int retentionHeures) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retentionHeures = retentionHeures;
+    }
+
+    /**
+     * Reconstruit les compteurs depuis CARTHAGO et libère les heures sorties de la rétention.
+     * Les requêtes s'exécutent hors verrou ; les nouveaux compteurs remplacent les anciens une fois complets,
+     * avec les événements reçus entre-temps.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${ruya.images.recalage-cron:0 0 * * * *}")
+    public void charger() {
+        try {
+            long debut = System.currentTimeMillis();
+            Timestamp limite = Timestamp.valueOf(limite());
+            TreeMap<LocalDateTime, Map<String, long[]>> nouveauxComptes = new TreeMap<>();
+            TreeMap<LocalDateTime, long[]> nouvellesResolutions = new TreeMap<>();
+            synchronized (this) {
+                pendantChargement = new ArrayList<>();
+            }
+            try {
+                jdbcTemplate.query(SELECT_COMPTES, rs -> {
+                    compteur(nouveauxComptes, rs.getTimestamp(1).toLocalDateTime(), rs.getString(2))
+                            [rs.getInt(3)] += rs.getLong(4);
+                }, limite);
+                jdbcTemplate.query(SELECT_RESOLUTIONS, rs -> {
+                    Timestamp entree = rs.getTimestamp(2);
+                    if (entree != null) {
+                        resoudre(nouvellesResolutions, entree.toLocalDateTime(), rs.getTimestamp(1).toLocalDateTime());
+                    }
+                }, limite);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    pendantChargement = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                for (Evenement evenement : pendantChargement) {
+                    appliquer(evenement, nouveauxComptes, nouvellesResolutions);
+                }
+                pendantChargement = null;
+                comptes = nouveauxComptes;
+                resolutions = nouvellesResolutions;
+            }
+            System.out.println("✅ Métriques des images rechargées : " + nouveauxComptes.size() + " heures ("
+                    + (System.currentTimeMillis() - debut) + " ms)");
+        } catch (RuntimeException e) {
+            System.err.println("❌ Chargement des métriques des images impossible : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Compte un chèque persisté (createdAt attribué).
+     */
+    public void enregistrer(Carthago c) {
+        recevoir(new Evenement(c.getCreatedAt(), c.getBanqueEmettrice(), null, c.getStatutImage(), null, null));
+    }
+
+    /**
+     * Reporte un changement de statut d'image ; une sortie du statut 3 alimente la distribution de résolution.
+     */
+    public void changer(Carthago c, Integer ancienStatut) {
+        recevoir(new Evenement(c.getCreatedAt(), c.getBanqueEmettrice(), ancienStatut, c.getStatutImage(),
+                c.getDateImageStatut3(), c.getDateResolutionImage()));
+    }
+
+    /**
+     * Les compteurs couvrent-ils une période commençant à debut ?
+     */
+    public boolean couvre(LocalDateTime debut) {
+        return !heure(debut).isBefore(limite());
+    }
+
+    /**
+     * Comptes des chèques créés entre debut et fin (heures entamées comprises), et résolutions survenues
+     * sur la même période.
+     */
+    public synchronized ImagesMetriquesDTO instantane(LocalDateTime debut, LocalDateTime fin) {
+        ImagesMetriquesDTO dto = new ImagesMetriquesDTO();
+        dto.setDebut(debut);
+        dto.setFin(fin);
+
+        long[] totaux = new long[STATUT_BLOQUANT + 1];
+        List<ImagesMetriquesDTO.LigneHeure> lignes = new ArrayList<>();
+        for (Map.Entry<LocalDateTime, Map<String, long[]>> h : comptes.subMap(heure(debut), true, fin, true).entrySet()) {
+            for (Map.Entry<String, long[]> b : h.getValue().entrySet()) {
+                long[] compte = b.getValue();
+                if (compte[1] + compte[2] + compte[3] == 0) {
+                    continue;
+                }
+                for (int statut = 1; statut <= STATUT_BLOQUANT; statut++) {
+                    totaux[statut] += compte[statut];
+                }
+                if (compte[STATUT_BLOQUANT] > 0 && dto.getPlusAncienStatut3() == null) {
+                    dto.setPlusAncienStatut3(h.getKey());
+                }
+                lignes.add(new ImagesMetriquesDTO.LigneHeure(h.getKey(), b.getKey(), compte[1], compte[2], compte[3]));
+            }
+        }
+        dto.setStatut1(totaux[1]);
+        dto.setStatut2(totaux[2]);
+        dto.setStatut3(totaux[3]);
+        dto.setParHeure(lignes);
+
+        long[] effectifs = new long[BORNES_RESOLUTION.length + 1];
+        for (long[] classes : resolutions.subMap(heure(debut), true, fin, true).values()) {
+            for (int i = 0; i < effectifs.length; i++) {
+                effectifs[i] += classes[i];
+            }
+        }
+        long total = Arrays.stream(effectifs).sum();
+        dto.setBornesResolutionMinutes(Arrays.stream(BORNES_RESOLUTION).boxed().toList());
+        dto.setEffectifsResolution(Arrays.stream(effectifs).boxed().toList());
+        dto.setNombreResolutions(total);
+        dto.setMedianeResolutionMinutes(quantile(effectifs, total, 0.5));
+        dto.setP90ResolutionMinutes(quantile(effectifs, total, 0.9));
+        return dto;
+    }
+
+    /**
+     * Borne haute de la classe contenant le quantile ; pour la classe ouverte, la dernière borne.
+     */
+    private static Integer quantile(long[] effectifs, long total, double q) {
+        if (total == 0) {
+            return null;
+        }
+        long rang = (long) Math.ceil(q * total);
+        long cumul = 0;
+        for (int i = 0; i < BORNES_RESOLUTION.length; i++) {
+            cumul += effectifs[i];
+            if (cumul >= rang) {
+                return BORNES_RESOLUTION[i];
+            }
+        }
+        return BORNES_RESOLUTION[BORNES_RESOLUTION.length - 1];
+    }
+
+    /**
+     * Applique l'événement, après le commit de la transaction en cours s'il y en a une : un import ou un
+     * changement de statut annulé ne laisse rien dans les compteurs. Les événements d'une même transaction
+     * (un import entier) sont appliqués ensemble, sous une seule prise du verrou.
+     */
+    @SuppressWarnings("unchecked")
+    private void recevoir(Evenement evenement) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            compter(List.of(evenement));
+            return;
+        }
+        List<Evenement> enAttente = (List<Evenement>) TransactionSynchronizationManager.getResource(this);
+        if (enAttente == null) {
+            List<Evenement> evenements = new ArrayList<>();
+            enAttente = evenements;
+            TransactionSynchronizationManager.bindResource(this, evenements);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    compter(evenements);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(MetriquesImages.this);
+                }
+            });
+        }
+        enAttente.add(evenement);
+    }
+
+    private synchronized void compter(List<Evenement> evenements) {
+        for (Evenement evenement : evenements) {
+            appliquer(evenement, comptes, resolutions);
+        }
+        if (pendantChargement != null) {
+            pendantChargement.addAll(evenements);
+        }
+    }
+
+    private void appliquer(Evenement e, TreeMap<LocalDateTime, Map<String, long[]>> cibleComptes,
+                           TreeMap<LocalDateTime, long[]> cibleResolutions) {
+        if (suivi(e.createdAt(), e.ancienStatut())) {
+            long[] compte = compteur(cibleComptes, heure(e.createdAt()), e.banque());
+            compte[e.ancienStatut()] = Math.max(0, compte[e.ancienStatut()] - 1);
+        }
+        if (suivi(e.createdAt(), e.statut())) {
+            compteur(cibleComptes, heure(e.createdAt()), e.banque())[e.statut()]++;
+        }
+        if (e.ancienStatut() != null && e.ancienStatut() == STATUT_BLOQUANT && e.dateResolution() != null) {
+            LocalDateTime entree = e.dateStatut3() != null ? e.dateStatut3() : e.createdAt();
+            if (entree != null && !e.dateResolution().isBefore(limite())) {
+                resoudre(cibleResolutions, entree, e.dateResolution());
+            }
+        }
+    }
+
+    private void resoudre(TreeMap<LocalDateTime, long[]> cible, LocalDateTime entree, LocalDateTime resolution) {
+        long minutes = Math.max(0, Duration.between(entree, resolution).toMinutes());
+        int classe = 0;
+        while (classe < BORNES_RESOLUTION.length && minutes > BORNES_RESOLUTION[classe]) {
+            classe++;
+        }
+        cible.computeIfAbsent(heure(resolution), h -> new long[BORNES_RESOLUTION.length + 1])[classe]++;
+    }
+
+    private boolean suivi(LocalDateTime createdAt, Integer statut) {
+        return statut != null && statut >= 1 && statut <= STATUT_BLOQUANT
+                && createdAt != null && !createdAt.isBefore(limite());
+    }
+
+    private static long[] compteur(TreeMap<LocalDateTime, Map<String, long[]>> cible, LocalDateTime heure, String banque) {
+        return cible.computeIfAbsent(heure, h -> new HashMap<>())
+                .computeIfAbsent(banque != null ? banque : BANQUE_INCONNUE, b -> new long[STATUT_BLOQUANT + 1]);
+    }
+
+    private LocalDateTime limite() {
+        return heure(LocalDateTime.now()).minusHours(retentionHeures);
+    }
+
+    private static LocalDateTime heure(LocalDateTime instant) {
+        return instant.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    /**
+     * Création (ancienStatut null) ou changement de statut d'un chèque, tel que reçu.
+     */
+    private record Evenement(LocalDateTime createdAt, String banque, Integer ancienStatut, Integer statut,
+                             LocalDateTime dateStatut3, LocalDateTime dateResolution) {
+    }
+}
@@ -1,9 +1,12 @@
 package tn.esprit.ruya.Fichier.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import tn.esprit.ruya.models.Fichier;
 
+import java.util.Collection;
 import java.util.List;
 
 
@@ -12,4 +15,8 @@ public interface IFichierrepo extends JpaRepository<Fichier, Long> {
 
     List<Fichier> findByUserId(Long userId);
 
+    // Identifiants seuls (id, nomFichier, codeValeur), sans charger l'utilisateur EAGER
+    @Query("SELECT f.id, f.nomFichier, f.codeValeur FROM Fichier f WHERE f.nomFichier IN :noms")
+    List<Object[]> findIdentifiantsByNomFichierIn(@Param("noms") Collection<String> noms);
+
 }
@@ -0,0 +1,121 @@
+package tn.esprit.ruya.Fichier.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tn.esprit.ruya.Fichier.repository.IFichierrepo;
+
+import java.util.*;
+
+/**
+ * Cache borné (LRU) des identifiants de FICHIERS par (nomFichier, codeValeur).
+ * Une ingestion le préchauffe avec les noms distincts de son fichier, en une requête,
+ * puis résout chaque ligne sur une table figée, sans aller-retour base par ligne.
+ * Toute écriture dans FICHIERS invalide le cache après son commit ; une lecture commencée avant
+ * l'invalidation n'est pas remise en cache (compteur de génération).
+ */
+@Component
+public class FichierLookupCache {
+
+    // limite Oracle du nombre d'éléments dans une clause IN
+    private static final int TAILLE_IN = 1000;
+
+    private final IFichierrepo fichierRepo;
+    private final Map<String, Map<String, Long>> idsParNom;
+    private long generation; // sous le verrou idsParNom
+
+    public FichierLookupCache(IFichierrepo fichierRepo,
+                              @Value("${ruya.ingestion.cache-fichiers:10000}") int capacite) {
+        this.fichierRepo = fichierRepo;
+        this.idsParNom = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, Long>> eldest) {
+                return size() > capacite;
+            }
+        };
+    }
+
+    /**
+     * Charge en cache les fichiers portant l'un des noms donnés (une requête par tranche de 1000 noms
+     * absents du cache) et renvoie une table de résolution dédiée à ces noms.
+     */
+    public Resolution prechauffer(Collection<String> noms) {
+        Map<String, Map<String, Long>> table = new HashMap<>();
+        List<String> manquants = new ArrayList<>();
+        long generationLue;
+        synchronized (idsParNom) {
+            generationLue = generation;
+            for (String nom : noms) {
+                Map<String, Long> parCode = idsParNom.get(nom);
+                if (parCode != null) {
+                    table.put(nom, parCode);
+                } else {
+                    manquants.add(nom);
+                }
+            }
+        }
+
+        for (int i = 0; i < manquants.size(); i += TAILLE_IN) {
+            List<String> tranche = manquants.subList(i, Math.min(i + TAILLE_IN, manquants.size()));
+            Map<String, Map<String, Long>> charges = new HashMap<>();
+            for (Object[] ligne : fichierRepo.findIdentifiantsByNomFichierIn(tranche)) {
+                String code = ligne[2] != null ? ligne[2].toString() : "";
+                charges.computeIfAbsent((String) ligne[1], n -> new HashMap<>())
+                        .putIfAbsent(code, ((Number) ligne[0]).longValue());
+            }
+            synchronized (idsParNom) {
+                // invalidé pendant la requête : les lignes lues peuvent précéder l'écriture, on ne les garde pas
+                if (generation == generationLue) {
+                    charges.forEach((nom, parCode) -> idsParNom.put(nom, Collections.unmodifiableMap(parCode)));
+                }
+            }
+            table.putAll(charges);
+        }
+        return new Resolution(table);
+    }
+
+    /**
+     * Vide le cache au commit de la transaction en cours (immédiatement hors transaction),
+     * pour qu'aucune lecture ne le recharge avec l'état précédant l'écriture.
+     */
+    public void invalider() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    vider();
+                }
+            });
+        } else {
+            vider();
+        }
+    }
+
+    private void vider() {
+        synchronized (idsParNom) {
+            idsParNom.clear();
+            generation++;
+        }
+    }
+
+    /**
+     * Table de résolution en lecture seule, partageable entre threads d'analyse.
+     */
+    public static final class Resolution {
+
+        private final Map<String, Map<String, Long>> table;
+
+        private Resolution(Map<String, Map<String, Long>> table) {
+            this.table = table;
+        }
+
+        /**
+         * @return l'identifiant du fichier, ou null s'il n'existe pas dans FICHIERS
+         */
+        public Long resoudre(String nomFichier, String codeValeur) {
+            Map<String, Long> parCode = table.get(nomFichier);
+            return parCode != null ? parCode.get(codeValeur != null ? codeValeur : "") : null;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import tn.esprit.ruya.models.Fichier;
 import tn.esprit.ruya.models.User;
 import tn.esprit.ruya.user.repository.IUserRepo;
 import tn.esprit.ruya.notification.service.NotificationService;
+import tn.esprit.ruya.services.EquilibrageCtrService;
 import org.springframework.stereotype.Service;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -27,6 +28,8 @@ public class FichierServ implements IFichierser {
     private IFichierrepo fichierRepo;
     private IUserRepo userRepository;
     private NotificationService notificationService;
+    private FichierLookupCache fichierLookupCache;
+    private EquilibrageCtrService equilibrageCtrService;
 
     @PersistenceContext
     private EntityManager entityManager;
@@ -94,6 +97,8 @@ public class FichierServ implements IFichierser {
             
             Fichier savedFichier = fichierRepo.save(fichier);
             System.out.println("🔍 DEBUG - Fichier sauvegardé avec succès: " + savedFichier.getNomFichier());
+            fichierLookupCache.invalider();
+            equilibrageCtrService.signaler(savedFichier.getSessionId());
             
             // Créer automatiquement une notification pour l'ajout du fichier
             try {
@@ -136,7 +141,10 @@ public class FichierServ implements IFichierser {
                 if (updatedFichier.getSens() != null) {
                     fichier.setSens(updatedFichier.getSens());
                 }
-                return fichierRepo.save(fichier);
+                Fichier savedFichier = fichierRepo.save(fichier);
+                fichierLookupCache.invalider();
+                equilibrageCtrService.signaler(savedFichier.getSessionId());
+                return savedFichier;
             }).orElseThrow(() -> new RuntimeException("Fichier non trouvé avec l'ID : " + id));
         } catch (Exception e) {
             System.err.println("❌ Erreur lors de la mise à jour du fichier: " + e.getMessage());
@@ -147,10 +155,11 @@ public class FichierServ implements IFichierser {
     @Override
     public void deleteFichier(Long id) {
         try {
-            if (!fichierRepo.existsById(id)) {
-                throw new RuntimeException("Fichier non trouvé avec l'ID : " + id);
-            }
+            Fichier fichier = fichierRepo.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Fichier non trouvé avec l'ID : " + id));
             fichierRepo.deleteById(id);
+            fichierLookupCache.invalider();
+            equilibrageCtrService.signaler(fichier.getSessionId());
             System.out.println("✅ Fichier supprimé avec succès: " + id);
         } catch (Exception e) {
             System.err.println("❌ Erreur lors de la suppression du fichier: " + e.getMessage());
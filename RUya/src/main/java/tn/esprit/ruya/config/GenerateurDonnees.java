@@ -0,0 +1,406 @@
+package tn.esprit.ruya.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import tn.esprit.ruya.models.Carthago;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Générateur de données FICHIERS, CARTHAGO, CTR et NOTIFICATIONS, aux répartitions filtrées par le dashboard
+ * (jours, types, codes valeur, statuts, drapeaux CTR). Par défaut, un petit jeu de démonstration ;
+ * le profil loadgen (application-loadgen.properties) produit des millions de lignes pour les mesures.
+ * <p>
+ * Les lignes sont écrites en batch JDBC par tranches parallèles. Chaque tranche tire ses valeurs d'un
+ * générateur dérivé de (graine, table, numéro de tranche) : le même paramétrage produit les mêmes données,
+ * quel que soit l'ordre d'exécution des threads. Une table déjà alimentée n'est pas regénérée.
+ */
+@Component
+public class GenerateurDonnees implements CommandLineRunner {
+
+    private static final String INSERT_FICHIER =
+            "INSERT INTO FICHIERS (ID_USER, NOM_FICHIER, TYPE_FICHIER, NATURE_FICHIER, CODE_VALEUR, COD_EN, SENS, " +
+            "MONTANT, NOMBER, CREATED_AT, STATUT_REMISE, ORIGINE_SAISIE, VALIDATION_BO, DATE_VALIDATION, " +
+            "GENERE_PAR_ENCAISSE, NUMERO_REMISE, TYPE_ENCAISSEMENT, SESSION_ID) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_CARTHAGO =
+            "INSERT INTO CARTHAGO (ID_CARTHAGO, ID_USER, NOM_FICHIER, TYPE_FICHIER, NATURE_FICHIER, CODE_VALEUR, " +
+            "COD_EN, SENS, MONTANT, NOMBER, CREATED_AT, SESSION_DATE, STATUT_CHEQUE, NUMERO_CHEQUE, " +
+            "BANQUE_EMETTRICE, AVANT_CTR, APRES_CTR, STATUT_IMAGE, TRAITE_PAR_CTR, DATE_TRAITEMENT_CTR, " +
+            "VALIDE_BO_DINARS, CHEQUE_WEB_BO, REMISE_DOUBLE, FICHIER_ENV, A_VERIFIER, CONTROLE_EFFECTUE) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_CTR =
+            "INSERT INTO CTR (ID_USER, NUMERO_CTR, TYPE_OPERATION, STATUT_CTR, CODE_VALEUR, MONTANT, NOMBRE_ELEMENTS, " +
+            "NOMBRE_CARTHAGO, NOMBRE_FICHIERS, MONTANT_CARTHAGO, MONTANT_FICHIERS, EQUILIBRE, DIFFERENCE, " +
+            "GENERE_VERS_CTR, RECU_PAR_CTR, DATE_GENERATION, DATE_RECEPTION, REMISE_DOUBLE, REMISE_NON_PARVENUE, " +
+            "CHEQUE_ELECTRONIQUE_CTR, FICHIER_ENV_CTR, SESSION_CTR, OPERATEUR_CTR, CREATED_AT, DATE_TRAITEMENT, VERSION) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+    private static final String INSERT_NOTIFICATION =
+            "INSERT INTO NOTIFICATIONS (TYPE, TITRE, MESSAGE, ID_USER_ACTION, TIMESTAMP, ICON) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    // chaque notification générée à chaque utilisateur, lue à 60 % (tirage stable par couple)
+    private static final String DISTRIBUER_NOTIFICATIONS =
+            "INSERT INTO NOTIFICATION_DESTINATAIRES (ID_NOTIFICATION, ID_USER, LU, TIMESTAMP) " +
+            "SELECT n.ID_NOTIFICATION, u.ID, CASE WHEN ORA_HASH(n.ID_NOTIFICATION * 31 + u.ID, 99) < 60 THEN 1 ELSE 0 END, " +
+            "n.TIMESTAMP FROM NOTIFICATIONS n CROSS JOIN USERS u " +
+            "WHERE NOT EXISTS (SELECT 1 FROM NOTIFICATION_DESTINATAIRES d WHERE d.ID_NOTIFICATION = n.ID_NOTIFICATION)";
+
+    private static final DateTimeFormatter FORMAT_JOUR = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String[] BANQUES = {"01", "03", "04", "05", "07", "08", "10", "11", "12", "14",
+            "16", "17", "20", "23", "25", "26", "28", "32"};
+
+    // === RÉPARTITIONS (valeurs pondérées) ===
+    private static final Repartition TYPES_FICHIER = new Repartition(
+            new String[]{"WEB", "ELECTRONIQUE", "MANUEL", "EN_SAISIE"}, new int[]{30, 40, 25, 5});
+    private static final Repartition NATURES_FICHIER = new Repartition(
+            new String[]{"REMISE", "FICHIER"}, new int[]{60, 40});
+    private static final Repartition CODES_FICHIER = new Repartition(
+            new String[]{"BO_VALIDE", "AVANT_CTR", "APRES_CTR", "CTR"}, new int[]{35, 25, 25, 15});
+    private static final Repartition STATUTS_REMISE = new Repartition(
+            new String[]{"CREE", "VALIDE", "TRAITE", "EN_COURS", "REFUSE"}, new int[]{15, 35, 35, 10, 5});
+    private static final Repartition ORIGINES_SAISIE = new Repartition(
+            new String[]{"WEB", "AGENCE", "BATCH"}, new int[]{35, 40, 25});
+    private static final Repartition TYPES_CHEQUE = new Repartition(
+            new String[]{"ELECTRONIQUE", "MANUEL", "WEB"}, new int[]{60, 25, 15});
+    private static final Repartition NATURES_CHEQUE = new Repartition(
+            new String[]{"FICHIER", "REMISE"}, new int[]{70, 30});
+    private static final Repartition CODES_CHEQUE = new Repartition(
+            new String[]{"CTR_RECU", "BO_DINARS", "AVANT_CTR", "APRES_CTR", "DOUBLE", "NON_PARVENU", "A_VERIFIER", "TRAITE"},
+            new int[]{15, 10, 20, 20, 1, 2, 3, 29});
+    private static final Repartition STATUTS_CHEQUE = new Repartition(
+            new String[]{"TRAITE", "EN_COURS", "PENDING", "REJETE"}, new int[]{55, 20, 20, 5});
+    private static final Repartition STATUTS_IMAGE = new Repartition(
+            new String[]{"1", "2", "3"}, new int[]{70, 25, 5});
+    private static final Repartition OPERATIONS_CTR = new Repartition(
+            new String[]{"ENVOI", "RECEPTION", "TRAITEMENT"}, new int[]{40, 35, 25});
+    private static final Repartition STATUTS_CTR = new Repartition(
+            new String[]{"RECU", "EN_COURS", "TRAITE", "EQUILIBRE", "FAUX"}, new int[]{20, 15, 30, 30, 5});
+    private static final Repartition CODES_CTR = new Repartition(
+            new String[]{"CTR", "ENV", "DOUBLE"}, new int[]{80, 18, 2});
+    private static final Repartition TYPES_NOTIFICATION = new Repartition(
+            new String[]{"AJOUT", "ENVOI", "RECEPTION"}, new int[]{50, 25, 25});
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean actif;
+    private final int nombreFichiers;
+    private final int nombreCarthago;
+    private final int nombreCtr;
+    private final int nombreNotifications;
+    private final int jours;
+    private final LocalDate dateFin;
+    private final long graine;
+    private final int threads;
+    private final int tailleLot;
+
+    public GenerateurDonnees(JdbcTemplate jdbcTemplate,
+                             @Value("${ruya.generateur.actif:true}") boolean actif,
+                             @Value("${ruya.generateur.fichiers:20}") int nombreFichiers,
+                             @Value("${ruya.generateur.carthago:20}") int nombreCarthago,
+                             @Value("${ruya.generateur.ctr:0}") int nombreCtr,
+                             @Value("${ruya.generateur.notifications:0}") int nombreNotifications,
+                             @Value("${ruya.generateur.jours:1}") int jours,
+                             @Value("${ruya.generateur.date-fin:}") String dateFin,
+                             @Value("${ruya.generateur.graine:42}") long graine,
+                             @Value("${ruya.generateur.threads:4}") int threads,
+                             @Value("${ruya.generateur.taille-lot:1000}") int tailleLot) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.actif = actif;
+        this.nombreFichiers = nombreFichiers;
+        this.nombreCarthago = nombreCarthago;
+        this.nombreCtr = nombreCtr;
+        this.nombreNotifications = nombreNotifications;
+        this.jours = Math.max(1, jours);
+        this.dateFin = dateFin.isBlank() ? LocalDate.now() : LocalDate.parse(dateFin);
+        this.graine = graine;
+        this.threads = Math.max(1, threads);
+        // tranches alignées sur les plages d'identifiants de SEQ_CARTHAGO
+        this.tailleLot = Math.max(1, tailleLot / Carthago.TAILLE_ALLOCATION_ID) * Carthago.TAILLE_ALLOCATION_ID;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (!actif) {
+            return;
+        }
+        Long idUser = jdbcTemplate.queryForObject("SELECT MIN(ID) FROM USERS", Long.class);
+        if (idUser == null) {
+            System.out.println("⚠️ Aucun utilisateur trouvé !");
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            generer(pool, "FICHIERS", nombreFichiers, (rnd, debut, fin) -> insererFichiers(rnd, idUser, debut, fin));
+            generer(pool, "CARTHAGO", nombreCarthago, (rnd, debut, fin) -> insererCarthago(rnd, idUser, debut, fin));
+            generer(pool, "CTR", nombreCtr, (rnd, debut, fin) -> insererCtr(rnd, idUser, debut, fin));
+            generer(pool, "NOTIFICATIONS", nombreNotifications, (rnd, debut, fin) -> insererNotifications(rnd, idUser, debut, fin));
+            if (nombreNotifications > 0) {
+                int distribuees = jdbcTemplate.update(DISTRIBUER_NOTIFICATIONS);
+                if (distribuees > 0) {
+                    System.out.println("✅ Table NOTIFICATION_DESTINATAIRES remplie : " + distribuees + " lignes");
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Répartit les nombre lignes de la table en tranches exécutées sur le pool, puis attend la fin.
+     */
+    private void generer(ExecutorService pool, String table, int nombre, Tranche tranche) {
+        if (nombre <= 0) {
+            return;
+        }
+        Long existants = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+        if (existants != null && existants > 0) {
+            return;
+        }
+        long debut = System.currentTimeMillis();
+        long sel = graine ^ (table.hashCode() * 0x9E3779B97F4A7C15L);
+        List<Future<?>> taches = new ArrayList<>();
+        for (int i = 0, numero = 0; i < nombre; i += tailleLot, numero++) {
+            int premier = i;
+            int dernier = Math.min(i + tailleLot, nombre);
+            SplittableRandom rnd = new SplittableRandom(sel + numero * 0xBF58476D1CE4E5B9L);
+            taches.add(pool.submit(() -> tranche.inserer(rnd, premier, dernier)));
+        }
+        try {
+            for (Future<?> tache : taches) {
+                tache.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Génération interrompue", e);
+        } catch (ExecutionException e) {
+            taches.forEach(t -> t.cancel(true));
+            throw new IllegalStateException("Erreur de génération de " + table + " : " + e.getCause().getMessage(), e.getCause());
+        }
+        long duree = System.currentTimeMillis() - debut;
+        System.out.println("✅ Table " + table + " remplie : " + nombre + " lignes en " + duree + " ms ("
+                + (duree > 0 ? nombre * 1000L / duree : nombre) + " lignes/s)");
+    }
+
+    private void insererFichiers(SplittableRandom rnd, long idUser, int debut, int fin) {
+        jdbcTemplate.batchUpdate(INSERT_FICHIER, lignes(debut, fin), tailleLot, (ps, i) -> {
+            LocalDateTime creation = instant(rnd);
+            String type = TYPES_FICHIER.tirer(rnd);
+            String statut = STATUTS_REMISE.tirer(rnd);
+            boolean valide = statut.equals("VALIDE") || statut.equals("TRAITE");
+            int nombre = 1 + rnd.nextInt(50);
+            ps.setLong(1, idUser);
+            ps.setString(2, "fichier_" + type.toLowerCase() + "_" + String.format("%08d", i + 1));
+            ps.setString(3, type);
+            ps.setString(4, NATURES_FICHIER.tirer(rnd));
+            ps.setString(5, CODES_FICHIER.tirer(rnd));
+            ps.setString(6, "21");
+            ps.setString(7, rnd.nextInt(100) < 80 ? "ENTRANT" : "SORTANT");
+            ps.setDouble(8, arrondi(nombre * montantCheque(rnd)));
+            ps.setInt(9, nombre);
+            ps.setTimestamp(10, Timestamp.valueOf(creation));
+            ps.setString(11, statut);
+            ps.setString(12, ORIGINES_SAISIE.tirer(rnd));
+            ps.setBoolean(13, valide);
+            setTimestamp(ps, 14, valide ? creation.plusMinutes(5 + rnd.nextInt(240)) : null);
+            ps.setBoolean(15, rnd.nextInt(100) < 60);
+            ps.setString(16, "REM" + String.format("%010d", i + 1));
+            ps.setString(17, rnd.nextInt(100) < 70 ? "IMMEDIAT" : "DIFFERE");
+            ps.setString(18, creation.toLocalDate().format(FORMAT_JOUR));
+        });
+    }
+
+    private void insererCarthago(SplittableRandom rnd, long idUser, int debut, int fin) {
+        long[] plage = {0, 0};
+        jdbcTemplate.batchUpdate(INSERT_CARTHAGO, lignes(debut, fin), tailleLot, (ps, i) -> {
+            if (plage[0] == plage[1]) {
+                reserverIdentifiants(plage);
+            }
+            LocalDateTime creation = instant(rnd);
+            String statut = STATUTS_CHEQUE.tirer(rnd);
+            String type = TYPES_CHEQUE.tirer(rnd);
+            boolean avantCtr = !statut.equals("TRAITE");
+            ps.setLong(1, plage[0]++);
+            ps.setLong(2, idUser);
+            ps.setString(3, "CHQ_" + creation.toLocalDate().format(FORMAT_JOUR) + "_" + String.format("%03d", rnd.nextInt(200)));
+            ps.setString(4, type);
+            ps.setString(5, NATURES_CHEQUE.tirer(rnd));
+            ps.setString(6, CODES_CHEQUE.tirer(rnd));
+            ps.setString(7, "22");
+            ps.setString(8, rnd.nextInt(100) < 85 ? "ENTRANT" : "SORTANT");
+            ps.setDouble(9, montantCheque(rnd));
+            ps.setInt(10, 1);
+            ps.setTimestamp(11, Timestamp.valueOf(creation));
+            ps.setDate(12, Date.valueOf(creation.toLocalDate()));
+            ps.setString(13, statut);
+            ps.setString(14, String.format("%07d", rnd.nextInt(10_000_000)));
+            ps.setString(15, BANQUES[rnd.nextInt(BANQUES.length)]);
+            ps.setBoolean(16, avantCtr);
+            ps.setBoolean(17, !avantCtr);
+            ps.setInt(18, Integer.parseInt(STATUTS_IMAGE.tirer(rnd)));
+            ps.setBoolean(19, !avantCtr);
+            setTimestamp(ps, 20, avantCtr ? null : creation.plusHours(1 + rnd.nextInt(8)));
+            ps.setBoolean(21, rnd.nextInt(100) < 70);
+            ps.setBoolean(22, type.equals("WEB") && rnd.nextInt(100) < 80);
+            ps.setBoolean(23, rnd.nextInt(1000) < 5);
+            ps.setBoolean(24, rnd.nextInt(100) < 10);
+            ps.setBoolean(25, rnd.nextInt(100) < 3);
+            ps.setBoolean(26, !avantCtr || rnd.nextInt(100) < 30);
+        });
+    }
+
+    private void insererCtr(SplittableRandom rnd, long idUser, int debut, int fin) {
+        jdbcTemplate.batchUpdate(INSERT_CTR, lignes(debut, fin), tailleLot, (ps, i) -> {
+            LocalDateTime creation = instant(rnd);
+            int nombreCarthago = rnd.nextInt(200);
+            int nombreFichiers = rnd.nextInt(100);
+            double montantCarthago = arrondi(nombreCarthago * montantCheque(rnd));
+            double montantFichiers = arrondi(nombreFichiers * montantCheque(rnd));
+            boolean equilibre = rnd.nextInt(100) < 90;
+            double difference = equilibre ? 0.0 : arrondi((rnd.nextDouble() - 0.5) * 10_000);
+            boolean recu = rnd.nextInt(100) < 85;
+            ps.setLong(1, idUser);
+            ps.setString(2, "CTR" + creation.toLocalDate().format(FORMAT_JOUR) + String.format("%08d", i + 1));
+            ps.setString(3, OPERATIONS_CTR.tirer(rnd));
+            ps.setString(4, STATUTS_CTR.tirer(rnd));
+            ps.setString(5, CODES_CTR.tirer(rnd));
+            ps.setDouble(6, arrondi(montantCarthago + montantFichiers + difference));
+            ps.setInt(7, nombreCarthago + nombreFichiers);
+            ps.setInt(8, nombreCarthago);
+            ps.setInt(9, nombreFichiers);
+            ps.setDouble(10, montantCarthago);
+            ps.setDouble(11, montantFichiers);
+            ps.setBoolean(12, equilibre);
+            ps.setDouble(13, difference);
+            ps.setBoolean(14, rnd.nextInt(100) < 70);
+            ps.setBoolean(15, recu);
+            ps.setTimestamp(16, Timestamp.valueOf(creation));
+            setTimestamp(ps, 17, recu ? creation.plusMinutes(10 + rnd.nextInt(120)) : null);
+            ps.setBoolean(18, rnd.nextInt(100) < 2);
+            ps.setBoolean(19, !recu);
+            ps.setBoolean(20, rnd.nextInt(100) < 60);
+            ps.setBoolean(21, rnd.nextInt(100) < 20);
+            ps.setString(22, creation.toLocalDate().format(FORMAT_JOUR));
+            ps.setString(23, "operateur" + (1 + rnd.nextInt(20)));
+            ps.setTimestamp(24, Timestamp.valueOf(creation));
+            setTimestamp(ps, 25, creation.plusHours(rnd.nextInt(6)));
+        });
+    }
+
+    private void insererNotifications(SplittableRandom rnd, long idUser, int debut, int fin) {
+        jdbcTemplate.batchUpdate(INSERT_NOTIFICATION, lignes(debut, fin), tailleLot, (ps, i) -> {
+            String type = TYPES_NOTIFICATION.tirer(rnd);
+            ps.setString(1, type);
+            ps.setString(2, "Fichier " + type.toLowerCase());
+            ps.setString(3, "Le fichier fichier_" + String.format("%08d", rnd.nextInt(Math.max(1, nombreFichiers)) + 1)
+                    + " a fait l'objet d'une opération " + type.toLowerCase());
+            ps.setLong(4, idUser);
+            ps.setTimestamp(5, Timestamp.valueOf(instant(rnd)));
+            ps.setString(6, type.equals("AJOUT") ? "fas fa-plus" : type.equals("ENVOI") ? "fas fa-paper-plane" : "fas fa-inbox");
+        });
+    }
+
+    /**
+     * Réserve une plage d'identifiants CARTHAGO comme l'optimiseur pooled d'Hibernate : la valeur v de
+     * SEQ_CARTHAGO couvre (v - allocation, v], ce qui évite tout chevauchement avec les inserts JPA.
+     */
+    private void reserverIdentifiants(long[] plage) {
+        Long valeur;
+        do {
+            valeur = jdbcTemplate.queryForObject("SELECT SEQ_CARTHAGO.NEXTVAL FROM DUAL", Long.class);
+        } while (valeur == null || valeur < Carthago.TAILLE_ALLOCATION_ID);
+        plage[0] = valeur - Carthago.TAILLE_ALLOCATION_ID + 1;
+        plage[1] = valeur + 1;
+    }
+
+    /**
+     * Instant de création sur la période : jours ouvrés surtout (un week-end sur trois conservé),
+     * heures de bureau.
+     */
+    private LocalDateTime instant(SplittableRandom rnd) {
+        LocalDate jour;
+        do {
+            jour = dateFin.minusDays(rnd.nextInt(jours));
+        } while (jours > 2 && estWeekEnd(jour) && rnd.nextInt(3) > 0);
+        return jour.atTime(8 + rnd.nextInt(9), rnd.nextInt(60), rnd.nextInt(60));
+    }
+
+    private static boolean estWeekEnd(LocalDate jour) {
+        return jour.getDayOfWeek() == DayOfWeek.SATURDAY || jour.getDayOfWeek() == DayOfWeek.SUNDAY;
+    }
+
+    /**
+     * Montant d'un chèque : loi log-normale (médiane 800 DT, longue traîne), en millimes.
+     */
+    private static double montantCheque(SplittableRandom rnd) {
+        double gauss = Math.sqrt(-2 * Math.log(1 - rnd.nextDouble())) * Math.cos(2 * Math.PI * rnd.nextDouble());
+        return arrondi(Math.min(1_000_000.0, Math.max(1.0, Math.exp(Math.log(800) + 1.2 * gauss))));
+    }
+
+    private static double arrondi(double montant) {
+        return Math.round(montant * 1000) / 1000.0;
+    }
+
+    private static void setTimestamp(PreparedStatement ps, int index, LocalDateTime valeur) throws SQLException {
+        if (valeur == null) {
+            ps.setNull(index, Types.TIMESTAMP);
+        } else {
+            ps.setTimestamp(index, Timestamp.valueOf(valeur));
+        }
+    }
+
+    private static List<Integer> lignes(int debut, int fin) {
+        List<Integer> lignes = new ArrayList<>(fin - debut);
+        for (int i = debut; i < fin; i++) {
+            lignes.add(i);
+        }
+        return lignes;
+    }
+
+    @FunctionalInterface
+    private interface Tranche {
+        void inserer(SplittableRandom rnd, int debut, int fin);
+    }
+
+    /**
+     * Valeurs tirées selon des poids entiers.
+     */
+    private static final class Repartition {
+        private final String[] valeurs;
+        private final int[] cumuls;
+
+        private Repartition(String[] valeurs, int[] poids) {
+            this.valeurs = valeurs;
+            this.cumuls = new int[poids.length];
+            int total = 0;
+            for (int i = 0; i < poids.length; i++) {
+                total += poids[i];
+                cumuls[i] = total;
+            }
+        }
+
+        private String tirer(SplittableRandom rnd) {
+            int tirage = rnd.nextInt(cumuls[cumuls.length - 1]);
+            int i = 0;
+            while (tirage >= cumuls[i]) {
+                i++;
+            }
+            return valeurs[i];
+        }
+    }
+}
@@ -1,13 +1,31 @@
 package tn.esprit.ruya.controllers;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import tn.esprit.ruya.models.CTR;
+import tn.esprit.ruya.models.CtrAgregatDTO;
+import tn.esprit.ruya.models.CtrListeDTO;
+import tn.esprit.ruya.models.DetailEquilibrageDTO;
+import tn.esprit.ruya.models.LatencesCtrDTO;
+import tn.esprit.ruya.models.PageDTO;
+import tn.esprit.ruya.models.StatutCtrLotDTO;
 import tn.esprit.ruya.repositories.CtrRepository;
+import tn.esprit.ruya.services.CtrService;
+import tn.esprit.ruya.services.DetailEquilibrageService;
+import tn.esprit.ruya.services.EquilibrageCtrService;
+import tn.esprit.ruya.services.LatencesCtr;
 
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @RestController
@@ -19,11 +37,25 @@ import java.util.Optional;
 )
 public class CtrController {
 
+    private static final int TAILLE_PAGE_MAX = 500;
+
     @Autowired
     private CtrRepository ctrRepository;
 
+    @Autowired
+    private EquilibrageCtrService equilibrageCtrService;
+
+    @Autowired
+    private CtrService ctrService;
+
+    @Autowired
+    private DetailEquilibrageService detailEquilibrageService;
+
+    @Autowired
+    private LatencesCtr latencesCtr;
+
     /**
-     * Crée un nouveau CTR
+     * Crée un nouveau CTR ; les champs d'équilibrage sont calculés sur sa session, pas repris de la requête
      * @param ctr Données du CTR à créer
      * @return Le CTR créé
      */
@@ -35,6 +67,8 @@ public class CtrController {
                 return ResponseEntity.badRequest().body(null);
             }
             CTR savedCtr = ctrRepository.save(ctr);
+            latencesCtr.changer(null, LatencesCtr.Jalons.de(savedCtr));
+            equilibrageCtrService.equilibrer(savedCtr);
             return ResponseEntity.ok(savedCtr);
         } catch (Exception e) {
             System.err.println("Erreur lors de la création du CTR: " + e.getMessage());
@@ -65,7 +99,8 @@ public class CtrController {
     }
 
     /**
-     * Récupère tous les CTR dans une période donnée
+     * Récupère tous les CTR dans une période donnée (liste complète : préférer /page, /flux ou /agregats
+     * pour les longues périodes)
      * @param start Date de début (optionnel, format ISO)
      * @param end Date de fin (optionnel, format ISO)
      * @return Liste des CTR
@@ -86,6 +121,82 @@ public class CtrController {
         }
     }
 
+    /**
+     * Page des CTR d'une période, sans l'utilisateur complet
+     * @param start Date de début (format ISO)
+     * @param end Date de fin (format ISO)
+     * @return Page de CTR, du plus récent au plus ancien
+     */
+    @GetMapping("/page")
+    public ResponseEntity<PageDTO<CtrListeDTO>> getCtrPage(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "taille", defaultValue = "50") int taille) {
+        try {
+            return ResponseEntity.ok(ctrService.rechercher(start, end,
+                    Math.max(0, page), Math.max(1, Math.min(taille, TAILLE_PAGE_MAX))));
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la récupération de la page de CTR: " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * CTR d'une période en flux NDJSON (un objet par ligne), pour les grandes périodes
+     * @param start Date de début (format ISO)
+     * @param end Date de fin (format ISO)
+     * @return Flux des CTR, du plus ancien au plus récent
+     */
+    @GetMapping(value = "/flux", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> getCtrFlux(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        StreamingResponseBody corps = sortie -> {
+            try {
+                ctrService.ecrireFlux(start, end, sortie);
+            } catch (UncheckedIOException e) {
+                System.err.println("Flux CTR interrompu: " + e.getMessage());
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(corps);
+    }
+
+    /**
+     * Latences des étapes de la chaîne CTR (p50, p95, max en minutes) par étape, opérateur et heure
+     * sur les dernières heures (24 par défaut)
+     */
+    @GetMapping("/latences")
+    public ResponseEntity<LatencesCtrDTO> getLatences(@RequestParam(value = "heures", defaultValue = "24") int heures) {
+        try {
+            LocalDateTime fin = LocalDateTime.now();
+            return ResponseEntity.ok(latencesCtr.instantane(fin.minusHours(Math.max(1, heures)), fin));
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la récupération des latences CTR: " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Totaux des CTR d'une période par statut et type d'opération
+     * @param start Date de début (format ISO)
+     * @param end Date de fin (format ISO)
+     * @return Un total par couple (statutCtr, typeOperation)
+     */
+    @GetMapping("/agregats")
+    public ResponseEntity<List<CtrAgregatDTO>> getCtrAgregats(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        try {
+            return ResponseEntity.ok(ctrService.agreger(start, end));
+        } catch (Exception e) {
+            System.err.println("Erreur lors du calcul des totaux CTR: " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     /**
      * Met à jour un CTR existant
      * @param id ID du CTR à mettre à jour
@@ -98,19 +209,15 @@ public class CtrController {
             Optional<CTR> existingCtr = ctrRepository.findById(id);
             if (existingCtr.isPresent()) {
                 CTR ctr = existingCtr.get();
-                // Mise à jour des champs
+                String ancienneSession = ctr.getSessionCtr();
+                LatencesCtr.Jalons avant = LatencesCtr.Jalons.de(ctr);
+                // Mise à jour des champs (l'équilibrage est recalculé, pas repris de la requête)
                 ctr.setNumeroCtr(updatedCtr.getNumeroCtr());
                 ctr.setTypeOperation(updatedCtr.getTypeOperation());
                 ctr.setStatutCtr(updatedCtr.getStatutCtr());
                 ctr.setCodeValeur(updatedCtr.getCodeValeur());
                 ctr.setMontant(updatedCtr.getMontant());
                 ctr.setNombreElements(updatedCtr.getNombreElements());
-                ctr.setNombreCarthago(updatedCtr.getNombreCarthago());
-                ctr.setNombreFichiers(updatedCtr.getNombreFichiers());
-                ctr.setMontantCarthago(updatedCtr.getMontantCarthago());
-                ctr.setMontantFichiers(updatedCtr.getMontantFichiers());
-                ctr.setEquilibre(updatedCtr.getEquilibre());
-                ctr.setDifference(updatedCtr.getDifference());
                 ctr.setGenereVersCtr(updatedCtr.getGenereVersCtr());
                 ctr.setRecuParCtr(updatedCtr.getRecuParCtr());
                 ctr.setDateGeneration(updatedCtr.getDateGeneration());
@@ -123,6 +230,11 @@ public class CtrController {
                 ctr.setOperateurCtr(updatedCtr.getOperateurCtr());
                 ctr.setDateTraitement(updatedCtr.getDateTraitement());
                 CTR savedCtr = ctrRepository.save(ctr);
+                latencesCtr.changer(avant, LatencesCtr.Jalons.de(savedCtr));
+                if (!Objects.equals(ancienneSession, savedCtr.getSessionCtr())) {
+                    equilibrageCtrService.signaler(ancienneSession);
+                }
+                equilibrageCtrService.equilibrer(savedCtr);
                 return ResponseEntity.ok(savedCtr);
             } else {
                 return ResponseEntity.notFound().build();
@@ -134,6 +246,48 @@ public class CtrController {
         }
     }
 
+    /**
+     * Modifie les seuls champs présents dans le corps ; « version » (optionnelle) doit être celle lue par le client
+     * @param id ID du CTR à modifier
+     * @param modifications Champs à modifier
+     * @return Le CTR modifié, 404 s'il n'existe pas, 409 s'il a été modifié entre-temps
+     */
+    @PatchMapping("/{id}")
+    public ResponseEntity<?> patchCtr(@PathVariable Long id, @RequestBody JsonNode modifications) {
+        try {
+            CTR ctr = ctrService.modifier(id, modifications);
+            if (ctr == null) {
+                return ResponseEntity.notFound().build();
+            }
+            equilibrageCtrService.equilibrer(ctr);
+            return ResponseEntity.ok(ctr);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("CTR modifié par un autre opérateur, à relire");
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la modification du CTR: " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Change le statut d'un lot de CTR (ceux encore dans le statut actuel indiqué)
+     * @param lot Identifiants, statut actuel, nouveau statut et opérateur
+     * @return Nombre de CTR mis à jour et ignorés
+     */
+    @PostMapping("/statut")
+    public ResponseEntity<?> changerStatutLot(@RequestBody StatutCtrLotDTO lot) {
+        try {
+            return ResponseEntity.ok(ctrService.changerStatut(lot));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            System.err.println("Erreur lors du changement de statut des CTR: " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     /**
      * Supprime un CTR par son ID
      * @param id ID du CTR à supprimer
@@ -142,8 +296,11 @@ public class CtrController {
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteCtr(@PathVariable Long id) {
         try {
-            if (ctrRepository.existsById(id)) {
+            Optional<CTR> ctr = ctrRepository.findById(id);
+            if (ctr.isPresent()) {
                 ctrRepository.deleteById(id);
+                latencesCtr.changer(LatencesCtr.Jalons.de(ctr.get()), null);
+                equilibrageCtrService.signaler(ctr.get().getSessionCtr());
                 return ResponseEntity.ok().build();
             } else {
                 return ResponseEntity.notFound().build();
@@ -156,7 +313,7 @@ public class CtrController {
     }
 
     /**
-     * Vérifie l'équilibrage d'un CTR
+     * Vérifie l'équilibrage d'un CTR, recalculé d'abord si sa session a changé depuis le dernier calcul
      * @param id ID du CTR à vérifier
      * @return Statut de l'équilibrage
      */
@@ -166,6 +323,7 @@ public class CtrController {
             Optional<CTR> ctrOpt = ctrRepository.findById(id);
             if (ctrOpt.isPresent()) {
                 CTR ctr = ctrOpt.get();
+                EquilibrageCtrService.appliquer(ctr, equilibrageCtrService.actualiser(ctr.getSessionCtr()));
                 boolean isEquilibre = ctr.getEquilibre() != null && ctr.getEquilibre();
                 String message = isEquilibre ? "CTR équilibré" :
                         "CTR non équilibré (différence: " + ctr.getDifference() + ")";
@@ -179,4 +337,25 @@ public class CtrController {
             return ResponseEntity.internalServerError().build();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Explique l'écart d'équilibrage d'un CTR : ventilation des sources de sa session (source, prise en compte,
+     * type, banque, tranche de montant) et, pour un petit écart, combinaisons de 1 à 3 chèques ou fichiers
+     * dont le montant égale l'écart
+     * @param id ID du CTR
+     * @return Détail de l'équilibrage
+     */
+    @GetMapping("/{id}/equilibrage/detail")
+    public ResponseEntity<DetailEquilibrageDTO> getDetailEquilibrage(@PathVariable Long id) {
+        try {
+            Optional<CTR> ctrOpt = ctrRepository.findById(id);
+            if (ctrOpt.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(detailEquilibrageService.detailler(ctrOpt.get()));
+        } catch (Exception e) {
+            System.err.println("❌ Erreur lors du détail de l'équilibrage: " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
@@ -4,8 +4,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import tn.esprit.ruya.models.DashboardResponseDTO;
+import tn.esprit.ruya.models.ImagesMetriquesDTO;
 import tn.esprit.ruya.services.DashboardService;
 
+import java.time.LocalDateTime;
+
 @RestController
 @RequestMapping("/api/dashboard")
 @CrossOrigin(
@@ -53,6 +56,21 @@ public class DashboardController {
         }
     }
 
+    /**
+     * Métriques des images chèque : comptes par heure, banque et statut, et résolution du statut 3
+     * sur les dernières heures (24 par défaut)
+     */
+    @GetMapping("/images")
+    public ResponseEntity<ImagesMetriquesDTO> getImagesMetriques(@RequestParam(value = "heures", defaultValue = "24") int heures) {
+        try {
+            LocalDateTime fin = LocalDateTime.now();
+            return ResponseEntity.ok(dashboardService.getImagesMetriques(fin.minusHours(Math.max(1, heures)), fin));
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la récupération des métriques des images: " + e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     /**
      * Endpoint pour vérifier la santé du service dashboard
      */
@@ -52,6 +52,8 @@ public class AnomalieDTO {
                 return "Investiguer les remises en attente et relancer si nécessaire";
             case "IMAGES_STATUT3":
                 return "Traiter les images bloquées en statut 3";
+            case "REMISE_DOUBLE":
+                return "Bloquer les remises en double et contacter le remettant";
             case "CHEQUES_A_VERIFIER":
                 return "Procéder à la vérification manuelle des chèques";
             default:
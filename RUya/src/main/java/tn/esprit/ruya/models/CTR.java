@@ -5,14 +5,25 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDateTime;
 
 @Getter
 @Setter
 @Entity
+@DynamicUpdate // seules les colonnes modifiées sont écrites : l'équilibrage calculé en base n'est pas écrasé
 @NoArgsConstructor
-@Table(name = "CTR")
+@Table(name = "CTR", indexes = {
+        // clôture de session : CTR reçus / en cours d'une session
+        @Index(name = "IDX_CTR_SESSION_STATUT", columnList = "SESSION_CTR, STATUT_CTR, ID_CTR"),
+        // listes paginées et flux par période de création, triés par (CREATED_AT, ID_CTR)
+        @Index(name = "IDX_CTR_CREATED", columnList = "CREATED_AT, ID_CTR"),
+        // latences des étapes : lignes terminant une étape sur la période ou à un horodatage de traitement
+        @Index(name = "IDX_CTR_LATENCE_RECEPTION", columnList = "DATE_RECEPTION, DATE_GENERATION, OPERATEUR_CTR"),
+        @Index(name = "IDX_CTR_LATENCE_TRAITEMENT",
+                columnList = "DATE_TRAITEMENT, DATE_RECEPTION, DATE_GENERATION, OPERATEUR_CTR")
+})
 public class CTR {
 
     @Id
@@ -105,6 +116,11 @@ public class CTR {
     @Column(name = "DATE_TRAITEMENT")
     private LocalDateTime dateTraitement;
 
+    // verrouillage optimiste ; incrémenté aussi par les mises à jour de statut ensemblistes
+    @Version
+    @Column(name = "VERSION", nullable = false)
+    private Long version;
+
     @PrePersist
     private void prePersist() {
         this.createdAt = LocalDateTime.now();
@@ -13,11 +13,29 @@ import java.time.LocalDateTime;
 @Setter
 @Entity
 @NoArgsConstructor
-@Table(name = "CARTHAGO")
+@Table(name = "CARTHAGO", indexes = {
+        // liste par session (filtres statut / CTR) et génération du fichier d'envoi, triées par ID_CARTHAGO ;
+        // MONTANT, TYPE_FICHIER et BANQUE_EMETTRICE en fin d'index : équilibrage CTR de la session sans accès à la table
+        @Index(name = "IDX_CARTHAGO_SESSION_STATUT",
+                columnList = "SESSION_DATE, STATUT_CHEQUE, ID_CARTHAGO, MONTANT, TYPE_FICHIER, BANQUE_EMETTRICE"),
+        @Index(name = "IDX_CARTHAGO_SESSION_CTR", columnList = "SESSION_DATE, AVANT_CTR, APRES_CTR, ID_CARTHAGO"),
+        @Index(name = "IDX_CARTHAGO_SESSION_MONTANT", columnList = "SESSION_DATE, MONTANT"),
+        @Index(name = "IDX_CARTHAGO_BANQUE_SESSION", columnList = "BANQUE_EMETTRICE, SESSION_DATE"),
+        @Index(name = "IDX_CARTHAGO_VERIFIER_SESSION", columnList = "A_VERIFIER, SESSION_DATE"),
+        // rechargement des métriques d'images (comptes par heure de création, banque et statut)
+        @Index(name = "IDX_CARTHAGO_CREATED_IMAGE", columnList = "CREATED_AT, STATUT_IMAGE, BANQUE_EMETTRICE"),
+        @Index(name = "IDX_CARTHAGO_RESOLUTION_IMAGE", columnList = "DATE_RESOLUTION_IMAGE"),
+        // latences CTR : chèques traités par CTR sur la période ou à l'horodatage d'une clôture
+        @Index(name = "IDX_CARTHAGO_TRAITEMENT_CTR", columnList = "DATE_TRAITEMENT_CTR, CREATED_AT")
+})
 public class Carthago {
 
+    public static final int TAILLE_ALLOCATION_ID = 50;
+
+    // séquence par plages de 50 : pas d'aller-retour par insert, et inserts groupés en batch JDBC (IDENTITY l'interdit)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SEQ_CARTHAGO")
+    @SequenceGenerator(name = "SEQ_CARTHAGO", sequenceName = "SEQ_CARTHAGO", allocationSize = TAILLE_ALLOCATION_ID)
     @Column(name = "ID_CARTHAGO")
     private Long id;
 
@@ -82,6 +100,12 @@ public class Carthago {
     @Column(name = "STATUT_IMAGE")
     private Integer statutImage; // 1, 2, 3 pour les différents statuts d'image
 
+    @Column(name = "DATE_IMAGE_STATUT3")
+    private LocalDateTime dateImageStatut3; // passage de l'image en statut 3
+
+    @Column(name = "DATE_RESOLUTION_IMAGE")
+    private LocalDateTime dateResolutionImage; // sortie du statut 3
+
     @Column(name = "TRAITE_PAR_CTR")
     private Boolean traiteParCTR; // true si traité par CTR
 
@@ -122,6 +146,9 @@ public class Carthago {
     @PrePersist
     private void prePersist() {
         this.createdAt = LocalDateTime.now();
+        if (statutImage != null && statutImage == 3) {
+            this.dateImageStatut3 = createdAt;
+        }
     }
 
     @PreUpdate
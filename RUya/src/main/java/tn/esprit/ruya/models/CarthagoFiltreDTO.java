@@ -0,0 +1,23 @@
+package tn.esprit.ruya.models;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Critères de la liste CARTHAGO ; un critère null n'est pas appliqué.
+ */
+@Data
+@NoArgsConstructor
+public class CarthagoFiltreDTO {
+
+    private LocalDate sessionDate;
+    private String statutCheque;
+    private String banqueEmettrice;
+    private Boolean avantCTR;
+    private Boolean apresCTR;
+    private Boolean aVerifier;
+    private Double montantMin;
+    private Double montantMax;
+}
@@ -0,0 +1,25 @@
+package tn.esprit.ruya.models;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class CarthagoImportDTO {
+
+    private String nomFichier;
+    private String format; // CSV ou nom du layout à largeur fixe
+    private LocalDate sessionDate;
+
+    private Long lignesLues;
+    private Long chequesImportes;
+    private Long lignesRejetees;
+    private Long remisesDouble; // chèques déjà remis (remiseDouble positionné)
+    private List<String> erreurs = new ArrayList<>(); // premières lignes rejetées : "ligne N : raison"
+
+    private Long dureeMs;
+}
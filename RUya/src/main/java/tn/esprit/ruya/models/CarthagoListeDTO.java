@@ -0,0 +1,30 @@
+package tn.esprit.ruya.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Ligne de la liste des chèques CARTHAGO : colonnes affichées seulement, sans l'utilisateur complet.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CarthagoListeDTO {
+
+    private Long id;
+    private LocalDate sessionDate;
+    private String numeroCheque;
+    private String banqueEmettrice;
+    private Double montant;
+    private String statutCheque;
+    private String codeValeur;
+    private String nomFichier;
+    private Boolean avantCTR;
+    private Boolean apresCTR;
+    private Boolean aVerifier;
+    private Integer statutImage;
+    private Long idUser;
+}
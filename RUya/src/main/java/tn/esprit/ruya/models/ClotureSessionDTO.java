@@ -0,0 +1,25 @@
+package tn.esprit.ruya.models;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+public class ClotureSessionDTO {
+
+    private LocalDate sessionDate;
+    private LocalDateTime dateCloture;
+
+    // === CARTHAGO ===
+    private Long chequesTraites; // passés d'avant CTR à après CTR
+    private Long chequesRestantsAvantCtr; // rejetés, laissés avant CTR
+
+    // === CTR ===
+    private Long ctrTraites; // RECU / EN_COURS passés à TRAITE
+
+    private Integer tranches;
+    private Long dureeMs;
+}
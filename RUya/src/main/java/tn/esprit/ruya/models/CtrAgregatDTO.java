@@ -0,0 +1,21 @@
+package tn.esprit.ruya.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Totaux des CTR d'une période pour un couple (statutCtr, typeOperation).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CtrAgregatDTO {
+
+    private String statutCtr;
+    private String typeOperation;
+    private Long nombre;
+    private Double montant;
+    private Long nombreElements;
+    private Long equilibres;
+}
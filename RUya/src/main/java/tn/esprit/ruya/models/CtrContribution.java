@@ -0,0 +1,61 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ventilation des sources de l'équilibrage d'une session CTR : chèques CARTHAGO et fichiers de la session,
+ * regroupés par source, prise en compte, type, banque et tranche de montant.
+ * Reconstruite à chaque calcul de l'équilibrage de la session ; les lignes INCLUS = 1 totalisent les sources.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "CTR_CONTRIBUTIONS",
+        indexes = @Index(name = "IDX_CTR_CONTRIB_SESSION",
+                columnList = "SESSION_CTR, INCLUS, SOURCE, TYPE_FICHIER, BANQUE, TRANCHE_MONTANT"))
+public class CtrContribution {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "ID_CONTRIBUTION")
+    private Long id;
+
+    @Column(name = "SESSION_CTR", nullable = false)
+    private String sessionCtr;
+
+    @Column(name = "SOURCE", nullable = false)
+    private String source; // CARTHAGO, FICHIER
+
+    @Column(name = "INCLUS", nullable = false)
+    private Boolean inclus; // compté dans les sources (chèque traité, fichier généré et validé)
+
+    @Column(name = "TYPE_FICHIER")
+    private String typeFichier;
+
+    @Column(name = "BANQUE")
+    private String banque; // banque émettrice du chèque ; "-" pour un fichier
+
+    @Column(name = "TRANCHE_MONTANT", nullable = false)
+    private Integer trancheMontant; // indice dans EquilibrageCtrService.BORNES_TRANCHES, -1 sans montant
+
+    @Column(name = "NOMBRE", nullable = false)
+    private Long nombre;
+
+    @Column(name = "MONTANT", nullable = false)
+    private Double montant;
+
+    @Column(name = "MONTANT_MIN")
+    private Double montantMin;
+
+    @Column(name = "MONTANT_MAX")
+    private Double montantMax;
+
+    @Column(name = "CALCULE_LE", nullable = false)
+    private LocalDateTime calculeLe;
+}
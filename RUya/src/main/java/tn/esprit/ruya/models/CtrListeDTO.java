@@ -0,0 +1,31 @@
+package tn.esprit.ruya.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ligne de la liste des CTR : colonnes du CTR seulement, sans l'utilisateur complet.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CtrListeDTO {
+
+    private Long id;
+    private String numeroCtr;
+    private String typeOperation;
+    private String statutCtr;
+    private String codeValeur;
+    private Double montant;
+    private Integer nombreElements;
+    private Boolean equilibre;
+    private Double difference;
+    private String sessionCtr;
+    private String operateurCtr;
+    private LocalDateTime createdAt;
+    private LocalDateTime dateTraitement;
+    private Long idUser;
+}
@@ -53,7 +53,8 @@ public class DashboardConfigDTO {
                 "VALIDATION_BO",
                 "CARTHAGO_AVANT_CTR",
                 "REMISES_CTR",
-                "ACTIONS_CONTROLES"
+                "ACTIONS_CONTROLES",
+                "QUALITE_IMAGES"
         );
     }
 
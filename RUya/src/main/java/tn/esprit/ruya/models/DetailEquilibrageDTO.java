@@ -0,0 +1,62 @@
+package tn.esprit.ruya.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Explication de l'équilibrage d'un CTR : ventilation des sources de sa session et combinaisons de chèques
+ * ou de fichiers dont le montant égale l'écart.
+ */
+@Data
+@NoArgsConstructor
+public class DetailEquilibrageDTO {
+
+    private Long idCtr;
+    private String sessionCtr;
+    private EquilibrageResultDTO equilibrage;
+
+    // === VENTILATION DES SOURCES ===
+    private List<Contribution> contributions;
+
+    // === RECHERCHE DES LIGNES EXPLIQUANT L'ÉCART ===
+    private String recherche; // EQUILIBRE, EFFECTUEE, ECART_TROP_GRAND
+    private String sens; // EXCEDENT : lignes comptées en trop ; MANQUE : lignes de la session non comptées
+    private Integer lignesExaminees;
+    private List<Candidat> candidats;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Contribution {
+        private String source; // CARTHAGO, FICHIER
+        private Boolean inclus;
+        private String typeFichier;
+        private String banque;
+        private String trancheMontant;
+        private Long nombre;
+        private Double montant;
+        private Double montantMin;
+        private Double montantMax;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Candidat {
+        private Double montant;
+        private List<Element> elements;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Element {
+        private String source;
+        private Long id;
+        private String reference; // numéro de chèque ou nom de fichier
+        private Double montant;
+    }
+}
@@ -12,7 +12,12 @@ import java.time.LocalDateTime;
 @Setter
 @Entity
 @NoArgsConstructor
-@Table(name = "FICHIERS")
+@Table(name = "FICHIERS", indexes = {
+        // équilibrage CTR : ventilation des fichiers d'une session et recherche des fichiers expliquant un écart,
+        // sans accès à la table
+        @Index(name = "IDX_FICHIERS_SESSION_EQUILIBRAGE",
+                columnList = "SESSION_ID, GENERE_PAR_ENCAISSE, VALIDATION_BO, TYPE_FICHIER, MONTANT")
+})
 public class Fichier {
 
     @Id
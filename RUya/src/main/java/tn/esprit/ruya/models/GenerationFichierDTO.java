@@ -0,0 +1,24 @@
+package tn.esprit.ruya.models;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+public class GenerationFichierDTO {
+
+    private String nomFichier;
+    private String chemin;
+    private String layout;
+    private LocalDate sessionDate;
+
+    // === TOTAUX (repris dans la ligne de pied) ===
+    private Long nombreLignes;
+    private BigDecimal montantTotal;
+
+    private Long octets;
+    private Long dureeMs;
+}
@@ -0,0 +1,43 @@
+package tn.esprit.ruya.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class ImagesMetriquesDTO {
+
+    private LocalDateTime debut;
+    private LocalDateTime fin;
+
+    // === TOTAUX PAR STATUT (chèques créés sur la période) ===
+    private Long statut1;
+    private Long statut2;
+    private Long statut3;
+    private LocalDateTime plusAncienStatut3; // heure de création la plus ancienne encore en statut 3
+
+    // === DÉTAIL PAR HEURE ET BANQUE ===
+    private List<LigneHeure> parHeure;
+
+    // === RÉSOLUTION DES IMAGES EN STATUT 3 ===
+    private List<Integer> bornesResolutionMinutes; // borne haute de chaque classe, la dernière est ouverte
+    private List<Long> effectifsResolution;
+    private Long nombreResolutions;
+    private Integer medianeResolutionMinutes;
+    private Integer p90ResolutionMinutes;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class LigneHeure {
+        private LocalDateTime heure;
+        private String banque;
+        private Long statut1;
+        private Long statut2;
+        private Long statut3;
+    }
+}
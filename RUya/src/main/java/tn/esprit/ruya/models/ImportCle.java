@@ -0,0 +1,25 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Clé naturelle d'une ligne TRAITEMENT déjà importée (nomFichier|codeFichier|nombre|date).
+ * Alimentée par l'écriture JDBC du pipeline, dans la même transaction que les lignes.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "IMPORT_CLES", indexes = @Index(name = "IDX_IMPORT_CLES_IMPORT", columnList = "ID_IMPORT"))
+public class ImportCle {
+
+    @Id
+    @Column(name = "CLE", length = 200)
+    private String cle;
+
+    @Column(name = "ID_IMPORT", nullable = false)
+    private Long idImport;
+}
@@ -0,0 +1,56 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Trace d'import d'un fichier reçu, identifié par l'empreinte SHA-256 de son contenu.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "IMPORT_FICHIERS",
+        uniqueConstraints = @UniqueConstraint(name = "UK_IMPORT_EMPREINTE", columnNames = "EMPREINTE"))
+public class ImportFichier {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "ID_IMPORT")
+    private Long id;
+
+    @Column(name = "EMPREINTE", nullable = false, length = 64)
+    private String empreinte;
+
+    @Column(name = "NOM_FICHIER")
+    private String nomFichier;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "STATUT", nullable = false, length = 20)
+    private Statut statut;
+
+    @Column(name = "LIGNES_PERSISTEES")
+    private Long lignesPersistees = 0L;
+
+    @Column(name = "LIGNES_IGNOREES")
+    private Long lignesIgnorees = 0L;
+
+    @Column(name = "DATE_DEBUT", nullable = false)
+    private LocalDateTime dateDebut;
+
+    @Column(name = "DATE_FIN")
+    private LocalDateTime dateFin;
+
+    @PrePersist
+    private void prePersist() {
+        this.dateDebut = LocalDateTime.now();
+    }
+
+    public enum Statut {
+        EN_COURS, TERMINE, ECHEC
+    }
+}
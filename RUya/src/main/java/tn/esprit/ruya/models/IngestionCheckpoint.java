@@ -0,0 +1,58 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Point de reprise d'une ingestion : offset (début de ligne) et numéro de ligne jusqu'auxquels
+ * tout est écrit. Un par import (empreinte de contenu), mis à jour dans la transaction de chaque lot.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "INGESTION_CHECKPOINT", indexes = {
+        @Index(name = "IDX_CHECKPOINT_JOB", columnList = "ID_JOB"),
+        @Index(name = "IDX_CHECKPOINT_STATUT", columnList = "STATUT, DATE_MAJ")
+})
+public class IngestionCheckpoint {
+
+    @Id
+    @Column(name = "ID_IMPORT")
+    private Long idImport;
+
+    @Column(name = "ID_JOB", nullable = false, length = 36)
+    private String idJob;
+
+    @Column(name = "CHEMIN", length = 1000)
+    private String chemin;
+
+    @Column(name = "NOM_FICHIER")
+    private String nomFichier;
+
+    @Column(name = "TYPE_FICHIER")
+    private String typeFichier;
+
+    @Column(name = "OFFSET_OCTETS", nullable = false)
+    private Long offsetOctets = 0L;
+
+    @Column(name = "LIGNE", nullable = false)
+    private Long ligne = 0L;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "STATUT", nullable = false, length = 20)
+    private ImportFichier.Statut statut;
+
+    @Column(name = "DATE_MAJ")
+    private LocalDateTime dateMaj;
+
+    @PrePersist
+    @PreUpdate
+    private void horodater() {
+        this.dateMaj = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,39 @@
+package tn.esprit.ruya.models;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+public class IngestionJobDTO {
+
+    private String id;
+    private String nomFichier;
+    private String typeFichier; // layout demandé, null si détecté par en-tête
+    private String statut; // EN_ATTENTE, EN_COURS, TERMINE, ECHEC
+    private String message;
+
+    // === AVANCEMENT ===
+    private Long lignesLues;
+    private Long lignesPersistees;
+    private Long erreurs; // lignes rejetées (en quarantaine)
+    private Map<String, Long> resumeErreurs; // lignes rejetées par raison
+    private Long lignesIgnorees; // clés naturelles déjà importées
+    private Long doublons; // dont lignes répétant une ligne précédente du même fichier
+    private Boolean dejaImporte; // même contenu déjà importé : fichier ignoré
+    private Long ligneReprise; // lignes sautées à la reprise (0 si départ au début)
+    private Long octetsLus;
+    private Long octetsTotal;
+    private Double progression; // pourcentage des octets lus
+
+    // === DÉBIT ET ESTIMATION ===
+    private Double lignesParSeconde;
+    private Long etaSecondes; // null si inconnu
+
+    private LocalDateTime dateSoumission;
+    private LocalDateTime dateDebut;
+    private LocalDateTime dateFin;
+}
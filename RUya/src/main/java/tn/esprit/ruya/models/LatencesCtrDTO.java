@@ -0,0 +1,39 @@
+package tn.esprit.ruya.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class LatencesCtrDTO {
+
+    private LocalDateTime debut;
+    private LocalDateTime fin;
+    private List<Integer> bornesMinutes; // borne haute de chaque classe, la dernière est ouverte
+
+    // === PAR ÉTAPE (toutes heures, tous opérateurs) ===
+    private List<Latence> etapes;
+
+    // === PAR ÉTAPE ET OPÉRATEUR ===
+    private List<Latence> parOperateur;
+
+    // === PAR ÉTAPE ET HEURE DE FIN D'ÉTAPE ===
+    private List<Latence> parHeure;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Latence {
+        private String etape; // GENERATION_RECEPTION, RECEPTION_TRAITEMENT, GENERATION_TRAITEMENT, CHEQUE_CTR
+        private LocalDateTime heure;
+        private String operateur;
+        private Long nombre;
+        private Long p50Minutes;
+        private Long p95Minutes;
+        private Long maxMinutes;
+    }
+}
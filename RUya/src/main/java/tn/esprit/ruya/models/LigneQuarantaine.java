@@ -0,0 +1,44 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ligne rejetée à l'ingestion, conservée avec ses octets d'origine pour correction et ré-émission.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "QUARANTAINE_LIGNES",
+        indexes = @Index(name = "IDX_QUARANTAINE_IMPORT_LIGNE", columnList = "ID_IMPORT, NUMERO_LIGNE"))
+public class LigneQuarantaine {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "ID_QUARANTAINE")
+    private Long id;
+
+    @Column(name = "ID_IMPORT", nullable = false)
+    private Long idImport;
+
+    @Column(name = "NUMERO_LIGNE", nullable = false)
+    private Long numeroLigne;
+
+    @Column(name = "OFFSET_OCTETS", nullable = false)
+    private Long offsetOctets;
+
+    @Lob
+    @Column(name = "CONTENU")
+    private byte[] contenu;
+
+    @Column(name = "RAISON", length = 500)
+    private String raison;
+
+    @Column(name = "DATE_CREATION")
+    private LocalDateTime dateCreation;
+}
@@ -0,0 +1,16 @@
+package tn.esprit.ruya.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LigneQuarantaineDTO {
+
+    private Long numeroLigne;
+    private Long offsetOctets;
+    private String contenu; // octets d'origine décodés en ISO-8859-1
+    private String raison;
+}
@@ -8,6 +8,10 @@ import lombok.Setter;
 
 import java.time.LocalDateTime;
 
+/**
+ * Notification d'une opération sur un fichier ; chaque destinataire en a sa réception
+ * ({@link NotificationDestinataire}), qui porte l'état lu.
+ */
 @Getter
 @Setter
 @Entity
@@ -43,9 +47,6 @@ public class Notification {
     @Column(name = "TIMESTAMP", nullable = false)
     private LocalDateTime timestamp;
 
-    @Column(name = "LU", nullable = false)
-    private Boolean lu = false;
-
     @Column(name = "ICON")
     private String icon;
 
@@ -0,0 +1,53 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDateTime;
+
+/**
+ * Réception d'une notification par un utilisateur : l'état lu / non lu est propre à chaque destinataire.
+ * TIMESTAMP recopie celui de la notification pour que le fil d'un utilisateur se lise sur un seul index.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "NOTIFICATION_DESTINATAIRES",
+        uniqueConstraints = @UniqueConstraint(name = "UK_NOTIF_DEST", columnNames = {"ID_NOTIFICATION", "ID_USER"}),
+        indexes = {
+                // fil des non lues d'un utilisateur, du plus récent au plus ancien, et leur comptage
+                @Index(name = "IDX_NOTIF_DEST_LU", columnList = "ID_USER, LU, TIMESTAMP DESC, ID_NOTIF_DEST DESC"),
+                // fil complet d'un utilisateur
+                @Index(name = "IDX_NOTIF_DEST_FIL", columnList = "ID_USER, TIMESTAMP DESC, ID_NOTIF_DEST DESC")
+        })
+public class NotificationDestinataire {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "ID_NOTIF_DEST")
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JoinColumn(name = "ID_NOTIFICATION", nullable = false)
+    private Notification notification;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @JoinColumn(name = "ID_USER", nullable = false)
+    private User destinataire;
+
+    @Column(name = "LU", nullable = false)
+    private Boolean lu = false;
+
+    @Column(name = "TIMESTAMP", nullable = false)
+    private LocalDateTime timestamp;
+
+    @Column(name = "DATE_LECTURE")
+    private LocalDateTime dateLecture;
+}
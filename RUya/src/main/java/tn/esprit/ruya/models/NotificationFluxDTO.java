@@ -0,0 +1,62 @@
+package tn.esprit.ruya.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Notification telle que la voit un destinataire : contenu, état lu propre à lui, résumés du fichier
+ * et de l'auteur de l'action.
+ */
+@Data
+@NoArgsConstructor
+public class NotificationFluxDTO {
+
+    private Long id; // ID_NOTIFICATION
+    private Long idDestinataire; // ID_NOTIF_DEST, clé du curseur
+    private Notification.NotificationType type;
+    private String titre;
+    private String message;
+    private String icon;
+    private LocalDateTime timestamp;
+    private Boolean lu;
+    private FichierResume fichier;
+    private UtilisateurResume userAction;
+
+    // projection JPQL : fichier et auteur à plat, null si absents
+    public NotificationFluxDTO(Long id, Long idDestinataire, Notification.NotificationType type, String titre,
+                               String message, String icon, LocalDateTime timestamp, Boolean lu,
+                               Long idFichier, String nomFichier, String typeFichier, String codeValeur,
+                               Long idUser, String username) {
+        this.id = id;
+        this.idDestinataire = idDestinataire;
+        this.type = type;
+        this.titre = titre;
+        this.message = message;
+        this.icon = icon;
+        this.timestamp = timestamp;
+        this.lu = lu;
+        this.fichier = idFichier != null ? new FichierResume(idFichier, nomFichier, typeFichier, codeValeur) : null;
+        this.userAction = idUser != null ? new UtilisateurResume(idUser, username) : null;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class FichierResume {
+        private Long id;
+        private String nomFichier;
+        private String typeFichier;
+        private String codeValeur;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class UtilisateurResume {
+        private Long id;
+        private String username;
+    }
+}
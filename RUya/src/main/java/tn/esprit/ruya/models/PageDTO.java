@@ -0,0 +1,22 @@
+package tn.esprit.ruya.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageDTO<T> {
+
+    private List<T> contenu;
+    private int page; // à partir de 0
+    private int taille;
+    private long total;
+
+    public int getTotalPages() {
+        return taille > 0 ? (int) ((total + taille - 1) / taille) : 0;
+    }
+}
@@ -0,0 +1,20 @@
+package tn.esprit.ruya.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Page du fil de notifications d'un utilisateur, du plus récent au plus ancien.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PageNotificationsDTO {
+
+    private List<NotificationFluxDTO> notifications;
+    private String curseurSuivant; // à repasser pour la page suivante ; null en fin de fil
+    private Long nonLues;
+}
@@ -0,0 +1,19 @@
+package tn.esprit.ruya.models;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Changement de statut d'un lot de CTR : seuls ceux encore dans statutActuel passent à nouveauStatut.
+ */
+@Data
+@NoArgsConstructor
+public class StatutCtrLotDTO {
+
+    private List<Long> ids;
+    private String statutActuel; // RECU, EN_COURS, TRAITE, EQUILIBRE, FAUX
+    private String nouveauStatut;
+    private String operateurCtr; // optionnel : opérateur qui traite le lot
+}
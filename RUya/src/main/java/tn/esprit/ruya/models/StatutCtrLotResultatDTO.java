@@ -0,0 +1,16 @@
+package tn.esprit.ruya.models;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class StatutCtrLotResultatDTO {
+
+    private String statutActuel;
+    private String nouveauStatut;
+    private Integer demandes; // identifiants distincts reçus
+    private Integer misAJour;
+    private Integer ignores; // absents ou plus dans statutActuel
+    private Long dureeMs;
+}
@@ -3,35 +3,40 @@ package tn.esprit.ruya.notification.controller;
 import lombok.AllArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import tn.esprit.ruya.models.Notification;
+import tn.esprit.ruya.models.NotificationFluxDTO;
+import tn.esprit.ruya.models.PageNotificationsDTO;
 import tn.esprit.ruya.notification.service.NotificationService;
 
-import java.util.List;
-
 @RestController
 @AllArgsConstructor
 @RequestMapping("/api/notifications")
 @CrossOrigin(origins = "http://localhost:4200")
 public class NotificationController {
 
+    private static final int TAILLE_PAGE_MAX = 100;
+
     private NotificationService notificationService;
 
-    // Récupérer toutes les notifications
+    // Fil des notifications de l'utilisateur, par pages ; curseur : curseurSuivant de la page précédente
     @GetMapping
-    public ResponseEntity<List<Notification>> getAllNotifications() {
-        return ResponseEntity.ok(notificationService.getAllNotifications());
+    public ResponseEntity<?> getAllNotifications(@RequestParam Long userId,
+                                                 @RequestParam(required = false) String curseur,
+                                                 @RequestParam(defaultValue = "20") int taille) {
+        return fil(userId, false, curseur, taille);
     }
 
-    // Récupérer les notifications non lues
+    // Fil des notifications non lues de l'utilisateur, par pages
     @GetMapping("/non-lues")
-    public ResponseEntity<List<Notification>> getNotificationsNonLues() {
-        return ResponseEntity.ok(notificationService.getNotificationsNonLues());
+    public ResponseEntity<?> getNotificationsNonLues(@RequestParam Long userId,
+                                                     @RequestParam(required = false) String curseur,
+                                                     @RequestParam(defaultValue = "20") int taille) {
+        return fil(userId, true, curseur, taille);
     }
 
-    // Marquer une notification comme lue
+    // Marquer une notification comme lue pour l'utilisateur
     @PutMapping("/{id}/marquer-lue")
-    public ResponseEntity<Notification> marquerCommeLue(@PathVariable Long id) {
-        Notification notification = notificationService.marquerCommeLue(id);
+    public ResponseEntity<NotificationFluxDTO> marquerCommeLue(@PathVariable Long id, @RequestParam Long userId) {
+        NotificationFluxDTO notification = notificationService.marquerCommeLue(id, userId);
         if (notification != null) {
             return ResponseEntity.ok(notification);
         } else {
@@ -39,16 +44,26 @@ public class NotificationController {
         }
     }
 
-    // Marquer toutes les notifications comme lues
+    // Marquer toutes les notifications de l'utilisateur comme lues
     @PutMapping("/marquer-toutes-lues")
-    public ResponseEntity<Void> marquerToutesCommeLues() {
-        notificationService.marquerToutesCommeLues();
+    public ResponseEntity<Void> marquerToutesCommeLues(@RequestParam Long userId) {
+        notificationService.marquerToutesCommeLues(userId);
         return ResponseEntity.ok().build();
     }
 
-    // Compter les notifications non lues
+    // Compter les notifications non lues de l'utilisateur
     @GetMapping("/count-non-lues")
-    public ResponseEntity<Long> countNotificationsNonLues() {
-        return ResponseEntity.ok(notificationService.countNotificationsNonLues());
+    public ResponseEntity<Long> countNotificationsNonLues(@RequestParam Long userId) {
+        return ResponseEntity.ok(notificationService.countNotificationsNonLues(userId));
+    }
+
+    private ResponseEntity<?> fil(Long userId, boolean nonLues, String curseur, int taille) {
+        try {
+            PageNotificationsDTO page = notificationService.getFil(userId, nonLues, curseur,
+                    Math.max(1, Math.min(taille, TAILLE_PAGE_MAX)));
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
-} 
\ No newline at end of file
+}
@@ -1,21 +1,101 @@
 package tn.esprit.ruya.notification.service;
 
-import lombok.AllArgsConstructor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import tn.esprit.ruya.models.Fichier;
 import tn.esprit.ruya.models.Notification;
+import tn.esprit.ruya.models.NotificationFluxDTO;
+import tn.esprit.ruya.models.PageNotificationsDTO;
 import tn.esprit.ruya.models.User;
 import tn.esprit.ruya.notification.repository.INotificationRepo;
 
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-@AllArgsConstructor
+/**
+ * Notifications des opérations sur les fichiers.
+ * <p>
+ * Une notification est distribuée à chaque utilisateur actif (NOTIFICATION_DESTINATAIRES), qui la lit
+ * pour son compte. Le fil d'un utilisateur est paginé par curseur (TIMESTAMP, ID_NOTIF_DEST) sur l'index
+ * (ID_USER, LU, TIMESTAMP DESC) : une page coûte autant quelle que soit la profondeur de l'historique.
+ * <p>
+ * Le nombre de non lues de chaque utilisateur (pastille de la cloche) est tenu en mémoire : chargé à la première
+ * demande, ajusté à chaque distribution ou lecture, et oublié périodiquement pour être relu en base
+ * (insertions hors application).
+ */
 @Service
 public class NotificationService {
 
-    private INotificationRepo notificationRepo;
+    private static final String SELECT_DESTINATAIRES = "SELECT ID FROM USERS WHERE IS_ACTIVE IS NULL OR IS_ACTIVE = 1";
+    private static final String INSERT_DESTINATAIRE =
+            "INSERT INTO NOTIFICATION_DESTINATAIRES (ID_NOTIFICATION, ID_USER, LU, TIMESTAMP) VALUES (?, ?, 0, ?)";
+    private static final String COUNT_NON_LUES =
+            "SELECT COUNT(*) FROM NOTIFICATION_DESTINATAIRES WHERE ID_USER = ? AND LU = 0";
+    private static final String MARQUER_LUE =
+            "UPDATE NOTIFICATION_DESTINATAIRES SET LU = 1, DATE_LECTURE = ? " +
+            "WHERE ID_NOTIFICATION = ? AND ID_USER = ? AND LU = 0";
+    private static final String MAX_NON_LUE =
+            "SELECT MAX(ID_NOTIF_DEST) FROM NOTIFICATION_DESTINATAIRES WHERE ID_USER = ? AND LU = 0";
+    // tranche bornée par ROWNUM, validée seule : la transaction et l'undo restent petits
+    private static final String MARQUER_LUES =
+            "UPDATE NOTIFICATION_DESTINATAIRES SET LU = 1, DATE_LECTURE = ? " +
+            "WHERE ID_USER = ? AND LU = 0 AND ID_NOTIF_DEST <= ? AND ROWNUM <= ?";
 
-    // Créer une notification pour l'ajout d'un fichier
+    private static final String PROJECTION =
+            "SELECT new tn.esprit.ruya.models.NotificationFluxDTO(n.id, d.id, n.type, n.titre, n.message, n.icon, " +
+            "d.timestamp, d.lu, f.id, f.nomFichier, f.typeFichier, f.codeValeur, u.id, u.username) " +
+            "FROM NotificationDestinataire d JOIN d.notification n LEFT JOIN n.fichier f LEFT JOIN n.userAction u " +
+            "WHERE d.destinataire.id = :idUser ";
+    private static final String APRES_CURSEUR =
+            "AND (d.timestamp < :timestamp OR (d.timestamp = :timestamp AND d.id < :id)) ";
+    private static final String ORDRE = "ORDER BY d.timestamp DESC, d.id DESC";
+    private static final String SELECT_FIL = PROJECTION + APRES_CURSEUR + ORDRE;
+    private static final String SELECT_FIL_NON_LUES = PROJECTION + "AND d.lu = false " + APRES_CURSEUR + ORDRE;
+    private static final String SELECT_RECEPTION = PROJECTION + "AND n.id = :idNotification";
+
+    // curseur de la première page : après toute notification
+    private static final LocalDateTime FIN_DES_TEMPS = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final INotificationRepo notificationRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final int tailleTranche;
+
+    // ID_USER → nombre de non lues ; absent : relu en base à la prochaine demande
+    private final Map<Long, CompteurNonLues> nonLues = new ConcurrentHashMap<>();
+
+    public NotificationService(INotificationRepo notificationRepo,
+                               JdbcTemplate jdbcTemplate,
+                               @Value("${ruya.notifications.taille-tranche:5000}") int tailleTranche) {
+        this.notificationRepo = notificationRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.tailleTranche = Math.max(1, tailleTranche);
+    }
+
+    /**
+     * Oublie les nombres de non lues : chacun est relu en base à sa prochaine demande.
+     */
+    @Scheduled(cron = "${ruya.notifications.recalage-cron:0 */10 * * * *}")
+    public void recalerNonLues() {
+        nonLues.clear();
+    }
+
+    // Créer une notification pour l'ajout d'un fichier, distribuée aux utilisateurs actifs
+    @Transactional
     public Notification creerNotificationAjout(Fichier fichier, User userAction) {
         System.out.println("🔍 DEBUG - Création de notification d'ajout pour fichier: " + fichier.getNomFichier());
         System.out.println("🔍 DEBUG - Utilisateur qui a ajouté: " + userAction.getUsername());
@@ -31,44 +111,187 @@ public class NotificationService {
         notification.setFichier(fichier);
         notification.setUserAction(userAction);
         notification.setIcon(icon);
-        notification.setLu(false);
 
         Notification savedNotification = notificationRepo.save(notification);
+        distribuer(savedNotification);
         System.out.println("🔍 DEBUG - Notification créée avec ID: " + savedNotification.getId());
         
         return savedNotification;
     }
 
-    // Récupérer toutes les notifications
-    public List<Notification> getAllNotifications() {
-        return notificationRepo.findAllByOrderByTimestampDesc();
+    /**
+     * Page du fil de l'utilisateur (toutes ou seulement les non lues), après le curseur s'il est donné.
+     *
+     * @throws IllegalArgumentException curseur invalide
+     */
+    @Transactional(readOnly = true)
+    public PageNotificationsDTO getFil(Long idUser, boolean nonLuesSeulement, String curseur, int taille) {
+        LocalDateTime timestamp = FIN_DES_TEMPS;
+        long id = Long.MAX_VALUE;
+        if (curseur != null && !curseur.isBlank()) {
+            String[] parties = curseur.split("_");
+            try {
+                if (parties.length != 2) {
+                    throw new NumberFormatException(curseur);
+                }
+                long micros = Long.parseLong(parties[0]);
+                timestamp = LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                        (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+                id = Long.parseLong(parties[1]);
+            } catch (NumberFormatException | DateTimeException e) {
+                throw new IllegalArgumentException("Curseur invalide : " + curseur);
+            }
+        }
+
+        // une ligne de plus pour savoir s'il reste une page
+        List<NotificationFluxDTO> lignes = entityManager
+                .createQuery(nonLuesSeulement ? SELECT_FIL_NON_LUES : SELECT_FIL, NotificationFluxDTO.class)
+                .setParameter("idUser", idUser)
+                .setParameter("timestamp", timestamp)
+                .setParameter("id", id)
+                .setMaxResults(taille + 1)
+                .getResultList();
+        String suivant = null;
+        if (lignes.size() > taille) {
+            lignes = lignes.subList(0, taille);
+            suivant = curseur(lignes.get(taille - 1));
+        }
+        return new PageNotificationsDTO(lignes, suivant, countNotificationsNonLues(idUser));
     }
 
-    // Récupérer les notifications non lues
-    public List<Notification> getNotificationsNonLues() {
-        return notificationRepo.findByLuOrderByTimestampDesc(false);
+    // Marquer une notification comme lue pour l'utilisateur ; null s'il ne l'a pas reçue
+    @Transactional
+    public NotificationFluxDTO marquerCommeLue(Long notificationId, Long idUser) {
+        int marquee = jdbcTemplate.update(MARQUER_LUE, Timestamp.valueOf(LocalDateTime.now()), notificationId, idUser);
+        ajusterNonLues(idUser, -marquee);
+        return entityManager.createQuery(SELECT_RECEPTION, NotificationFluxDTO.class)
+                .setParameter("idUser", idUser)
+                .setParameter("idNotification", notificationId)
+                .getResultStream()
+                .findFirst()
+                .orElse(null);
     }
 
-    // Marquer une notification comme lue
-    public Notification marquerCommeLue(Long notificationId) {
-        return notificationRepo.findById(notificationId).map(notification -> {
-            notification.setLu(true);
-            return notificationRepo.save(notification);
-        }).orElse(null);
+    /**
+     * Marque comme lues les notifications non lues de l'utilisateur existant à l'appel, par UPDATE ensemblistes
+     * de tailleTranche lignes ; les notifications distribuées pendant l'opération restent non lues.
+     *
+     * @return le nombre de notifications marquées
+     */
+    public long marquerToutesCommeLues(Long idUser) {
+        Long dernier = jdbcTemplate.queryForObject(MAX_NON_LUE, Long.class, idUser);
+        if (dernier == null) {
+            return 0;
+        }
+        Timestamp maintenant = Timestamp.valueOf(LocalDateTime.now());
+        long total = 0;
+        int marquees;
+        do {
+            marquees = jdbcTemplate.update(MARQUER_LUES, maintenant, idUser, dernier, tailleTranche);
+            total += marquees;
+            ajusterNonLues(idUser, -marquees);
+        } while (marquees == tailleTranche);
+        return total;
     }
 
-    // Marquer toutes les notifications comme lues
-    public void marquerToutesCommeLues() {
-        List<Notification> notificationsNonLues = getNotificationsNonLues();
-        notificationsNonLues.forEach(notification -> {
-            notification.setLu(true);
-            notificationRepo.save(notification);
+    // Compter les notifications non lues de l'utilisateur
+    public Long countNotificationsNonLues(Long idUser) {
+        CompteurNonLues compteur = nonLues.get(idUser);
+        Long nombre = compteur != null ? compteur.lire() : null;
+        if (nombre != null) {
+            return nombre;
+        }
+        if (compteur == null) {
+            // enregistré avant la lecture : les variations commitées pendant le COUNT s'y ajoutent
+            CompteurNonLues nouveau = new CompteurNonLues();
+            if (nonLues.putIfAbsent(idUser, nouveau) == null) {
+                try {
+                    return nouveau.charger(compterEnBase(idUser));
+                } catch (RuntimeException e) {
+                    nonLues.remove(idUser, nouveau);
+                    throw e;
+                }
+            }
+        }
+        // compteur en cours de chargement par une autre demande
+        return compterEnBase(idUser);
+    }
+
+    private long compterEnBase(Long idUser) {
+        Long compte = jdbcTemplate.queryForObject(COUNT_NON_LUES, Long.class, idUser);
+        return compte != null ? compte : 0;
+    }
+
+    /**
+     * Distribue la notification aux utilisateurs actifs, non lue pour chacun.
+     */
+    private void distribuer(Notification notification) {
+        List<Long> destinataires = jdbcTemplate.queryForList(SELECT_DESTINATAIRES, Long.class);
+        if (destinataires.isEmpty()) {
+            return;
+        }
+        Timestamp timestamp = Timestamp.valueOf(notification.getTimestamp());
+        jdbcTemplate.batchUpdate(INSERT_DESTINATAIRE, destinataires, destinataires.size(), (ps, idUser) -> {
+            ps.setLong(1, notification.getId());
+            ps.setLong(2, idUser);
+            ps.setTimestamp(3, timestamp);
         });
+        destinataires.forEach(idUser -> ajusterNonLues(idUser, 1));
+    }
+
+    /**
+     * Ajuste le nombre en mémoire de l'utilisateur, après le commit de la transaction en cours s'il y en a une.
+     */
+    private void ajusterNonLues(Long idUser, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    appliquerNonLues(idUser, delta);
+                }
+            });
+        } else {
+            appliquerNonLues(idUser, delta);
+        }
+    }
+
+    private void appliquerNonLues(Long idUser, long delta) {
+        CompteurNonLues compteur = nonLues.get(idUser);
+        if (compteur != null) {
+            compteur.ajouter(delta);
+        }
+    }
+
+    /**
+     * Nombre de non lues d'un utilisateur ; avant la fin de sa lecture en base, variations reçues entre-temps
+     * (éventuellement négatives), ajoutées au nombre lu.
+     */
+    private static final class CompteurNonLues {
+        private long nombre;
+        private boolean charge;
+
+        synchronized Long lire() {
+            return charge ? nombre : null;
+        }
+
+        synchronized long charger(long compte) {
+            nombre = Math.max(0, nombre + compte);
+            charge = true;
+            return nombre;
+        }
+
+        synchronized void ajouter(long delta) {
+            nombre = charge ? Math.max(0, nombre + delta) : nombre + delta;
+        }
     }
 
-    // Compter les notifications non lues
-    public Long countNotificationsNonLues() {
-        return notificationRepo.countByLu(false);
+    private static String curseur(NotificationFluxDTO ligne) {
+        LocalDateTime t = ligne.getTimestamp();
+        long micros = t.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + t.getNano() / 1000;
+        return micros + "_" + ligne.getIdDestinataire();
     }
 
     // Obtenir l'icône selon le type de fichier
@@ -0,0 +1,181 @@
+package tn.esprit.ruya.partitionnement;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Partitionnement Oracle des tables volumineuses par mois de création (CREATED_AT), en intervalles :
+ * Oracle crée seul la partition de chaque nouveau mois. Les requêtes du dashboard, toutes filtrées par
+ * createdAt BETWEEN, ne lisent alors que les partitions de la période.
+ * <p>
+ * Au démarrage (avant les autres runners, donc avant le générateur de données), chaque table encore simple
+ * est convertie en ligne ; ses index secondaires deviennent locaux, la clé primaire reste globale.
+ * La maintenance mensuelle compresse les partitions anciennes et peut détacher les plus anciennes vers une
+ * table d'archive par échange de partition (CARTHAGO et CTR seulement : FICHIERS est référencée par
+ * TRAITEMENT et NOTIFICATIONS).
+ * Nécessite Oracle 12.2 ou plus (conversion en ligne, CREATE TABLE ... FOR EXCHANGE).
+ */
+@Service
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "ruya.partitionnement", name = "actif", havingValue = "true")
+public class PartitionnementService implements ApplicationRunner {
+
+    private static final List<String> TABLES = List.of("CARTHAGO", "FICHIERS", "CTR");
+    private static final List<String> TABLES_DETACHABLES = List.of("CARTHAGO", "CTR");
+    private static final String COLONNE_PARTITION = "CREATED_AT";
+    private static final String PARTITION_INITIALE = "P_INITIALE";
+
+    private static final Pattern HIGH_VALUE = Pattern.compile("(\\d{4})-(\\d{2})-(\\d{2})");
+    private static final DateTimeFormatter FORMAT_ARCHIVE = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LocalDate debut;
+    private final int compresserApresMois;
+    private final int detacherApresMois;
+
+    public PartitionnementService(JdbcTemplate jdbcTemplate,
+                                  @Value("${ruya.partitionnement.debut:2020-01-01}") String debut,
+                                  @Value("${ruya.partitionnement.compresser-apres-mois:3}") int compresserApresMois,
+                                  @Value("${ruya.partitionnement.detacher-apres-mois:0}") int detacherApresMois) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.debut = LocalDate.parse(debut).withDayOfMonth(1);
+        this.compresserApresMois = compresserApresMois;
+        this.detacherApresMois = detacherApresMois;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        for (String table : TABLES) {
+            try {
+                partitionner(table);
+            } catch (RuntimeException e) {
+                System.err.println("❌ Partitionnement impossible de " + table + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Convertit la table en partitions mensuelles par intervalle, si elle ne l'est pas déjà.
+     */
+    void partitionner(String table) {
+        Integer partitionnee = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM USER_PART_TABLES WHERE TABLE_NAME = ?", Integer.class, table);
+        if (partitionnee != null && partitionnee > 0) {
+            return;
+        }
+        // index secondaires → locaux ; les index des contraintes PK / UNIQUE restent globaux
+        List<String> indexLocaux = jdbcTemplate.queryForList(
+                "SELECT i.INDEX_NAME FROM USER_INDEXES i WHERE i.TABLE_NAME = ? AND i.UNIQUENESS = 'NONUNIQUE' " +
+                "AND NOT EXISTS (SELECT 1 FROM USER_CONSTRAINTS c WHERE c.INDEX_NAME = i.INDEX_NAME)",
+                String.class, table);
+        String clauseIndex = indexLocaux.isEmpty() ? "" : " UPDATE INDEXES ("
+                + indexLocaux.stream().map(i -> i + " LOCAL").collect(Collectors.joining(", ")) + ")";
+
+        long debutMs = System.currentTimeMillis();
+        jdbcTemplate.execute("ALTER TABLE " + table + " MODIFY PARTITION BY RANGE (" + COLONNE_PARTITION + ") " +
+                "INTERVAL (NUMTOYMINTERVAL(1, 'MONTH')) " +
+                "(PARTITION " + PARTITION_INITIALE + " VALUES LESS THAN (TIMESTAMP '" + debut + " 00:00:00')) " +
+                "ONLINE" + clauseIndex);
+        System.out.println("✅ Table " + table + " partitionnée par mois (" + indexLocaux.size() + " index locaux, "
+                + (System.currentTimeMillis() - debutMs) + " ms)");
+    }
+
+    /**
+     * Maintenance mensuelle : compression des partitions de plus de compresser-apres-mois,
+     * puis détachement de celles de plus de detacher-apres-mois (0 : jamais).
+     */
+    @Scheduled(cron = "${ruya.partitionnement.maintenance-cron:0 30 1 1 * *}")
+    public void maintenir() {
+        LocalDate moisCourant = LocalDate.now().withDayOfMonth(1);
+        for (String table : TABLES) {
+            try {
+                for (PartitionMois partition : partitions(table)) {
+                    if (detacherApresMois > 0 && TABLES_DETACHABLES.contains(table)
+                            && !partition.fin.isAfter(moisCourant.minusMonths(detacherApresMois))) {
+                        detacher(table, partition);
+                    } else if (compresserApresMois > 0 && !partition.compressee
+                            && !partition.fin.isAfter(moisCourant.minusMonths(compresserApresMois))) {
+                        compresser(table, partition);
+                    }
+                }
+            } catch (RuntimeException e) {
+                System.err.println("❌ Maintenance des partitions de " + table + " en échec : " + e.getMessage());
+            }
+        }
+    }
+
+    private void compresser(String table, PartitionMois partition) {
+        jdbcTemplate.execute("ALTER TABLE " + table + " MOVE PARTITION " + partition.nom
+                + " ROW STORE COMPRESS BASIC ONLINE UPDATE INDEXES");
+        System.out.println("✅ Partition " + table + "." + partition.nom + " (" + partition.mois() + ") compressée");
+    }
+
+    /**
+     * Échange la partition avec une table d'archive vide de même structure, puis supprime la partition
+     * devenue vide : aucune ligne n'est copiée.
+     */
+    private void detacher(String table, PartitionMois partition) {
+        String archive = table + "_ARCH_" + partition.mois().format(FORMAT_ARCHIVE);
+        jdbcTemplate.execute("CREATE TABLE " + archive + " FOR EXCHANGE WITH TABLE " + table);
+        jdbcTemplate.execute("ALTER TABLE " + table + " EXCHANGE PARTITION " + partition.nom
+                + " WITH TABLE " + archive + " UPDATE GLOBAL INDEXES");
+        jdbcTemplate.execute("ALTER TABLE " + table + " DROP PARTITION " + partition.nom + " UPDATE GLOBAL INDEXES");
+        System.out.println("✅ Partition " + table + "." + partition.nom + " détachée vers " + archive);
+    }
+
+    /**
+     * Partitions mensuelles de la table (hors partition initiale), de la plus ancienne à la plus récente.
+     */
+    private List<PartitionMois> partitions(String table) {
+        return jdbcTemplate.query(
+                        "SELECT PARTITION_NAME, HIGH_VALUE, COMPRESSION FROM USER_TAB_PARTITIONS " +
+                        "WHERE TABLE_NAME = ? ORDER BY PARTITION_POSITION",
+                        (rs, n) -> {
+                            String nom = rs.getString(1);
+                            // HIGH_VALUE est un LONG contenant l'expression de borne : TIMESTAMP' 2025-02-01 00:00:00'
+                            Matcher m = HIGH_VALUE.matcher(rs.getString(2));
+                            if (PARTITION_INITIALE.equals(nom) || !m.find()) {
+                                return null;
+                            }
+                            LocalDate fin = LocalDate.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)),
+                                    Integer.parseInt(m.group(3)));
+                            return new PartitionMois(nom, fin, "ENABLED".equals(rs.getString(3)));
+                        }, table)
+                .stream()
+                .filter(p -> p != null)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Partition d'un mois : nom (généré par Oracle pour les intervalles) et borne haute exclusive.
+     */
+    private static final class PartitionMois {
+        private final String nom;
+        private final LocalDate fin;
+        private final boolean compressee;
+
+        private PartitionMois(String nom, LocalDate fin, boolean compressee) {
+            this.nom = nom;
+            this.fin = fin;
+            this.compressee = compressee;
+        }
+
+        private LocalDate mois() {
+            return fin.minusMonths(1);
+        }
+    }
+}
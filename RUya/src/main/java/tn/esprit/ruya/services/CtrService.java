@@ -0,0 +1,288 @@
+package tn.esprit.ruya.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tn.esprit.ruya.models.CTR;
+import tn.esprit.ruya.models.CtrAgregatDTO;
+import tn.esprit.ruya.models.CtrListeDTO;
+import tn.esprit.ruya.models.PageDTO;
+import tn.esprit.ruya.models.StatutCtrLotDTO;
+import tn.esprit.ruya.models.StatutCtrLotResultatDTO;
+import tn.esprit.ruya.repositories.CtrRepository;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Lectures des CTR d'une période sous trois formes, selon le besoin du client :
+ * page de lignes projetées, flux NDJSON pour les grandes périodes, ou totaux par statut et type d'opération.
+ * Aucune ne charge l'entité CTR ni son utilisateur.
+ * <p>
+ * Écritures : modification partielle d'un CTR sous verrouillage optimiste (VERSION), et changement de statut
+ * d'un lot de CTR par UPDATE ensemblistes.
+ */
+@Service
+public class CtrService {
+
+    private static final String SELECT_LISTE =
+            "SELECT new tn.esprit.ruya.models.CtrListeDTO(c.id, c.numeroCtr, c.typeOperation, c.statutCtr, " +
+            "c.codeValeur, c.montant, c.nombreElements, c.equilibre, c.difference, c.sessionCtr, c.operateurCtr, " +
+            "c.createdAt, c.dateTraitement, c.user.id) FROM CTR c WHERE c.createdAt BETWEEN :start AND :end " +
+            "ORDER BY c.createdAt DESC, c.id DESC";
+    private static final String COUNT_LISTE =
+            "SELECT COUNT(c) FROM CTR c WHERE c.createdAt BETWEEN :start AND :end";
+    private static final String SELECT_AGREGATS =
+            "SELECT new tn.esprit.ruya.models.CtrAgregatDTO(c.statutCtr, c.typeOperation, COUNT(c), " +
+            "COALESCE(SUM(c.montant), 0.0), COALESCE(SUM(c.nombreElements), 0), " +
+            "SUM(CASE WHEN c.equilibre = true THEN 1 ELSE 0 END)) " +
+            "FROM CTR c WHERE c.createdAt BETWEEN :start AND :end " +
+            "GROUP BY c.statutCtr, c.typeOperation ORDER BY c.statutCtr, c.typeOperation";
+    private static final String SELECT_FLUX =
+            "SELECT ID_CTR, NUMERO_CTR, TYPE_OPERATION, STATUT_CTR, CODE_VALEUR, MONTANT, NOMBRE_ELEMENTS, EQUILIBRE, " +
+            "DIFFERENCE, SESSION_CTR, OPERATEUR_CTR, CREATED_AT, DATE_TRAITEMENT, ID_USER FROM CTR " +
+            "WHERE CREATED_AT BETWEEN ? AND ? ORDER BY CREATED_AT, ID_CTR";
+
+    private static final String UPDATE_STATUT_LOT =
+            "UPDATE CTR SET STATUT_CTR = :nouveau, OPERATEUR_CTR = COALESCE(:operateur, OPERATEUR_CTR), " +
+            "DATE_TRAITEMENT = CASE WHEN :nouveau = 'TRAITE' THEN :maintenant ELSE DATE_TRAITEMENT END, " +
+            "UPDATED_AT = :maintenant, VERSION = VERSION + 1 " +
+            "WHERE STATUT_CTR = :actuel AND ID_CTR IN (:ids)";
+
+    public static final Set<String> STATUTS = Set.of("RECU", "EN_COURS", "TRAITE", "EQUILIBRE", "FAUX");
+
+    // champs gérés par le serveur : identité, horodatages, équilibrage calculé
+    private static final Set<String> CHAMPS_NON_MODIFIABLES = Set.of("id", "user", "createdAt", "updatedAt",
+            "nombreCarthago", "nombreFichiers", "montantCarthago", "montantFichiers", "equilibre", "difference");
+
+    // limite Oracle des listes IN
+    private static final int TAILLE_TRANCHE_IDS = 1000;
+
+    private static final byte[] FIN_LIGNE = {'\n'};
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final CtrRepository ctrRepository;
+    private final EquilibrageCtrService equilibrageCtrService;
+    private final LatencesCtr latencesCtr;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final JdbcTemplate jdbcFlux;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writerLigne;
+    private final int tailleLotMax;
+
+    public CtrService(CtrRepository ctrRepository,
+                      EquilibrageCtrService equilibrageCtrService,
+                      LatencesCtr latencesCtr,
+                      NamedParameterJdbcTemplate jdbcTemplate,
+                      DataSource dataSource,
+                      ObjectMapper objectMapper,
+                      @Value("${ruya.ctr.flux.fetch-size:1000}") int fetchSize,
+                      @Value("${ruya.ctr.lot-max:10000}") int tailleLotMax) {
+        this.ctrRepository = ctrRepository;
+        this.equilibrageCtrService = equilibrageCtrService;
+        this.latencesCtr = latencesCtr;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.tailleLotMax = tailleLotMax;
+        // JdbcTemplate dédié : le fetch size ne s'applique qu'au flux
+        this.jdbcFlux = new JdbcTemplate(dataSource);
+        this.jdbcFlux.setFetchSize(fetchSize);
+        // la réponse reste ouverte entre deux lignes
+        this.writerLigne = objectMapper.writerFor(CtrListeDTO.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * Page des CTR créés sur la période, du plus récent au plus ancien.
+     * Le comptage n'est lancé que si la page ne suffit pas à le déduire.
+     */
+    @Transactional(readOnly = true)
+    public PageDTO<CtrListeDTO> rechercher(LocalDateTime start, LocalDateTime end, int page, int taille) {
+        List<CtrListeDTO> contenu = entityManager.createQuery(SELECT_LISTE, CtrListeDTO.class)
+                .setParameter("start", start)
+                .setParameter("end", end)
+                .setFirstResult(page * taille)
+                .setMaxResults(taille)
+                .getResultList();
+
+        long total;
+        if (contenu.size() < taille && (page == 0 || !contenu.isEmpty())) {
+            total = (long) page * taille + contenu.size();
+        } else {
+            total = entityManager.createQuery(COUNT_LISTE, Long.class)
+                    .setParameter("start", start)
+                    .setParameter("end", end)
+                    .getSingleResult();
+        }
+        return new PageDTO<>(contenu, page, taille, total);
+    }
+
+    /**
+     * Totaux par (statutCtr, typeOperation) des CTR créés sur la période.
+     */
+    @Transactional(readOnly = true)
+    public List<CtrAgregatDTO> agreger(LocalDateTime start, LocalDateTime end) {
+        return entityManager.createQuery(SELECT_AGREGATS, CtrAgregatDTO.class)
+                .setParameter("start", start)
+                .setParameter("end", end)
+                .getResultList();
+    }
+
+    /**
+     * Écrit les CTR de la période, un objet JSON par ligne, au fil de la lecture du curseur :
+     * la mémoire utilisée ne dépend pas du nombre de lignes.
+     *
+     * @return le nombre de CTR écrits
+     */
+    public long ecrireFlux(LocalDateTime start, LocalDateTime end, OutputStream sortie) {
+        long[] ecrits = {0};
+        jdbcFlux.query(SELECT_FLUX, rs -> {
+            try {
+                writerLigne.writeValue(sortie, ligne(rs));
+                sortie.write(FIN_LIGNE);
+                ecrits[0]++;
+            } catch (IOException e) {
+                // client déconnecté : la lecture s'arrête avec l'exception
+                throw new UncheckedIOException(e);
+            }
+        }, Timestamp.valueOf(start), Timestamp.valueOf(end));
+        return ecrits[0];
+    }
+
+    /**
+     * Applique au CTR les seuls champs présents dans modifications.
+     * Si modifications porte « version », elle doit être celle du CTR en base ; dans tous les cas une écriture
+     * concurrente entre la lecture et l'enregistrement est refusée.
+     *
+     * @return le CTR modifié, ou null s'il n'existe pas
+     * @throws IllegalArgumentException champ inconnu, non modifiable ou de valeur invalide
+     * @throws OptimisticLockingFailureException version périmée
+     */
+    @Transactional
+    public CTR modifier(Long id, JsonNode modifications) {
+        if (modifications == null || !modifications.isObject()) {
+            throw new IllegalArgumentException("Objet JSON attendu");
+        }
+        CTR ctr = ctrRepository.findById(id).orElse(null);
+        if (ctr == null) {
+            return null;
+        }
+
+        ObjectNode champs = ((ObjectNode) modifications).deepCopy();
+        JsonNode version = champs.remove("version");
+        if (version != null && !version.isNull() && version.asLong() != ctr.getVersion()) {
+            throw new OptimisticLockingFailureException("CTR " + id + " modifié entre-temps (version "
+                    + ctr.getVersion() + ", attendue " + version.asLong() + ")");
+        }
+        champs.fieldNames().forEachRemaining(champ -> {
+            if (CHAMPS_NON_MODIFIABLES.contains(champ)) {
+                throw new IllegalArgumentException("Champ non modifiable : " + champ);
+            }
+        });
+        JsonNode statut = champs.get("statutCtr");
+        if (statut != null && !STATUTS.contains(statut.asText())) {
+            throw new IllegalArgumentException("Statut CTR invalide : " + statut.asText());
+        }
+
+        String ancienneSession = ctr.getSessionCtr();
+        LatencesCtr.Jalons avant = LatencesCtr.Jalons.de(ctr);
+        try {
+            objectMapper.readerForUpdating(ctr)
+                    .with(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                    .readValue(champs);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Modification invalide : " + e.getMessage());
+        }
+        CTR modifie = ctrRepository.saveAndFlush(ctr);
+        latencesCtr.changer(avant, LatencesCtr.Jalons.de(modifie));
+        if (!Objects.equals(ancienneSession, modifie.getSessionCtr())) {
+            equilibrageCtrService.signaler(ancienneSession);
+        }
+        return modifie;
+    }
+
+    /**
+     * Passe de statutActuel à nouveauStatut les CTR du lot qui sont encore dans statutActuel,
+     * par un UPDATE par tranche de 1000 identifiants, le tout dans une transaction.
+     * Chaque CTR modifié change de version : un PATCH préparé sur l'ancienne version est refusé.
+     */
+    @Transactional
+    public StatutCtrLotResultatDTO changerStatut(StatutCtrLotDTO lot) {
+        long debut = System.currentTimeMillis();
+        if (!STATUTS.contains(lot.getStatutActuel()) || !STATUTS.contains(lot.getNouveauStatut())) {
+            throw new IllegalArgumentException("Statuts CTR attendus parmi " + STATUTS);
+        }
+        if (lot.getStatutActuel().equals(lot.getNouveauStatut())) {
+            throw new IllegalArgumentException("Le nouveau statut doit différer du statut actuel");
+        }
+        List<Long> ids = lot.getIds() == null ? List.of()
+                : lot.getIds().stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        if (ids.isEmpty() || ids.size() > tailleLotMax) {
+            throw new IllegalArgumentException("Le lot doit contenir de 1 à " + tailleLotMax + " CTR");
+        }
+
+        // à la microseconde, précision de DATE_TRAITEMENT : les CTR traités sont relus par cet horodatage
+        LocalDateTime maintenant = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        MapSqlParameterSource parametres = new MapSqlParameterSource()
+                .addValue("nouveau", lot.getNouveauStatut())
+                .addValue("actuel", lot.getStatutActuel())
+                .addValue("operateur", lot.getOperateurCtr(), Types.VARCHAR)
+                .addValue("maintenant", Timestamp.valueOf(maintenant));
+        int misAJour = 0;
+        for (int i = 0; i < ids.size(); i += TAILLE_TRANCHE_IDS) {
+            parametres.addValue("ids", ids.subList(i, Math.min(i + TAILLE_TRANCHE_IDS, ids.size())));
+            misAJour += jdbcTemplate.update(UPDATE_STATUT_LOT, parametres);
+        }
+        if ("TRAITE".equals(lot.getNouveauStatut()) && misAJour > 0) {
+            latencesCtr.enregistrerHorodatees(maintenant);
+        }
+
+        StatutCtrLotResultatDTO resultat = new StatutCtrLotResultatDTO();
+        resultat.setStatutActuel(lot.getStatutActuel());
+        resultat.setNouveauStatut(lot.getNouveauStatut());
+        resultat.setDemandes(ids.size());
+        resultat.setMisAJour(misAJour);
+        resultat.setIgnores(ids.size() - misAJour);
+        resultat.setDureeMs(System.currentTimeMillis() - debut);
+        return resultat;
+    }
+
+    private static CtrListeDTO ligne(ResultSet rs) throws SQLException {
+        Timestamp creation = rs.getTimestamp(12);
+        Timestamp traitement = rs.getTimestamp(13);
+        return new CtrListeDTO(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5),
+                rs.getObject(6) != null ? rs.getDouble(6) : null,
+                rs.getObject(7) != null ? rs.getInt(7) : null,
+                rs.getObject(8) != null ? rs.getBoolean(8) : null,
+                rs.getObject(9) != null ? rs.getDouble(9) : null,
+                rs.getString(10), rs.getString(11),
+                creation != null ? creation.toLocalDateTime() : null,
+                traitement != null ? traitement.toLocalDateTime() : null,
+                rs.getLong(14));
+    }
+}
@@ -2,6 +2,7 @@ package tn.esprit.ruya.services;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import tn.esprit.ruya.Carthago.service.MetriquesImages;
 import tn.esprit.ruya.models.*;
 import tn.esprit.ruya.repositories.CarthageRepository;
 import tn.esprit.ruya.repositories.FichierRepository;
@@ -16,6 +17,8 @@ import java.util.List;
 @Service
 public class DashboardService {
 
+    private static final DateTimeFormatter FORMAT_HEURE = DateTimeFormatter.ofPattern("dd/MM HH'h'");
+
     @Autowired
     private CarthageRepository carthagoRepository;
 
@@ -25,6 +28,11 @@ public class DashboardService {
     @Autowired
     private CtrRepository ctrRepository;
 
+    @Autowired
+    private MetriquesImages metriquesImages;
+
+    private final DashboardConfigDTO configuration = configurationDefaut();
+
     public DashboardResponseDTO getDashboardData() {
         LocalDate today = LocalDate.now();
         LocalDateTime startOfDay = today.atStartOfDay();
@@ -44,6 +52,7 @@ public class DashboardService {
         cardData.add(buildCarthagoAvantCTRCardCorrected(startOfDay, endOfDay));
         cardData.add(buildCTRCardCorrected(startOfDay, endOfDay));
         cardData.add(buildActionsControlesCardCorrected(startOfDay, endOfDay));
+        cardData.add(buildImagesCard(startOfDay, endOfDay));
 
         response.setCardData(cardData);
         return response;
@@ -306,6 +315,64 @@ public class DashboardService {
         return card;
     }
 
+    /**
+     * QUALITÉ DES IMAGES - Chèques par statut d'image, retard et temps de résolution du statut 3
+     */
+    private CardDataDTO buildImagesCard(LocalDateTime start, LocalDateTime end) {
+        CardDataDTO card = new CardDataDTO();
+        card.setTitle("Qualité des images");
+        card.setIcon("fas fa-image");
+        card.setType("default");
+
+        List<DataRowDTO> data = new ArrayList<>();
+
+        try {
+            ImagesMetriquesDTO images = getImagesMetriques(start, end);
+            boolean alerte = configuration.doitDeclencherAlerte("MAX_IMAGES_STATUT3", images.getStatut3());
+            if (alerte) {
+                card.setType("warning");
+            }
+
+            data.add(new DataRowDTO("Images statut 1", safeIntValue(images.getStatut1()), null, "success"));
+            data.add(new DataRowDTO("Images statut 2", safeIntValue(images.getStatut2()), null, null));
+            data.add(new DataRowDTO("Images statut 3 en attente", safeIntValue(images.getStatut3()),
+                    images.getPlusAncienStatut3() != null
+                            ? "Depuis " + images.getPlusAncienStatut3().format(FORMAT_HEURE) : null,
+                    alerte ? "danger" : null));
+
+            if (images.getNombreResolutions() != null && images.getNombreResolutions() > 0) {
+                data.add(new DataRowDTO("Résolution statut 3 (médiane / p90)",
+                        "≤ " + images.getMedianeResolutionMinutes() + " min / ≤ " + images.getP90ResolutionMinutes() + " min",
+                        images.getNombreResolutions() + " résolues", null));
+            }
+
+        } catch (Exception e) {
+            data.add(new DataRowDTO("Erreur", "Données indisponibles", null, "danger"));
+        }
+
+        card.setData(data);
+        return card;
+    }
+
+    /**
+     * Métriques des images sur la période : compteurs en mémoire s'ils la couvrent,
+     * sinon simples comptes par statut (sans détail horaire ni résolution).
+     */
+    public ImagesMetriquesDTO getImagesMetriques(LocalDateTime start, LocalDateTime end) {
+        if (metriquesImages.couvre(start)) {
+            return metriquesImages.instantane(start, end);
+        }
+        ImagesMetriquesDTO images = new ImagesMetriquesDTO();
+        images.setDebut(start);
+        images.setFin(end);
+        images.setStatut1(carthagoRepository.countByCreatedAtBetweenAndStatutImage(start, end, 1));
+        images.setStatut2(carthagoRepository.countByCreatedAtBetweenAndStatutImage(start, end, 2));
+        images.setStatut3(carthagoRepository.countByCreatedAtBetweenAndStatutImage(start, end, 3));
+        images.setParHeure(new ArrayList<>());
+        images.setNombreResolutions(0L);
+        return images;
+    }
+
     /**
      * CALCUL D'ÉQUILIBRAGE CORRIGÉ - Somme Fichiers + Carthago vs CTR
      */
@@ -428,6 +495,26 @@ public class DashboardService {
                         fichiersNonParvenus + " fichiers générés non parvenus à Carthago", "ALERTE"));
             }
 
+            // Vérification remises en double (positionnées par le détecteur à la création / à l'import)
+            Long remisesDouble = carthagoRepository.countByCreatedAtBetweenAndRemiseDouble(start, end, true);
+            if (remisesDouble > 0) {
+                anomalies.add(new AnomalieDTO("REMISE_DOUBLE",
+                        remisesDouble + " chèques remis en double détectés", "ALERTE"));
+            }
+
+            // Vérification images bloquées en statut 3 (elles retardent la génération CTR)
+            ImagesMetriquesDTO images = getImagesMetriques(start, end);
+            if (configuration.doitDeclencherAlerte("MAX_IMAGES_STATUT3", images.getStatut3())) {
+                AnomalieDTO anomalie = new AnomalieDTO("IMAGES_STATUT3",
+                        images.getStatut3() + " images en statut 3 en attente"
+                                + (images.getPlusAncienStatut3() != null
+                                ? " (la plus ancienne depuis " + images.getPlusAncienStatut3().format(FORMAT_HEURE) + ")" : ""),
+                        "ALERTE");
+                anomalie.setValeurDetectee(images.getStatut3());
+                anomalie.setSeuilDeReference(configuration.getSeuils().get("MAX_IMAGES_STATUT3"));
+                anomalies.add(anomalie);
+            }
+
             // Vérification chèques à vérifier
             Long chequesAVerifier = carthagoRepository.countByCreatedAtBetweenAndAVerifier(start, end, true);
             if (chequesAVerifier > 10) {
@@ -508,6 +595,12 @@ public class DashboardService {
         return (int) value;
     }
 
+    private static DashboardConfigDTO configurationDefaut() {
+        DashboardConfigDTO config = new DashboardConfigDTO();
+        config.initialiserConfigurationDefaut();
+        return config;
+    }
+
     private String formatMontant(Double montant) {
         if (montant == null || montant == 0.0) {
             return "0 DT";
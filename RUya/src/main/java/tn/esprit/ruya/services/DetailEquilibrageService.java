@@ -0,0 +1,221 @@
+package tn.esprit.ruya.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.stereotype.Service;
+import tn.esprit.ruya.models.CTR;
+import tn.esprit.ruya.models.DetailEquilibrageDTO;
+import tn.esprit.ruya.models.EquilibrageResultDTO;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Explique l'écart d'équilibrage d'un CTR.
+ * <p>
+ * La ventilation des sources de la session est lue dans CTR_CONTRIBUTIONS, tenue par {@link EquilibrageCtrService}
+ * à chaque calcul : une seule requête sur l'index de session, sans relire CARTHAGO ni FICHIERS.
+ * <p>
+ * Pour un petit écart, les chèques et fichiers de la session dont le montant ne dépasse pas l'écart sont lus
+ * (les plus gros d'abord, au plus candidats-max-lignes) et combinés par 1 à 3 : sommes exactes au millime.
+ * Un excédent est cherché parmi les lignes prises en compte, un manque parmi les lignes écartées.
+ * Quand l'écart en nombre est de 1 à 3 éléments dans le même sens, seules les combinaisons de cette taille
+ * sont retenues.
+ */
+@Service
+public class DetailEquilibrageService {
+
+    private static final String SELECT_CONTRIBUTIONS =
+            "SELECT SOURCE, INCLUS, TYPE_FICHIER, BANQUE, TRANCHE_MONTANT, NOMBRE, MONTANT, MONTANT_MIN, MONTANT_MAX " +
+            "FROM CTR_CONTRIBUTIONS WHERE SESSION_CTR = ? " +
+            "ORDER BY INCLUS DESC, SOURCE, TYPE_FICHIER, BANQUE, TRANCHE_MONTANT";
+    private static final String SELECT_CANDIDATS =
+            "SELECT SOURCE, ID, REFERENCE, MONTANT FROM (" +
+            "SELECT 'CARTHAGO' SOURCE, ID_CARTHAGO ID, NUMERO_CHEQUE REFERENCE, MONTANT FROM CARTHAGO " +
+            "WHERE SESSION_DATE = ? AND %s AND MONTANT > 0 AND MONTANT <= ? " +
+            "UNION ALL " +
+            "SELECT 'FICHIER', ID_FICHIER, NOM_FICHIER, MONTANT FROM FICHIERS " +
+            "WHERE SESSION_ID = ? AND %s AND MONTANT > 0 AND MONTANT <= ?) " +
+            "ORDER BY MONTANT DESC, SOURCE, ID FETCH FIRST ? ROWS ONLY";
+    private static final String SELECT_CANDIDATS_INCLUS = String.format(SELECT_CANDIDATS,
+            EquilibrageCtrService.INCLUS_CARTHAGO, "(" + EquilibrageCtrService.INCLUS_FICHIER + ")");
+    private static final String SELECT_CANDIDATS_EXCLUS = String.format(SELECT_CANDIDATS,
+            EquilibrageCtrService.EXCLUS_CARTHAGO, EquilibrageCtrService.EXCLUS_FICHIER);
+
+    private static final int MILLIMES = 1000;
+    private static final int ELEMENTS_MAX = 3;
+
+    private final EquilibrageCtrService equilibrageCtrService;
+    private final JdbcTemplate jdbcTemplate;
+    private final double ecartMax;
+    private final int lignesMax;
+    private final int candidatsMax;
+
+    public DetailEquilibrageService(EquilibrageCtrService equilibrageCtrService,
+                                    JdbcTemplate jdbcTemplate,
+                                    @Value("${ruya.equilibrage.detail.ecart-max:100000}") double ecartMax,
+                                    @Value("${ruya.equilibrage.detail.candidats-max-lignes:2000}") int lignesMax,
+                                    @Value("${ruya.equilibrage.detail.candidats-max:10}") int candidatsMax) {
+        this.equilibrageCtrService = equilibrageCtrService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.ecartMax = ecartMax;
+        this.lignesMax = lignesMax;
+        this.candidatsMax = candidatsMax;
+    }
+
+    /**
+     * Détail de l'équilibrage de la session du CTR, recalculée d'abord si elle a changé.
+     */
+    public DetailEquilibrageDTO detailler(CTR ctr) {
+        String session = ctr.getSessionCtr();
+        DetailEquilibrageDTO detail = new DetailEquilibrageDTO();
+        detail.setIdCtr(ctr.getId());
+        detail.setSessionCtr(session);
+        detail.setContributions(new ArrayList<>());
+        detail.setCandidats(new ArrayList<>());
+
+        EquilibrageResultDTO equilibrage = equilibrageCtrService.lire(session);
+        EquilibrageCtrService.appliquer(ctr, equilibrage);
+        detail.setEquilibrage(equilibrage);
+        if (equilibrage == null) {
+            return detail;
+        }
+
+        jdbcTemplate.query(SELECT_CONTRIBUTIONS, rs -> {
+            detail.getContributions().add(new DetailEquilibrageDTO.Contribution(
+                    rs.getString(1), rs.getInt(2) == 1, rs.getString(3), rs.getString(4), tranche(rs.getInt(5)),
+                    rs.getLong(6), rs.getDouble(7),
+                    rs.getObject(8) != null ? rs.getDouble(8) : null,
+                    rs.getObject(9) != null ? rs.getDouble(9) : null));
+        }, session);
+
+        long ecart = Math.round(equilibrage.getDifference() * MILLIMES);
+        if (ecart == 0) {
+            detail.setRecherche("EQUILIBRE");
+            return detail;
+        }
+        detail.setSens(ecart > 0 ? "EXCEDENT" : "MANQUE");
+        if (Math.abs(equilibrage.getDifference()) > ecartMax) {
+            detail.setRecherche("ECART_TROP_GRAND");
+            return detail;
+        }
+
+        long cible = Math.abs(ecart);
+        double plafond = cible / (double) MILLIMES;
+        List<Ligne> lignes = jdbcTemplate.query(ecart > 0 ? SELECT_CANDIDATS_INCLUS : SELECT_CANDIDATS_EXCLUS,
+                (rs, n) -> new Ligne(rs.getString(1), rs.getLong(2), rs.getString(3),
+                        Math.round(rs.getDouble(4) * MILLIMES)),
+                new SqlParameterValue(Types.DATE, EquilibrageCtrService.dateSession(session)), plafond,
+                session, plafond, lignesMax);
+
+        // écart en nombre dans le sens de l'écart en montant : taille attendue des combinaisons
+        long ecartNombre = equilibrage.getTotalCarFich() - equilibrage.getNombreCTR();
+        long taille = ecart > 0 ? ecartNombre : -ecartNombre;
+        int min = taille >= 1 && taille <= ELEMENTS_MAX ? (int) taille : 1;
+        int max = taille >= 1 && taille <= ELEMENTS_MAX ? (int) taille : ELEMENTS_MAX;
+
+        for (List<Ligne> combinaison : combiner(lignes, cible, min, max, candidatsMax)) {
+            List<DetailEquilibrageDTO.Element> elements = combinaison.stream()
+                    .map(l -> new DetailEquilibrageDTO.Element(l.source(), l.id(), l.reference(),
+                            l.millimes() / (double) MILLIMES))
+                    .toList();
+            detail.getCandidats().add(new DetailEquilibrageDTO.Candidat(plafond, elements));
+        }
+        detail.setLignesExaminees(lignes.size());
+        detail.setRecherche("EFFECTUEE");
+        return detail;
+    }
+
+    /**
+     * Combinaisons de min à max lignes (triées par montant décroissant) dont la somme vaut exactement cible,
+     * au plus limite ; une table des montants ramène la dernière ligne de chaque combinaison à une recherche.
+     */
+    static List<List<Ligne>> combiner(List<Ligne> lignes, long cible, int min, int max, int limite) {
+        Map<Long, List<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < lignes.size(); i++) {
+            positions.computeIfAbsent(lignes.get(i).millimes(), m -> new ArrayList<>()).add(i);
+        }
+        List<List<Ligne>> resultats = new ArrayList<>();
+
+        if (min <= 1) {
+            for (int i : positions.getOrDefault(cible, List.of())) {
+                if (resultats.size() >= limite) {
+                    return resultats;
+                }
+                resultats.add(List.of(lignes.get(i)));
+            }
+        }
+        if (min <= 2 && max >= 2) {
+            for (int i = 0; i < lignes.size() && 2 * lignes.get(i).millimes() >= cible; i++) {
+                if (!completer(lignes, positions, List.of(lignes.get(i)), i, cible - lignes.get(i).millimes(),
+                        resultats, limite)) {
+                    return resultats;
+                }
+            }
+        }
+        if (max >= 3) {
+            for (int i = 0; i < lignes.size() && 3 * lignes.get(i).millimes() >= cible; i++) {
+                long resteI = cible - lignes.get(i).millimes();
+                if (resteI <= 0) {
+                    continue;
+                }
+                for (int j = i + 1; j < lignes.size() && 2 * lignes.get(j).millimes() >= resteI; j++) {
+                    long reste = resteI - lignes.get(j).millimes();
+                    if (reste <= 0) {
+                        continue;
+                    }
+                    if (!completer(lignes, positions, List.of(lignes.get(i), lignes.get(j)), j, reste,
+                            resultats, limite)) {
+                        return resultats;
+                    }
+                }
+            }
+        }
+        return resultats;
+    }
+
+    /**
+     * Ajoute les combinaisons formées du préfixe et d'une ligne d'indice supérieur à dernier valant reste.
+     *
+     * @return false si la limite est atteinte
+     */
+    private static boolean completer(List<Ligne> lignes, Map<Long, List<Integer>> positions, List<Ligne> prefixe,
+                                     int dernier, long reste, List<List<Ligne>> resultats, int limite) {
+        for (int k : positions.getOrDefault(reste, List.of())) {
+            if (k <= dernier) {
+                continue;
+            }
+            if (resultats.size() >= limite) {
+                return false;
+            }
+            List<Ligne> combinaison = new ArrayList<>(prefixe);
+            combinaison.add(lignes.get(k));
+            resultats.add(combinaison);
+        }
+        return resultats.size() < limite;
+    }
+
+    /**
+     * Libellé de la tranche d'indice donné dans {@link EquilibrageCtrService#BORNES_TRANCHES}.
+     */
+    static String tranche(int indice) {
+        double[] bornes = EquilibrageCtrService.BORNES_TRANCHES;
+        if (indice < 0) {
+            return "SANS MONTANT";
+        }
+        if (indice == 0) {
+            return "< " + (long) bornes[0];
+        }
+        if (indice >= bornes.length) {
+            return ">= " + (long) bornes[bornes.length - 1];
+        }
+        return (long) bornes[indice - 1] + " - " + (long) bornes[indice];
+    }
+
+    record Ligne(String source, long id, String reference, long millimes) {
+    }
+}
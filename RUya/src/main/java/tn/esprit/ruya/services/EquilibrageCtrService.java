@@ -0,0 +1,301 @@
+package tn.esprit.ruya.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tn.esprit.ruya.models.CTR;
+import tn.esprit.ruya.models.EquilibrageResultDTO;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Équilibrage des CTR calculé côté serveur, par session (SESSION_CTR au format yyyyMMdd, qui est aussi
+ * le SESSION_ID des fichiers et la SESSION_DATE des chèques).
+ * <p>
+ * Sources d'une session, comme pour l'équilibrage du dashboard : chèques CARTHAGO traités et fichiers
+ * générés par l'encaisse et validés BO. Les chèques et fichiers de la session sont d'abord ventilés dans
+ * CTR_CONTRIBUTIONS (source, prise en compte, type, banque, tranche de montant) en un INSERT ... SELECT ;
+ * les sources sont le total des lignes prises en compte. Elles sont comparées au total déclaré par
+ * les CTR de la session (NOMBRE_ELEMENTS, MONTANT) et reportées sur chacun d'eux en un UPDATE,
+ * le tout dans une transaction : la ventilation est toujours celle du dernier équilibrage.
+ * Les CTR de la session sont verrouillés en tête de transaction : deux recalculs concurrents de la même
+ * session (tâche de fond, lecture, écriture d'un CTR) s'exécutent l'un après l'autre.
+ * <p>
+ * Chaque écriture d'un chèque, d'un fichier ou d'un CTR signale sa session ; seules les sessions signalées
+ * sont recalculées, en tâche de fond ou au plus tard à la lecture de l'équilibrage d'un de leurs CTR.
+ * Le signal d'une écriture transactionnelle n'est pris en compte qu'après le commit.
+ */
+@Service
+public class EquilibrageCtrService {
+
+    public static final DateTimeFormatter FORMAT_SESSION = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final double TOLERANCE_MONTANT = 0.01;
+
+    // bornes hautes (exclues) des tranches de montant ; une dernière tranche ouverte les suit
+    public static final double[] BORNES_TRANCHES = {100, 1_000, 10_000, 100_000};
+
+    static final String INCLUS_CARTHAGO = "STATUT_CHEQUE = 'TRAITE'";
+    static final String INCLUS_FICHIER = "GENERE_PAR_ENCAISSE = 1 AND VALIDATION_BO = 1";
+    static final String EXCLUS_CARTHAGO = "(STATUT_CHEQUE IS NULL OR STATUT_CHEQUE <> 'TRAITE')";
+    static final String EXCLUS_FICHIER =
+            "(GENERE_PAR_ENCAISSE IS NULL OR GENERE_PAR_ENCAISSE <> 1 OR VALIDATION_BO IS NULL OR VALIDATION_BO <> 1)";
+    private static final String TRANCHE = trancheSql();
+
+    // SELECT ... FOR UPDATE : sérialise les recalculs d'une même session (ventilation effacée puis réécrite)
+    private static final String VERROU_SESSION = "SELECT ID_CTR FROM CTR WHERE SESSION_CTR = ? FOR UPDATE";
+    private static final String DELETE_CONTRIBUTIONS = "DELETE FROM CTR_CONTRIBUTIONS WHERE SESSION_CTR = ?";
+    private static final String COUNT_CONTRIBUTIONS = "SELECT COUNT(*) FROM CTR_CONTRIBUTIONS WHERE SESSION_CTR = ?";
+    private static final String INSERT_CONTRIBUTIONS =
+            "INSERT INTO CTR_CONTRIBUTIONS (SESSION_CTR, SOURCE, INCLUS, TYPE_FICHIER, BANQUE, TRANCHE_MONTANT, " +
+            "NOMBRE, MONTANT, MONTANT_MIN, MONTANT_MAX, CALCULE_LE) " +
+            "SELECT ?, 'CARTHAGO', CASE WHEN " + INCLUS_CARTHAGO + " THEN 1 ELSE 0 END, TYPE_FICHIER, " +
+            "COALESCE(BANQUE_EMETTRICE, 'INCONNUE'), " + TRANCHE + ", COUNT(*), COALESCE(SUM(MONTANT), 0), " +
+            "MIN(MONTANT), MAX(MONTANT), ? FROM CARTHAGO WHERE SESSION_DATE = ? " +
+            "GROUP BY CASE WHEN " + INCLUS_CARTHAGO + " THEN 1 ELSE 0 END, TYPE_FICHIER, " +
+            "COALESCE(BANQUE_EMETTRICE, 'INCONNUE'), " + TRANCHE + " " +
+            "UNION ALL " +
+            "SELECT ?, 'FICHIER', CASE WHEN " + INCLUS_FICHIER + " THEN 1 ELSE 0 END, TYPE_FICHIER, '-', " +
+            TRANCHE + ", COUNT(*), COALESCE(SUM(MONTANT), 0), MIN(MONTANT), MAX(MONTANT), ? " +
+            "FROM FICHIERS WHERE SESSION_ID = ? " +
+            "GROUP BY CASE WHEN " + INCLUS_FICHIER + " THEN 1 ELSE 0 END, TYPE_FICHIER, " + TRANCHE;
+    private static final String SELECT_SOURCES =
+            "SELECT COALESCE(SUM(CASE WHEN SOURCE = 'CARTHAGO' THEN NOMBRE END), 0), " +
+            "COALESCE(SUM(CASE WHEN SOURCE = 'CARTHAGO' THEN MONTANT END), 0), " +
+            "COALESCE(SUM(CASE WHEN SOURCE = 'FICHIER' THEN NOMBRE END), 0), " +
+            "COALESCE(SUM(CASE WHEN SOURCE = 'FICHIER' THEN MONTANT END), 0) " +
+            "FROM CTR_CONTRIBUTIONS WHERE SESSION_CTR = ? AND INCLUS = 1";
+    private static final String SELECT_DECLARE =
+            "SELECT COUNT(*), COALESCE(SUM(NOMBRE_ELEMENTS), 0), COALESCE(SUM(MONTANT), 0) FROM CTR WHERE SESSION_CTR = ?";
+    private static final String UPDATE_CTR =
+            "UPDATE CTR SET NOMBRE_CARTHAGO = ?, NOMBRE_FICHIERS = ?, MONTANT_CARTHAGO = ?, MONTANT_FICHIERS = ?, " +
+            "EQUILIBRE = ?, DIFFERENCE = ?, UPDATED_AT = ? WHERE SESSION_CTR = ?";
+    private static final String SELECT_SESSIONS_RECENTES =
+            "SELECT DISTINCT SESSION_CTR FROM CTR WHERE CREATED_AT >= ? AND SESSION_CTR IS NOT NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int joursDemarrage;
+
+    private final Set<String> aRecalculer = ConcurrentHashMap.newKeySet();
+
+    public EquilibrageCtrService(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${ruya.equilibrage.jours-demarrage:7}") int joursDemarrage) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.joursDemarrage = joursDemarrage;
+    }
+
+    /**
+     * Signale une écriture sur la session d'un chèque.
+     */
+    public void signaler(LocalDate sessionDate) {
+        if (sessionDate != null) {
+            signaler(sessionDate.format(FORMAT_SESSION));
+        }
+    }
+
+    /**
+     * Signale une écriture sur la session (d'un fichier ou d'un CTR) ; sans effet pour une session vide.
+     */
+    public void signaler(String session) {
+        if (session == null || session.isBlank()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    aRecalculer.add(session);
+                }
+            });
+        } else {
+            aRecalculer.add(session);
+        }
+    }
+
+    /**
+     * Recalcule la session si elle a été signalée depuis son dernier calcul.
+     *
+     * @return le nouvel équilibrage, ou null si la session était à jour
+     */
+    public EquilibrageResultDTO actualiser(String session) {
+        if (session != null && aRecalculer.remove(session)) {
+            return equilibrer(session);
+        }
+        return null;
+    }
+
+    /**
+     * Équilibrage de la session tel que ventilé dans CTR_CONTRIBUTIONS, après recalcul si elle a été signalée
+     * ou n'a jamais été ventilée.
+     *
+     * @return l'équilibrage, ou null si la session n'a pas de CTR
+     */
+    public EquilibrageResultDTO lire(String session) {
+        EquilibrageResultDTO recalcule = actualiser(session);
+        if (recalcule != null || session == null || session.isBlank()) {
+            return recalcule;
+        }
+        Integer lignes = jdbcTemplate.queryForObject(COUNT_CONTRIBUTIONS, Integer.class, session);
+        if (lignes == null || lignes == 0) {
+            return equilibrer(session);
+        }
+        double[] declare = declare(session);
+        return declare[0] == 0 ? null : resultat(declare, sources(session));
+    }
+
+    /**
+     * Équilibre la session du CTR et reporte le résultat sur l'instance (déjà à jour en base).
+     */
+    public void equilibrer(CTR ctr) {
+        appliquer(ctr, equilibrer(ctr.getSessionCtr()));
+    }
+
+    /**
+     * Reporte un équilibrage calculé sur l'instance du CTR.
+     */
+    public static void appliquer(CTR ctr, EquilibrageResultDTO equilibrage) {
+        if (equilibrage == null) {
+            return;
+        }
+        ctr.setNombreCarthago(equilibrage.getNombreCarthago().intValue());
+        ctr.setNombreFichiers(equilibrage.getNombreFichiers().intValue());
+        ctr.setMontantCarthago(equilibrage.getMontantCarthago());
+        ctr.setMontantFichiers(equilibrage.getMontantFichiers());
+        ctr.setEquilibre(equilibrage.isEquilibreTotal());
+        ctr.setDifference(equilibrage.getDifference());
+    }
+
+    /**
+     * Recalcule les sessions signalées.
+     */
+    @Scheduled(fixedDelayString = "${ruya.equilibrage.intervalle-ms:2000}")
+    public void recalculerSignalees() {
+        for (String session : new ArrayList<>(aRecalculer)) {
+            // retirée avant le calcul : un signal arrivé pendant le calcul la fait repasser au tour suivant
+            if (aRecalculer.remove(session)) {
+                try {
+                    equilibrer(session);
+                } catch (RuntimeException e) {
+                    aRecalculer.add(session);
+                    System.err.println("❌ Équilibrage de la session CTR " + session + " impossible : " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Rattrape au démarrage les sessions des CTR récents, écrites hors application ou pendant un arrêt.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rattraper() {
+        try {
+            List<String> sessions = jdbcTemplate.queryForList(SELECT_SESSIONS_RECENTES, String.class,
+                    Timestamp.valueOf(LocalDate.now().minusDays(joursDemarrage).atStartOfDay()));
+            aRecalculer.addAll(sessions);
+            System.out.println("✅ Équilibrage CTR : " + sessions.size() + " sessions à recalculer");
+        } catch (RuntimeException e) {
+            System.err.println("❌ Rattrapage de l'équilibrage CTR impossible : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ventile les sources de la session, calcule son équilibrage et le reporte sur ses CTR.
+     *
+     * @return l'équilibrage (nombreCTR et montantCTR : totaux déclarés par les CTR), ou null si la session
+     * n'a pas de CTR
+     */
+    public EquilibrageResultDTO equilibrer(String session) {
+        if (session == null || session.isBlank()) {
+            return null;
+        }
+        return transactionTemplate.execute(statut -> equilibrerSession(session));
+    }
+
+    private EquilibrageResultDTO equilibrerSession(String session) {
+        jdbcTemplate.queryForList(VERROU_SESSION, Long.class, session);
+        double[] declare = declare(session);
+        jdbcTemplate.update(DELETE_CONTRIBUTIONS, session);
+        if (declare[0] == 0) {
+            return null;
+        }
+
+        Timestamp maintenant = Timestamp.valueOf(LocalDateTime.now());
+        SqlParameterValue dateSession = new SqlParameterValue(Types.DATE, dateSession(session));
+        jdbcTemplate.update(INSERT_CONTRIBUTIONS, session, maintenant, dateSession, session, maintenant, session);
+        double[] sources = sources(session);
+        EquilibrageResultDTO equilibrage = resultat(declare, sources);
+
+        jdbcTemplate.update(UPDATE_CTR, (long) sources[0], (long) sources[2], sources[1], sources[3],
+                equilibrage.isEquilibreTotal(), equilibrage.getDifference(), maintenant, session);
+        return equilibrage;
+    }
+
+    /**
+     * [CTR, éléments, montant] déclarés par les CTR de la session.
+     */
+    private double[] declare(String session) {
+        return jdbcTemplate.queryForObject(SELECT_DECLARE, (rs, n) -> new double[]{
+                rs.getLong(1), rs.getLong(2), rs.getDouble(3)}, session);
+    }
+
+    /**
+     * [nombre, montant] CARTHAGO puis FICHIERS pris en compte, d'après la ventilation de la session.
+     */
+    private double[] sources(String session) {
+        return jdbcTemplate.queryForObject(SELECT_SOURCES, (rs, n) -> new double[]{
+                rs.getLong(1), rs.getDouble(2), rs.getLong(3), rs.getDouble(4)}, session);
+    }
+
+    private static EquilibrageResultDTO resultat(double[] declare, double[] sources) {
+        long nombreSources = (long) sources[0] + (long) sources[2];
+        double difference = sources[1] + sources[3] - declare[2];
+        return new EquilibrageResultDTO(
+                (long) sources[0], sources[1],
+                (long) sources[2], sources[3],
+                (long) declare[1], declare[2],
+                nombreSources == (long) declare[1], Math.abs(difference) < TOLERANCE_MONTANT,
+                difference);
+    }
+
+    /**
+     * Expression SQL de la tranche de MONTANT : indice de la première borne qu'il n'atteint pas, -1 sans montant.
+     */
+    private static String trancheSql() {
+        StringBuilder sql = new StringBuilder("CASE WHEN MONTANT IS NULL THEN -1");
+        for (int i = 0; i < BORNES_TRANCHES.length; i++) {
+            sql.append(" WHEN MONTANT < ").append((long) BORNES_TRANCHES[i]).append(" THEN ").append(i);
+        }
+        return sql.append(" ELSE ").append(BORNES_TRANCHES.length).append(" END").toString();
+    }
+
+    /**
+     * Date de la session, ou null (aucun chèque ne correspond) si le code n'est pas au format yyyyMMdd.
+     */
+    static Date dateSession(String session) {
+        try {
+            return Date.valueOf(LocalDate.parse(session, FORMAT_SESSION));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package tn.esprit.ruya.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tn.esprit.ruya.models.CTR;
+import tn.esprit.ruya.models.LatencesCtrDTO;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Latences des étapes de la chaîne CTR : génération → réception → traitement d'un CTR, et création d'un chèque
+ * CARTHAGO → traitement par CTR à la clôture de sa session.
+ * <p>
+ * Chaque étape terminée est comptée dans un histogramme par heure de fin d'étape, étape et opérateur CTR
+ * (classes de durée en minutes, plus la durée maximale), d'où p50 / p95 / max sans requête.
+ * Les écritures unitaires d'un CTR (création, modification, suppression) reportent leurs étapes,
+ * après le commit pour une écriture transactionnelle ; les passages à TRAITE ensemblistes (lot, clôture)
+ * relisent les lignes portant leur horodatage de traitement.
+ * <p>
+ * Comme pour les métriques des images, les histogrammes sont rechargés depuis CTR et CARTHAGO au démarrage
+ * puis recalés chaque heure : écritures hors application, réaffectation d'opérateur par lot et durées
+ * remplacées (dont le maximum ne peut être retiré) y sont corrigées. Seules les retention-heures
+ * dernières heures sont tenues.
+ */
+@Component
+public class LatencesCtr {
+
+    // bornes hautes des classes de durée (minutes) ; une dernière classe ouverte les suit
+    static final int[] BORNES_MINUTES = {1, 5, 15, 30, 60, 120, 240, 480, 720, 1440, 2880};
+    // cellule : effectifs par classe, puis durée maximale
+    private static final int MAX = BORNES_MINUTES.length + 1;
+
+    private static final String OPERATEUR_INCONNU = "INCONNU";
+
+    public enum Etape {
+        GENERATION_RECEPTION("CTR", "DATE_GENERATION", "DATE_RECEPTION", "OPERATEUR_CTR",
+                Jalons::generation, Jalons::reception),
+        RECEPTION_TRAITEMENT("CTR", "DATE_RECEPTION", "DATE_TRAITEMENT", "OPERATEUR_CTR",
+                Jalons::reception, Jalons::traitement),
+        GENERATION_TRAITEMENT("CTR", "DATE_GENERATION", "DATE_TRAITEMENT", "OPERATEUR_CTR",
+                Jalons::generation, Jalons::traitement),
+        // le chèque n'a pas d'opérateur CTR
+        CHEQUE_CTR("CARTHAGO", "CREATED_AT", "DATE_TRAITEMENT_CTR", null, null, null);
+
+        private final Function<Jalons, LocalDateTime> debut;
+        private final Function<Jalons, LocalDateTime> fin;
+        private final String selectDepuis;
+        private final String selectHorodatage;
+
+        Etape(String table, String colonneDebut, String colonneFin, String colonneOperateur,
+              Function<Jalons, LocalDateTime> debut, Function<Jalons, LocalDateTime> fin) {
+            this.debut = debut;
+            this.fin = fin;
+            String heure = "TRUNC(" + colonneFin + ", 'HH24')";
+            // minutes entières de l'intervalle TIMESTAMP, tronquées vers zéro comme Duration.toMinutes :
+            // jours, heures et minutes portent le signe de l'intervalle, les secondes (fractions comprises) sont ignorées
+            String intervalle = "(CAST(" + colonneFin + " AS TIMESTAMP) - CAST(" + colonneDebut + " AS TIMESTAMP))";
+            String duree = "(EXTRACT(DAY FROM " + intervalle + ") * 1440 + EXTRACT(HOUR FROM " + intervalle + ") * 60"
+                    + " + EXTRACT(MINUTE FROM " + intervalle + "))";
+            String select = "SELECT " + heure + ", " + (colonneOperateur != null ? colonneOperateur : "NULL") + ", "
+                    + duree + ", COUNT(*) FROM " + table + " WHERE " + colonneDebut + " IS NOT NULL AND " + colonneFin;
+            String groupBy = " GROUP BY " + heure + ", " + (colonneOperateur != null ? colonneOperateur + ", " : "") + duree;
+            this.selectDepuis = select + " >= ?" + groupBy;
+            this.selectHorodatage = select + " = ?" + groupBy;
+        }
+    }
+
+    // étapes terminées par les passages à TRAITE ensemblistes (DATE_TRAITEMENT, DATE_TRAITEMENT_CTR)
+    private static final Set<Etape> ETAPES_HORODATEES =
+            EnumSet.of(Etape.RECEPTION_TRAITEMENT, Etape.GENERATION_TRAITEMENT, Etape.CHEQUE_CTR);
+
+    /**
+     * Dates d'étape et opérateur d'un CTR, relevés avant et après une écriture.
+     */
+    public record Jalons(LocalDateTime generation, LocalDateTime reception, LocalDateTime traitement,
+                         String operateur) {
+
+        public static Jalons de(CTR ctr) {
+            return ctr == null ? null
+                    : new Jalons(ctr.getDateGeneration(), ctr.getDateReception(), ctr.getDateTraitement(),
+                    ctr.getOperateurCtr());
+        }
+    }
+
+    private record Mesure(Etape etape, LocalDateTime heure, String operateur, long minutes, long nombre) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int retentionHeures;
+
+    // heure de fin d'étape → étape → opérateur → cellule
+    private TreeMap<LocalDateTime, Map<Etape, Map<String, long[]>>> comptes = new TreeMap<>();
+    // mesures appliquées pendant un rechargement, rejouées sur les nouveaux histogrammes (sous le verrou this)
+    private List<Mesure> pendantChargement;
+
+    public LatencesCtr(JdbcTemplate jdbcTemplate,
+                       @Value("${ruya.ctr.latences.retention-heures:72}") int retentionHeures) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retentionHeures = retentionHeures;
+    }
+
+    /**
+     * Reconstruit les histogrammes depuis CTR et CARTHAGO et libère les heures sorties de la rétention.
+     * Les requêtes s'exécutent hors verrou ; les nouveaux histogrammes remplacent les anciens une fois complets,
+     * avec les mesures appliquées entre-temps.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${ruya.ctr.latences.recalage-cron:0 5 * * * *}")
+    public void charger() {
+        try {
+            long debut = System.currentTimeMillis();
+            Timestamp limite = Timestamp.valueOf(limite());
+            TreeMap<LocalDateTime, Map<Etape, Map<String, long[]>>> nouveauxComptes = new TreeMap<>();
+            synchronized (this) {
+                pendantChargement = new ArrayList<>();
+            }
+            try {
+                for (Etape etape : Etape.values()) {
+                    for (Mesure mesure : lire(etape, etape.selectDepuis, limite)) {
+                        ajouter(nouveauxComptes, mesure);
+                    }
+                }
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    pendantChargement = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                for (Mesure mesure : pendantChargement) {
+                    ajouter(nouveauxComptes, mesure);
+                }
+                pendantChargement = null;
+                comptes = nouveauxComptes;
+            }
+            System.out.println("✅ Latences CTR rechargées : " + nouveauxComptes.size() + " heures ("
+                    + (System.currentTimeMillis() - debut) + " ms)");
+        } catch (RuntimeException e) {
+            System.err.println("❌ Chargement des latences CTR impossible : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reporte l'écriture d'un CTR : ses étapes terminées avant (null à la création) sont retirées,
+     * celles terminées après (null à la suppression) ajoutées ; une étape inchangée n'est pas touchée.
+     */
+    public void changer(Jalons avant, Jalons apres) {
+        List<Mesure> mesures = new ArrayList<>();
+        for (Etape etape : Etape.values()) {
+            if (etape.debut == null) {
+                continue;
+            }
+            Mesure ancienne = mesure(etape, avant, -1);
+            Mesure nouvelle = mesure(etape, apres, 1);
+            if (ancienne != null && ancienne.equals(mesure(etape, apres, -1))) {
+                continue;
+            }
+            if (ancienne != null) {
+                mesures.add(ancienne);
+            }
+            if (nouvelle != null) {
+                mesures.add(nouvelle);
+            }
+        }
+        differer(mesures);
+    }
+
+    /**
+     * Compte les étapes terminées par un passage à TRAITE ensembliste horodaté à traitement
+     * (DATE_TRAITEMENT des CTR, DATE_TRAITEMENT_CTR des chèques).
+     */
+    public void enregistrerHorodatees(LocalDateTime traitement) {
+        Timestamp horodatage = Timestamp.valueOf(traitement);
+        List<Mesure> mesures = new ArrayList<>();
+        for (Etape etape : ETAPES_HORODATEES) {
+            mesures.addAll(lire(etape, etape.selectHorodatage, horodatage));
+        }
+        differer(mesures);
+    }
+
+    /**
+     * Latences des étapes terminées entre debut et fin (heures entamées comprises),
+     * par étape, par étape et opérateur, et par étape et heure.
+     */
+    public synchronized LatencesCtrDTO instantane(LocalDateTime debut, LocalDateTime fin) {
+        Map<Etape, long[]> parEtape = new EnumMap<>(Etape.class);
+        Map<Etape, TreeMap<String, long[]>> parOperateur = new EnumMap<>(Etape.class);
+        List<LatencesCtrDTO.Latence> parHeure = new ArrayList<>();
+
+        for (Map.Entry<LocalDateTime, Map<Etape, Map<String, long[]>>> h
+                : comptes.subMap(heure(debut), true, fin, true).entrySet()) {
+            for (Etape etape : Etape.values()) {
+                Map<String, long[]> operateurs = h.getValue().get(etape);
+                if (operateurs == null) {
+                    continue;
+                }
+                long[] cumulHeure = new long[MAX + 1];
+                for (Map.Entry<String, long[]> o : operateurs.entrySet()) {
+                    cumuler(cumulHeure, o.getValue());
+                    cumuler(parEtape.computeIfAbsent(etape, e -> new long[MAX + 1]), o.getValue());
+                    cumuler(parOperateur.computeIfAbsent(etape, e -> new TreeMap<>())
+                            .computeIfAbsent(o.getKey(), k -> new long[MAX + 1]), o.getValue());
+                }
+                ajouterLatence(parHeure, etape, h.getKey(), null, cumulHeure);
+            }
+        }
+
+        LatencesCtrDTO dto = new LatencesCtrDTO();
+        dto.setDebut(debut);
+        dto.setFin(fin);
+        dto.setBornesMinutes(Arrays.stream(BORNES_MINUTES).boxed().toList());
+        List<LatencesCtrDTO.Latence> etapes = new ArrayList<>();
+        List<LatencesCtrDTO.Latence> operateurs = new ArrayList<>();
+        for (Etape etape : Etape.values()) {
+            ajouterLatence(etapes, etape, null, null, parEtape.get(etape));
+            for (Map.Entry<String, long[]> o : parOperateur.getOrDefault(etape, new TreeMap<>()).entrySet()) {
+                ajouterLatence(operateurs, etape, null, o.getKey(), o.getValue());
+            }
+        }
+        dto.setEtapes(etapes);
+        dto.setParOperateur(operateurs);
+        dto.setParHeure(parHeure);
+        return dto;
+    }
+
+    private List<Mesure> lire(Etape etape, String sql, Timestamp parametre) {
+        return jdbcTemplate.query(sql, (rs, n) -> new Mesure(etape, rs.getTimestamp(1).toLocalDateTime(),
+                rs.getString(2), rs.getLong(3), rs.getLong(4)), parametre);
+    }
+
+    private static Mesure mesure(Etape etape, Jalons jalons, long nombre) {
+        if (jalons == null) {
+            return null;
+        }
+        LocalDateTime debut = etape.debut.apply(jalons);
+        LocalDateTime fin = etape.fin.apply(jalons);
+        if (debut == null || fin == null) {
+            return null;
+        }
+        return new Mesure(etape, heure(fin), jalons.operateur(), Duration.between(debut, fin).toMinutes(), nombre);
+    }
+
+    /**
+     * Applique les mesures, après le commit de la transaction en cours s'il y en a une.
+     */
+    private void differer(List<Mesure> mesures) {
+        if (mesures.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    appliquer(mesures);
+                }
+            });
+        } else {
+            appliquer(mesures);
+        }
+    }
+
+    private synchronized void appliquer(List<Mesure> mesures) {
+        LocalDateTime limite = limite();
+        for (Mesure mesure : mesures) {
+            if (!mesure.heure().isBefore(limite)) {
+                ajouter(comptes, mesure);
+                if (pendantChargement != null) {
+                    pendantChargement.add(mesure);
+                }
+            }
+        }
+    }
+
+    private static void ajouter(TreeMap<LocalDateTime, Map<Etape, Map<String, long[]>>> cible, Mesure mesure) {
+        long minutes = Math.max(0, mesure.minutes());
+        long[] cellule = cible.computeIfAbsent(mesure.heure(), h -> new EnumMap<>(Etape.class))
+                .computeIfAbsent(mesure.etape(), e -> new TreeMap<>())
+                .computeIfAbsent(mesure.operateur() != null ? mesure.operateur() : OPERATEUR_INCONNU,
+                        o -> new long[MAX + 1]);
+        int classe = classe(minutes);
+        cellule[classe] = Math.max(0, cellule[classe] + mesure.nombre());
+        if (mesure.nombre() > 0) {
+            cellule[MAX] = Math.max(cellule[MAX], minutes);
+        }
+    }
+
+    private static void cumuler(long[] cumul, long[] cellule) {
+        for (int i = 0; i < MAX; i++) {
+            cumul[i] += cellule[i];
+        }
+        cumul[MAX] = Math.max(cumul[MAX], cellule[MAX]);
+    }
+
+    private static void ajouterLatence(List<LatencesCtrDTO.Latence> cible, Etape etape, LocalDateTime heure,
+                                       String operateur, long[] cellule) {
+        if (cellule == null) {
+            return;
+        }
+        long nombre = 0;
+        for (int i = 0; i < MAX; i++) {
+            nombre += cellule[i];
+        }
+        if (nombre > 0) {
+            cible.add(new LatencesCtrDTO.Latence(etape.name(), heure, operateur, nombre,
+                    quantile(cellule, nombre, 0.5), quantile(cellule, nombre, 0.95), cellule[MAX]));
+        }
+    }
+
+    /**
+     * Borne haute de la classe contenant le quantile, ramenée au maximum ; pour la classe ouverte, le maximum.
+     */
+    private static long quantile(long[] cellule, long total, double q) {
+        long rang = (long) Math.ceil(q * total);
+        long cumul = 0;
+        for (int i = 0; i < BORNES_MINUTES.length; i++) {
+            cumul += cellule[i];
+            if (cumul >= rang) {
+                return Math.min(BORNES_MINUTES[i], cellule[MAX]);
+            }
+        }
+        return cellule[MAX];
+    }
+
+    private static int classe(long minutes) {
+        int classe = 0;
+        while (classe < BORNES_MINUTES.length && minutes > BORNES_MINUTES[classe]) {
+            classe++;
+        }
+        return classe;
+    }
+
+    private LocalDateTime limite() {
+        return heure(LocalDateTime.now()).minusHours(retentionHeures);
+    }
+
+    private static LocalDateTime heure(LocalDateTime instant) {
+        return instant.truncatedTo(ChronoUnit.HOURS);
+    }
+}
@@ -1,14 +1,24 @@
 package tn.esprit.ruya.traitement_fichier.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import tn.esprit.ruya.models.IngestionJobDTO;
+import tn.esprit.ruya.models.LigneQuarantaineDTO;
 import tn.esprit.ruya.models.traitement_fichiers;
+import tn.esprit.ruya.traitement_fichier.pipeline.ImportEnCoursException;
+import tn.esprit.ruya.traitement_fichier.pipeline.IngestionJob;
+import tn.esprit.ruya.traitement_fichier.service.IngestionJobService;
 import tn.esprit.ruya.traitement_fichier.service.TraitementServ;
 
+import java.io.IOException;
+import java.net.URI;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/traitements")
@@ -17,6 +27,9 @@ public class TraitementController {
     @Autowired
     private TraitementServ traitementServ;
 
+    @Autowired
+    private IngestionJobService ingestionJobService;
+
     @GetMapping
     public ResponseEntity<List<traitement_fichiers>> getAllTraitements() {
         return ResponseEntity.ok(traitementServ.getAllTraitements());
@@ -54,8 +67,61 @@ public class TraitementController {
     }
 
     @PostMapping("/upload")
-    public ResponseEntity<String> uploadFile(@RequestParam("file") MultipartFile file) {
-        traitementServ.processFile(file);  // ✅ appel correct de l’instance
-        return ResponseEntity.ok("Fichier traité avec succès");
+    public ResponseEntity<?> uploadFile(@RequestParam("file") MultipartFile file,
+                                        @RequestParam(value = "type", required = false) String type) {
+        try {
+            IngestionJob job = ingestionJobService.soumettre(file, type);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/traitements/jobs/" + job.getId()))
+                    .body(ingestionJobService.toDto(job));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (ImportEnCoursException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("File d'ingestion pleine, réessayez plus tard");
+        } catch (IOException e) {
+            System.err.println("❌ Erreur lors de la réception du fichier: " + e.getMessage());
+            return ResponseEntity.internalServerError().body("Erreur lors de la réception du fichier");
+        }
+    }
+
+    @GetMapping("/jobs")
+    public ResponseEntity<List<IngestionJobDTO>> getJobs() {
+        return ResponseEntity.ok(ingestionJobService.getJobs().stream()
+                .map(ingestionJobService::toDto)
+                .collect(Collectors.toList()));
+    }
+
+    @PostMapping("/jobs/{id}/reprise")
+    public ResponseEntity<?> reprendreJob(@PathVariable String id) {
+        try {
+            return ingestionJobService.reprendre(id)
+                    .<ResponseEntity<?>>map(job -> ResponseEntity.accepted()
+                            .location(URI.create("/api/traitements/jobs/" + job.getId()))
+                            .body(ingestionJobService.toDto(job)))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("File d'ingestion pleine, réessayez plus tard");
+        }
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<IngestionJobDTO> getJob(@PathVariable String id) {
+        return ingestionJobService.getJob(id)
+                .map(job -> ResponseEntity.ok(ingestionJobService.toDto(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/jobs/{id}/quarantaine")
+    public ResponseEntity<List<LigneQuarantaineDTO>> getQuarantaine(@PathVariable String id,
+                                                                    @RequestParam(defaultValue = "1000") int limite) {
+        return ingestionJobService.getQuarantaine(id, Math.max(1, Math.min(limite, 10000)))
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 }
@@ -0,0 +1,293 @@
+package tn.esprit.ruya.traitement_fichier.layout;
+
+import tn.esprit.ruya.traitement_fichier.parser.FixedWidthBytes;
+import tn.esprit.ruya.traitement_fichier.parser.ParseLigneException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Codec d'un champ, spécialisé une fois pour toutes selon son type et son convertisseur :
+ * bornes et paramètres sont figés à la compilation, le décodage ne fait ni recherche ni allocation.
+ * Les valeurs numériques (entier, montant non mis à l'échelle, jour epoch) sont rendues en long ;
+ * les textes restent dans le buffer et sont matérialisés à la demande.
+ * L'encodage écrit la valeur à sa position absolue dans la ligne, complétée selon le type
+ * (zéros à gauche pour les nombres sans séparateur, blancs sinon).
+ */
+abstract class ChampCodec {
+
+    final String nom;
+    final TypeChamp type;
+    final int debut;
+    final int fin;
+
+    ChampCodec(ChampDescriptor champ) {
+        this.nom = champ.getNom();
+        this.type = champ.getType();
+        this.debut = champ.getOffset();
+        this.fin = champ.getFin();
+    }
+
+    abstract long decoder(ByteBuffer buf, int ligne);
+
+    abstract void encoder(ByteBuffer out, int ligne, ValeursLigne valeurs, int index);
+
+    String texte(ByteBuffer buf, int ligne) {
+        return FixedWidthBytes.texte(buf, ligne + debut, ligne + fin);
+    }
+
+    int echelle() {
+        return 0;
+    }
+
+    static ChampCodec compiler(ChampDescriptor champ) {
+        String conv = champ.getConvertisseur();
+        switch (champ.getType()) {
+            case ENTIER:
+                return new Entier(champ);
+            case MONTANT:
+                if (conv == null || conv.startsWith("decimal")) {
+                    return new MontantDecimal(champ, echelle(champ, conv, 2));
+                }
+                if (conv.startsWith("implicite")) {
+                    return new MontantImplicite(champ, echelle(champ, conv, 2));
+                }
+                break;
+            case DATE:
+                return new Date(champ, conv != null ? conv : "yyyyMMdd");
+            case TEXTE:
+                if (conv == null || conv.equals("trim")) {
+                    return new Texte(champ);
+                }
+                if (conv.equals("majuscules")) {
+                    return new TexteMajuscules(champ);
+                }
+                break;
+        }
+        throw new IllegalArgumentException("Convertisseur inconnu pour le champ " + champ.getNom() + " : " + conv);
+    }
+
+    // "decimal=3" / "implicite=3" ; sans valeur, l'échelle par défaut
+    private static int echelle(ChampDescriptor champ, String conv, int defaut) {
+        if (conv == null || conv.indexOf('=') < 0) {
+            return defaut;
+        }
+        int echelle = Integer.parseInt(conv.substring(conv.indexOf('=') + 1).trim());
+        if (echelle < 0 || echelle > 6) {
+            throw new IllegalArgumentException("Échelle invalide pour le champ " + champ.getNom() + " : " + echelle);
+        }
+        return echelle;
+    }
+
+    static final class Entier extends ChampCodec {
+        Entier(ChampDescriptor champ) {
+            super(champ);
+        }
+
+        @Override
+        long decoder(ByteBuffer buf, int ligne) {
+            return FixedWidthBytes.parseLong(buf, ligne + debut, ligne + fin);
+        }
+
+        @Override
+        void encoder(ByteBuffer out, int ligne, ValeursLigne valeurs, int index) {
+            ecrireNombre(out, ligne + debut, ligne + fin, valeurs.valeurs[index], 0, (byte) '0');
+        }
+    }
+
+    /** Montant avec séparateur décimal explicite ('.' ou ','), ex. "1234.50". */
+    static final class MontantDecimal extends ChampCodec {
+        private final int echelle;
+
+        MontantDecimal(ChampDescriptor champ, int echelle) {
+            super(champ);
+            this.echelle = echelle;
+        }
+
+        @Override
+        long decoder(ByteBuffer buf, int ligne) {
+            return FixedWidthBytes.parseMontant(buf, ligne + debut, ligne + fin, echelle);
+        }
+
+        @Override
+        void encoder(ByteBuffer out, int ligne, ValeursLigne valeurs, int index) {
+            ecrireNombre(out, ligne + debut, ligne + fin, valeurs.valeurs[index], echelle, (byte) ' ');
+        }
+
+        @Override
+        int echelle() {
+            return echelle;
+        }
+    }
+
+    /** Montant sans séparateur dont les derniers chiffres sont les décimales, ex. "00000123450" en millimes. */
+    static final class MontantImplicite extends ChampCodec {
+        private final int echelle;
+
+        MontantImplicite(ChampDescriptor champ, int echelle) {
+            super(champ);
+            this.echelle = echelle;
+        }
+
+        @Override
+        long decoder(ByteBuffer buf, int ligne) {
+            return FixedWidthBytes.parseLong(buf, ligne + debut, ligne + fin);
+        }
+
+        @Override
+        void encoder(ByteBuffer out, int ligne, ValeursLigne valeurs, int index) {
+            ecrireNombre(out, ligne + debut, ligne + fin, valeurs.valeurs[index], 0, (byte) '0');
+        }
+
+        @Override
+        int echelle() {
+            return echelle;
+        }
+    }
+
+    /** Date selon un motif de même longueur que le champ (yyyyMMdd, ddMMyyyy, yyMMdd...). */
+    static final class Date extends ChampCodec {
+        private final int posAnnee;
+        private final int chiffresAnnee;
+        private final int posMois;
+        private final int posJour;
+
+        Date(ChampDescriptor champ, String motif) {
+            super(champ);
+            if (motif.length() != champ.getLongueur()) {
+                throw new IllegalArgumentException("Motif de date " + motif + " incompatible avec la longueur du champ " + champ.getNom());
+            }
+            int annee4 = motif.indexOf("yyyy");
+            this.posAnnee = annee4 >= 0 ? annee4 : motif.indexOf("yy");
+            this.chiffresAnnee = annee4 >= 0 ? 4 : 2;
+            this.posMois = motif.indexOf("MM");
+            this.posJour = motif.indexOf("dd");
+            if (posAnnee < 0 || posMois < 0 || posJour < 0) {
+                throw new IllegalArgumentException("Motif de date invalide pour le champ " + champ.getNom() + " : " + motif);
+            }
+        }
+
+        @Override
+        long decoder(ByteBuffer buf, int ligne) {
+            int base = ligne + debut;
+            int annee = chiffres(buf, base + posAnnee, chiffresAnnee);
+            if (chiffresAnnee == 2) {
+                annee += 2000;
+            }
+            return FixedWidthBytes.epochDay(annee, chiffres(buf, base + posMois, 2), chiffres(buf, base + posJour, 2));
+        }
+
+        @Override
+        void encoder(ByteBuffer out, int ligne, ValeursLigne valeurs, int index) {
+            LocalDate date = LocalDate.ofEpochDay(valeurs.valeurs[index]);
+            int base = ligne + debut;
+            int annee = chiffresAnnee == 4 ? date.getYear() : date.getYear() % 100;
+            ecrireNombre(out, base + posAnnee, base + posAnnee + chiffresAnnee, annee, 0, (byte) '0');
+            ecrireNombre(out, base + posMois, base + posMois + 2, date.getMonthValue(), 0, (byte) '0');
+            ecrireNombre(out, base + posJour, base + posJour + 2, date.getDayOfMonth(), 0, (byte) '0');
+        }
+
+        private static int chiffres(ByteBuffer buf, int debut, int nombre) {
+            int valeur = 0;
+            for (int i = debut; i < debut + nombre; i++) {
+                int chiffre = buf.get(i) - '0';
+                if (chiffre < 0 || chiffre > 9) {
+                    throw new ParseLigneException("date non numérique");
+                }
+                valeur = valeur * 10 + chiffre;
+            }
+            return valeur;
+        }
+    }
+
+    static class Texte extends ChampCodec {
+        Texte(ChampDescriptor champ) {
+            super(champ);
+        }
+
+        @Override
+        long decoder(ByteBuffer buf, int ligne) {
+            return 0;
+        }
+
+        @Override
+        void encoder(ByteBuffer out, int ligne, ValeursLigne valeurs, int index) {
+            ecrireTexte(out, ligne + debut, ligne + fin, valeurs.textes[index]);
+        }
+    }
+
+    static final class TexteMajuscules extends Texte {
+        TexteMajuscules(ChampDescriptor champ) {
+            super(champ);
+        }
+
+        @Override
+        String texte(ByteBuffer buf, int ligne) {
+            return super.texte(buf, ligne).toUpperCase();
+        }
+
+        @Override
+        void encoder(ByteBuffer out, int ligne, ValeursLigne valeurs, int index) {
+            String texte = valeurs.textes[index];
+            ecrireTexte(out, ligne + debut, ligne + fin, texte != null ? texte.toUpperCase() : null);
+        }
+    }
+
+    /**
+     * Écrit valeur cadrée à droite dans [debut, fin), avec echelle décimales après un point si echelle > 0,
+     * le signe '-' en tête des chiffres et remplissage à gauche.
+     */
+    static void ecrireNombre(ByteBuffer out, int debut, int fin, long valeur, int echelle, byte remplissage) {
+        boolean negatif = valeur < 0;
+        long reste = negatif ? -valeur : valeur;
+        int pos = fin - 1;
+        int chiffres = 0;
+        while (reste != 0 || chiffres <= echelle) {
+            if (echelle > 0 && chiffres == echelle) {
+                verifierPlace(pos, debut);
+                out.put(pos--, (byte) '.');
+            }
+            verifierPlace(pos, debut);
+            out.put(pos--, (byte) ('0' + reste % 10));
+            reste /= 10;
+            chiffres++;
+        }
+        if (negatif) {
+            if (remplissage == '0') {
+                while (pos > debut) {
+                    out.put(pos--, remplissage);
+                }
+                verifierPlace(pos, debut);
+            } else {
+                verifierPlace(pos, debut);
+            }
+            out.put(pos--, (byte) '-');
+        }
+        while (pos >= debut) {
+            out.put(pos--, remplissage);
+        }
+    }
+
+    /**
+     * Écrit texte cadré à gauche dans [debut, fin), complété de blancs et tronqué à la largeur du champ.
+     */
+    static void ecrireTexte(ByteBuffer out, int debut, int fin, String texte) {
+        int pos = debut;
+        if (texte != null) {
+            byte[] octets = texte.getBytes(StandardCharsets.ISO_8859_1);
+            int longueur = Math.min(octets.length, fin - debut);
+            out.put(debut, octets, 0, longueur);
+            pos += longueur;
+        }
+        while (pos < fin) {
+            out.put(pos++, (byte) ' ');
+        }
+    }
+
+    private static void verifierPlace(int pos, int debut) {
+        if (pos < debut) {
+            throw new IllegalArgumentException("valeur trop longue pour le champ");
+        }
+    }
+}
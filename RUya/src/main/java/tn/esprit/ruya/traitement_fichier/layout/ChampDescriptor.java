@@ -0,0 +1,66 @@
+package tn.esprit.ruya.traitement_fichier.layout;
+
+/**
+ * Description d'un champ à largeur fixe, déclarée en configuration sous la forme
+ * {@code nom:offset:longueur:TYPE[:convertisseur]}, par exemple {@code montant:44:11:MONTANT:decimal=2}.
+ */
+public class ChampDescriptor {
+
+    private final String nom;
+    private final int offset;
+    private final int longueur;
+    private final TypeChamp type;
+    private final String convertisseur;
+
+    public ChampDescriptor(String nom, int offset, int longueur, TypeChamp type, String convertisseur) {
+        if (offset < 0 || longueur <= 0) {
+            throw new IllegalArgumentException("Champ " + nom + " : offset/longueur invalides");
+        }
+        this.nom = nom;
+        this.offset = offset;
+        this.longueur = longueur;
+        this.type = type;
+        this.convertisseur = convertisseur;
+    }
+
+    public static ChampDescriptor parse(String spec) {
+        String[] parties = spec.trim().split(":", 5);
+        if (parties.length < 4) {
+            throw new IllegalArgumentException("Champ mal déclaré (nom:offset:longueur:TYPE[:convertisseur]) : " + spec);
+        }
+        try {
+            return new ChampDescriptor(
+                    parties[0].trim(),
+                    Integer.parseInt(parties[1].trim()),
+                    Integer.parseInt(parties[2].trim()),
+                    TypeChamp.valueOf(parties[3].trim().toUpperCase()),
+                    parties.length == 5 ? parties[4].trim() : null);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Champ mal déclaré : " + spec + " (" + e.getMessage() + ")", e);
+        }
+    }
+
+    public String getNom() {
+        return nom;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLongueur() {
+        return longueur;
+    }
+
+    public int getFin() {
+        return offset + longueur;
+    }
+
+    public TypeChamp getType() {
+        return type;
+    }
+
+    public String getConvertisseur() {
+        return convertisseur;
+    }
+}
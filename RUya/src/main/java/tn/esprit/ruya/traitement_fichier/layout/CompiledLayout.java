@@ -0,0 +1,222 @@
+package tn.esprit.ruya.traitement_fichier.layout;
+
+import tn.esprit.ruya.traitement_fichier.parser.BlocLignes;
+import tn.esprit.ruya.traitement_fichier.parser.ParseLigneException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Layout compilé : un décodeur spécialisé par champ, compilé une fois au démarrage
+ * et partagé sans état entre les threads d'analyse.
+ */
+public final class CompiledLayout {
+
+    private final LayoutDescriptor descriptor;
+    private final ChampCodec[] codecs;
+    private final Map<String, Integer> indexParNom = new HashMap<>();
+    private final int longueurMin;
+    private final boolean couvertureIncomplete;
+    private final byte[] entete;
+    private final byte[] pied;
+
+    private CompiledLayout(LayoutDescriptor descriptor) {
+        this.descriptor = descriptor;
+        List<ChampDescriptor> champs = descriptor.getChamps();
+        this.codecs = new ChampCodec[champs.size()];
+        int longueur = 0;
+        for (int i = 0; i < codecs.length; i++) {
+            ChampDescriptor champ = champs.get(i);
+            if (indexParNom.put(champ.getNom(), i) != null) {
+                throw new IllegalArgumentException("Layout " + descriptor.getNom() + " : champ " + champ.getNom() + " déclaré deux fois");
+            }
+            codecs[i] = ChampCodec.compiler(champ);
+            longueur = Math.max(longueur, champ.getFin());
+        }
+        this.longueurMin = longueur;
+        this.couvertureIncomplete = couverture(champs) < longueur;
+        this.entete = octets(descriptor.getPrefixeEntete());
+        this.pied = octets(descriptor.getPrefixePied());
+    }
+
+    public static CompiledLayout compiler(LayoutDescriptor descriptor) {
+        return new CompiledLayout(descriptor);
+    }
+
+    public DecodedRecord nouvelEnregistrement() {
+        return new DecodedRecord(this);
+    }
+
+    /**
+     * Décode la ligne [debut, fin) de buf dans record, sans allocation.
+     */
+    public void decoder(ByteBuffer buf, int debut, int fin, DecodedRecord record) {
+        if (fin - debut < longueurMin) {
+            throw new ParseLigneException("ligne trop courte (" + (fin - debut) + " < " + longueurMin + ")");
+        }
+        record.source = buf;
+        record.debut = debut;
+        long[] valeurs = record.valeurs;
+        int i = 0;
+        try {
+            for (; i < codecs.length; i++) {
+                valeurs[i] = codecs[i].decoder(buf, debut);
+            }
+        } catch (ParseLigneException e) {
+            throw new ParseLigneException("champ " + codecs[i].nom + " : " + e.getRaison());
+        }
+    }
+
+    public ValeursLigne nouvellesValeurs() {
+        return new ValeursLigne(codecs.length);
+    }
+
+    /**
+     * Écrit une ligne de longueurMin octets à la position courante de out (sans fin de ligne) et avance la position ;
+     * les zones non couvertes par un champ sont remplies de blancs.
+     *
+     * @throws IllegalArgumentException si une valeur ne tient pas dans son champ
+     */
+    public void encoder(ByteBuffer out, ValeursLigne valeurs) {
+        int ligne = out.position();
+        if (out.remaining() < longueurMin) {
+            throw new IllegalArgumentException("tampon trop petit pour une ligne du layout " + getNom());
+        }
+        if (couvertureIncomplete) {
+            for (int i = 0; i < longueurMin; i++) {
+                out.put(ligne + i, (byte) ' ');
+            }
+        }
+        int i = 0;
+        try {
+            for (; i < codecs.length; i++) {
+                if (valeurs.nuls[i]) {
+                    ChampCodec.ecrireTexte(out, ligne + codecs[i].debut, ligne + codecs[i].fin, null);
+                } else {
+                    codecs[i].encoder(out, ligne, valeurs, i);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("champ " + codecs[i].nom + " : " + e.getMessage(), e);
+        }
+        out.position(ligne + longueurMin);
+    }
+
+    /**
+     * Vrai pour une ligne d'en-tête ou de pied du format, qui ne porte pas de données.
+     */
+    public boolean estHorsDonnees(ByteBuffer buf, int debut, int fin) {
+        return commencePar(buf, debut, fin, entete) || commencePar(buf, debut, fin, pied);
+    }
+
+    public boolean estEntete(ByteBuffer buf, int debut, int fin) {
+        return commencePar(buf, debut, fin, entete);
+    }
+
+    /**
+     * Ajoute à valeurs le texte du champ donné pour chaque ligne de données du bloc.
+     * Les lignes consécutives de même valeur sont comparées octet par octet et ne créent pas de String.
+     */
+    public void collecterTextes(BlocLignes bloc, int index, Set<String> valeurs) {
+        ChampCodec codec = codecs[index];
+        int[] precedent = {-1};
+        bloc.parcourirLignes((buf, debut, fin, i) -> {
+            if (fin - debut < codec.fin || estHorsDonnees(buf, debut, fin)) {
+                return;
+            }
+            if (precedent[0] >= 0 && memesOctets(buf, precedent[0] + codec.debut, debut + codec.debut, codec.fin - codec.debut)) {
+                return;
+            }
+            precedent[0] = debut;
+            valeurs.add(codec.texte(buf, debut));
+        });
+    }
+
+    /**
+     * @return l'index du champ, ou -1 s'il n'est pas déclaré
+     */
+    public int indexDe(String nom) {
+        Integer index = indexParNom.get(nom);
+        return index != null ? index : -1;
+    }
+
+    public int indexObligatoire(String nom) {
+        int index = indexDe(nom);
+        if (index < 0) {
+            throw new IllegalStateException("Layout " + getNom() + " : champ obligatoire absent : " + nom);
+        }
+        return index;
+    }
+
+    public String getNom() {
+        return descriptor.getNom();
+    }
+
+    public String getTypeFichier() {
+        return descriptor.getTypeFichier();
+    }
+
+    public LayoutDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    public int getNombreChamps() {
+        return codecs.length;
+    }
+
+    public int getLongueurMin() {
+        return longueurMin;
+    }
+
+    public TypeChamp getType(int index) {
+        return codecs[index].type;
+    }
+
+    /**
+     * Échelle des montants du champ (valeurs non mises à l'échelle), 0 pour les autres types.
+     */
+    public int getEchelle(int index) {
+        return codecs[index].echelle();
+    }
+
+    ChampCodec codec(int index) {
+        return codecs[index];
+    }
+
+    // nombre d'octets de la ligne couverts par au moins un champ
+    private static int couverture(List<ChampDescriptor> champs) {
+        BitSet couverts = new BitSet();
+        champs.forEach(c -> couverts.set(c.getOffset(), c.getFin()));
+        return couverts.cardinality();
+    }
+
+    private static boolean commencePar(ByteBuffer buf, int debut, int fin, byte[] prefixe) {
+        if (prefixe == null || fin - debut < prefixe.length) {
+            return false;
+        }
+        for (int i = 0; i < prefixe.length; i++) {
+            if (buf.get(debut + i) != prefixe[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean memesOctets(ByteBuffer buf, int a, int b, int longueur) {
+        for (int i = 0; i < longueur; i++) {
+            if (buf.get(a + i) != buf.get(b + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] octets(String prefixe) {
+        return prefixe != null ? prefixe.getBytes(StandardCharsets.ISO_8859_1) : null;
+    }
+}
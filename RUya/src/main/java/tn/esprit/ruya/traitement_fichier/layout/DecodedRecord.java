@@ -0,0 +1,46 @@
+package tn.esprit.ruya.traitement_fichier.layout;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+/**
+ * Enregistrement décodé selon un layout compilé, réutilisable d'une ligne à l'autre.
+ * Les champs sont adressés par leur index (résolu une fois via {@link CompiledLayout#indexDe}).
+ */
+public final class DecodedRecord {
+
+    private final CompiledLayout layout;
+    final long[] valeurs;
+    ByteBuffer source;
+    int debut;
+
+    DecodedRecord(CompiledLayout layout) {
+        this.layout = layout;
+        this.valeurs = new long[layout.getNombreChamps()];
+    }
+
+    public long getLong(int index) {
+        return valeurs[index];
+    }
+
+    public int getInt(int index) {
+        return Math.toIntExact(valeurs[index]);
+    }
+
+    public long getEpochDay(int index) {
+        return valeurs[index];
+    }
+
+    public LocalDate getDate(int index) {
+        return LocalDate.ofEpochDay(valeurs[index]);
+    }
+
+    public BigDecimal getMontant(int index) {
+        return BigDecimal.valueOf(valeurs[index], layout.codec(index).echelle());
+    }
+
+    public String getTexte(int index) {
+        return layout.codec(index).texte(source, debut);
+    }
+}
@@ -0,0 +1,59 @@
+package tn.esprit.ruya.traitement_fichier.layout;
+
+import java.util.List;
+
+/**
+ * Disposition d'un format de fichier : champs, type de fichier associé (cheque, effet, virement,
+ * prelevement), sens (ENTRANT pour les fichiers reçus, SORTANT pour les fichiers générés)
+ * et préfixes optionnels des lignes d'en-tête et de pied, qui ne sont pas des données.
+ */
+public class LayoutDescriptor {
+
+    private final String nom;
+    private final String typeFichier;
+    private final boolean sortant;
+    private final String prefixeEntete;
+    private final String prefixePied;
+    private final List<ChampDescriptor> champs;
+
+    public LayoutDescriptor(String nom, String typeFichier, boolean sortant, String prefixeEntete, String prefixePied,
+                            List<ChampDescriptor> champs) {
+        if (champs == null || champs.isEmpty()) {
+            throw new IllegalArgumentException("Layout " + nom + " sans champ");
+        }
+        this.nom = nom;
+        this.typeFichier = typeFichier;
+        this.sortant = sortant;
+        this.prefixeEntete = vide(prefixeEntete) ? null : prefixeEntete;
+        this.prefixePied = vide(prefixePied) ? null : prefixePied;
+        this.champs = List.copyOf(champs);
+    }
+
+    public String getNom() {
+        return nom;
+    }
+
+    public String getTypeFichier() {
+        return typeFichier;
+    }
+
+    public boolean isSortant() {
+        return sortant;
+    }
+
+    public String getPrefixeEntete() {
+        return prefixeEntete;
+    }
+
+    public String getPrefixePied() {
+        return prefixePied;
+    }
+
+    public List<ChampDescriptor> getChamps() {
+        return champs;
+    }
+
+    private static boolean vide(String s) {
+        return s == null || s.isEmpty();
+    }
+}
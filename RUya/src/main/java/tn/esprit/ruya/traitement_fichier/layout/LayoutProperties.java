@@ -0,0 +1,36 @@
+package tn.esprit.ruya.traitement_fichier.layout;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Layouts déclarés sous ruya.ingestion.layouts.&lt;nom&gt; :
+ * type (typeFichier associé), sens (ENTRANT par défaut, SORTANT pour la génération),
+ * entete / pied (préfixes des lignes hors données)
+ * et champs (liste nom:offset:longueur:TYPE[:convertisseur]).
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "ruya.ingestion")
+public class LayoutProperties {
+
+    private Map<String, Layout> layouts = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Layout {
+        private String type;
+        private String sens = "ENTRANT";
+        private String entete;
+        private String pied;
+        private List<String> champs = new ArrayList<>();
+    }
+}
@@ -0,0 +1,116 @@
+package tn.esprit.ruya.traitement_fichier.layout;
+
+import org.springframework.stereotype.Component;
+import tn.esprit.ruya.traitement_fichier.parser.SourceBlocs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Layouts compilés au démarrage et choix du layout d'un fichier reçu :
+ * préfixe d'en-tête reconnu sur la première ligne, sinon type de fichier indiqué, sinon layout par défaut.
+ * Seuls les layouts ENTRANT déclarant tous les champs de TRAITEMENT sont proposés pour un fichier reçu :
+ * les layouts SORTANT servent à la génération, les autres (ex. carthago-import) à leurs propres imports.
+ */
+@Component
+public class LayoutRegistry {
+
+    public static final String LAYOUT_DEFAUT = "traitement";
+
+    // disposition historique du fichier TRAITEMENT, utilisée si la configuration ne la redéclare pas
+    static final String CHAMPS_TRAITEMENT = "nombre:0:5:ENTIER,nomFichier:5:16:TEXTE,codeFichier:21:8:TEXTE,"
+            + "typeFichier:29:7:TEXTE,dateTraitement:36:8:DATE:yyyyMMdd,montant:44:11:MONTANT:decimal=2,statut:55:2:TEXTE";
+
+    // champs alimentant une ligne TRAITEMENT, exigés d'un layout de réception
+    public static final List<String> CHAMPS_REQUIS_TRAITEMENT =
+            List.of("nombre", "nomFichier", "codeFichier", "dateTraitement", "montant", "statut");
+
+    private static final int TAILLE_ENTETE_MAX = 4096;
+
+    private final Map<String, CompiledLayout> layouts = new LinkedHashMap<>();
+
+    public LayoutRegistry(LayoutProperties properties) {
+        properties.getLayouts().forEach((nom, config) -> enregistrer(nom, config.getType(),
+                "SORTANT".equalsIgnoreCase(config.getSens()), config.getEntete(), config.getPied(), config.getChamps()));
+        if (!layouts.containsKey(LAYOUT_DEFAUT)) {
+            enregistrer(LAYOUT_DEFAUT, null, false, null, null, Arrays.asList(CHAMPS_TRAITEMENT.split(",")));
+        }
+    }
+
+    private void enregistrer(String nom, String type, boolean sortant, String entete, String pied, List<String> champs) {
+        List<ChampDescriptor> descripteurs = champs.stream()
+                .map(ChampDescriptor::parse)
+                .collect(Collectors.toList());
+        layouts.put(nom, CompiledLayout.compiler(new LayoutDescriptor(nom, type, sortant, entete, pied, descripteurs)));
+    }
+
+    public Optional<CompiledLayout> getLayout(String nom) {
+        return Optional.ofNullable(layouts.get(nom));
+    }
+
+    public Collection<CompiledLayout> getLayouts() {
+        return Collections.unmodifiableCollection(layouts.values());
+    }
+
+    /**
+     * Vrai si typeFichier désigne un layout de réception TRAITEMENT, par son nom ou son typeFichier.
+     */
+    public boolean estDeclare(String typeFichier) {
+        return receptionnables().anyMatch(l -> typeFichier.equals(l.getNom()) || typeFichier.equalsIgnoreCase(l.getTypeFichier()));
+    }
+
+    /**
+     * Vérifie, avant tout dépôt, qu'un type de fichier indiqué désigne un layout de réception TRAITEMENT.
+     *
+     * @throws IllegalArgumentException si typeFichier est inconnu ou désigne un layout d'un autre usage
+     */
+    public void verifierType(String typeFichier) {
+        if (typeFichier != null && !typeFichier.isBlank() && !estDeclare(typeFichier)) {
+            throw new IllegalArgumentException("Aucun layout de réception TRAITEMENT pour le type de fichier : " + typeFichier);
+        }
+    }
+
+    /**
+     * Choisit le layout du fichier ; typeFichier (nom de layout ou typeFichier déclaré) peut être null.
+     */
+    public CompiledLayout selectionner(Path fichier, String typeFichier) throws IOException {
+        ByteBuffer premiereLigne = premiereLigne(fichier);
+        Optional<CompiledLayout> parEntete = receptionnables()
+                .filter(layout -> layout.estEntete(premiereLigne, 0, premiereLigne.limit()))
+                .findFirst();
+        if (parEntete.isPresent()) {
+            return parEntete.get();
+        }
+        if (typeFichier != null && !typeFichier.isBlank()) {
+            return receptionnables().filter(l -> typeFichier.equals(l.getNom())).findFirst()
+                    .or(() -> receptionnables().filter(l -> typeFichier.equalsIgnoreCase(l.getTypeFichier())).findFirst())
+                    .orElseThrow(() -> new IllegalArgumentException("Aucun layout de réception TRAITEMENT pour le type de fichier : " + typeFichier));
+        }
+        return layouts.get(LAYOUT_DEFAUT);
+    }
+
+    private Stream<CompiledLayout> receptionnables() {
+        return layouts.values().stream()
+                .filter(l -> !l.getDescriptor().isSortant())
+                .filter(l -> CHAMPS_REQUIS_TRAITEMENT.stream().allMatch(champ -> l.indexDe(champ) >= 0));
+    }
+
+    private static ByteBuffer premiereLigne(Path fichier) throws IOException {
+        // début du contenu décompressé pour une archive
+        try (InputStream flux = SourceBlocs.ouvrirFlux(fichier)) {
+            ByteBuffer buf = ByteBuffer.wrap(flux.readNBytes(TAILLE_ENTETE_MAX));
+            for (int i = 0; i < buf.limit(); i++) {
+                if (buf.get(i) == '\n' || buf.get(i) == '\r') {
+                    buf.limit(i);
+                    break;
+                }
+            }
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package tn.esprit.ruya.traitement_fichier.layout;
+
+public enum TypeChamp {
+    ENTIER, MONTANT, DATE, TEXTE
+}
@@ -0,0 +1,40 @@
+package tn.esprit.ruya.traitement_fichier.layout;
+
+import java.util.Arrays;
+
+/**
+ * Valeurs d'une ligne à générer, indexées comme les champs du layout et réutilisables d'une ligne à l'autre :
+ * entiers, montants non mis à l'échelle (à l'échelle du champ) et jours epoch en long, textes en String.
+ * Un champ nul est écrit en blancs.
+ */
+public final class ValeursLigne {
+
+    final long[] valeurs;
+    final String[] textes;
+    final boolean[] nuls;
+
+    ValeursLigne(int nombreChamps) {
+        this.valeurs = new long[nombreChamps];
+        this.textes = new String[nombreChamps];
+        this.nuls = new boolean[nombreChamps];
+    }
+
+    public void setLong(int index, long valeur) {
+        valeurs[index] = valeur;
+        nuls[index] = false;
+    }
+
+    public void setTexte(int index, String texte) {
+        textes[index] = texte;
+        nuls[index] = texte == null;
+    }
+
+    public void setNul(int index) {
+        nuls[index] = true;
+    }
+
+    public void vider() {
+        Arrays.fill(nuls, true);
+        Arrays.fill(textes, null);
+    }
+}
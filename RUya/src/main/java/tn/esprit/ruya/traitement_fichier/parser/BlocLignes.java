@@ -0,0 +1,64 @@
+package tn.esprit.ruya.traitement_fichier.parser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bloc d'octets contenant uniquement des lignes complètes, avec sa position dans le fichier.
+ */
+public final class BlocLignes {
+
+    private final ByteBuffer donnees;
+    private final long offsetDebut;
+
+    public BlocLignes(ByteBuffer donnees, long offsetDebut) {
+        this.donnees = donnees;
+        this.offsetDebut = offsetDebut;
+    }
+
+    public ByteBuffer getDonnees() {
+        return donnees;
+    }
+
+    public long getOffsetDebut() {
+        return offsetDebut;
+    }
+
+    public long getOffsetFin() {
+        return offsetDebut + donnees.limit();
+    }
+
+    /**
+     * Parcourt les lignes du bloc (fin de ligne \n ou \r\n), en ignorant les lignes blanches.
+     * L'index passé au handler est celui de la ligne physique dans le bloc, lignes blanches comprises :
+     * ajouté aux lignes des blocs précédents, il donne le numéro de ligne dans le fichier.
+     *
+     * @return le nombre de lignes physiques du bloc, lignes blanches comprises
+     */
+    public int parcourirLignes(LigneHandler handler) {
+        ByteBuffer buf = donnees;
+        int limite = buf.limit();
+        int debut = 0;
+        int index = 0;
+        while (debut < limite) {
+            int fin = debut;
+            while (fin < limite && buf.get(fin) != '\n') {
+                fin++;
+            }
+            int suivante = fin + 1;
+            if (fin > debut && buf.get(fin - 1) == '\r') {
+                fin--;
+            }
+            if (!FixedWidthBytes.estVide(buf, debut, fin)) {
+                handler.ligne(buf, debut, fin, index);
+            }
+            index++;
+            debut = suivante;
+        }
+        return index;
+    }
+
+    @FunctionalInterface
+    public interface LigneHandler {
+        void ligne(ByteBuffer buf, int debut, int fin, int indexDansBloc);
+    }
+}
@@ -0,0 +1,78 @@
+package tn.esprit.ruya.traitement_fichier.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Enchaîne les entrées d'un zip en un seul flux de lignes : répertoires et fichiers cachés
+ * (dont les métadonnées __MACOSX) sont ignorés, et une fin de ligne est insérée entre deux entrées
+ * quand la première ne se termine pas par un saut de ligne.
+ */
+class EntreesZipInputStream extends InputStream {
+
+    private final ZipInputStream zip;
+    private boolean entreeOuverte;
+    private boolean sautDeLigneDu;
+    private int dernierOctet = '\n';
+
+    EntreesZipInputStream(ZipInputStream zip) {
+        this.zip = zip;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] octet = new byte[1];
+        return read(octet, 0, 1) < 0 ? -1 : octet[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            if (sautDeLigneDu) {
+                sautDeLigneDu = false;
+                dernierOctet = '\n';
+                b[off] = '\n';
+                return 1;
+            }
+            if (!entreeOuverte && !entreeSuivante()) {
+                return -1;
+            }
+            int lus = zip.read(b, off, len);
+            if (lus > 0) {
+                dernierOctet = b[off + lus - 1];
+                return lus;
+            }
+            if (lus < 0) {
+                zip.closeEntry();
+                entreeOuverte = false;
+                sautDeLigneDu = dernierOctet != '\n';
+            }
+        }
+    }
+
+    private boolean entreeSuivante() throws IOException {
+        ZipEntry entree;
+        while ((entree = zip.getNextEntry()) != null) {
+            if (!entree.isDirectory() && !ignoree(entree.getName())) {
+                entreeOuverte = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean ignoree(String nom) {
+        String simple = nom.substring(nom.lastIndexOf('/') + 1);
+        return nom.startsWith("__MACOSX/") || simple.startsWith(".");
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+}
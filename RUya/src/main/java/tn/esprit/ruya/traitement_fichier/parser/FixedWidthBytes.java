@@ -0,0 +1,201 @@
+package tn.esprit.ruya.traitement_fichier.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Décodage de champs à largeur fixe directement depuis les octets (ASCII / ISO-8859-1),
+ * sans passer par des String intermédiaires. Les bornes sont absolues dans le buffer, fin exclue.
+ */
+public final class FixedWidthBytes {
+
+    private FixedWidthBytes() {
+    }
+
+    public static int debutSansBlancs(ByteBuffer buf, int debut, int fin) {
+        while (debut < fin && estBlanc(buf.get(debut))) {
+            debut++;
+        }
+        return debut;
+    }
+
+    public static int finSansBlancs(ByteBuffer buf, int debut, int fin) {
+        while (fin > debut && estBlanc(buf.get(fin - 1))) {
+            fin--;
+        }
+        return fin;
+    }
+
+    public static boolean estVide(ByteBuffer buf, int debut, int fin) {
+        return debutSansBlancs(buf, debut, fin) == fin;
+    }
+
+    /**
+     * Entier signé (blancs autour tolérés), équivalent de Long.parseLong(s.trim()).
+     */
+    public static long parseLong(ByteBuffer buf, int debut, int fin) {
+        int d = debutSansBlancs(buf, debut, fin);
+        int f = finSansBlancs(buf, d, fin);
+        if (d == f) {
+            throw new ParseLigneException("entier vide");
+        }
+        boolean negatif = false;
+        byte b = buf.get(d);
+        if (b == '-' || b == '+') {
+            negatif = b == '-';
+            if (++d == f) {
+                throw new ParseLigneException("entier sans chiffres");
+            }
+        }
+        long valeur = 0;
+        for (int i = d; i < f; i++) {
+            int chiffre = buf.get(i) - '0';
+            if (chiffre < 0 || chiffre > 9) {
+                throw new ParseLigneException("caractère non numérique en position " + (i - debut));
+            }
+            if (valeur > (Long.MAX_VALUE - chiffre) / 10) {
+                throw new ParseLigneException("entier hors limites");
+            }
+            valeur = valeur * 10 + chiffre;
+        }
+        return negatif ? -valeur : valeur;
+    }
+
+    public static int parseInt(ByteBuffer buf, int debut, int fin) {
+        long valeur = parseLong(buf, debut, fin);
+        if (valeur < Integer.MIN_VALUE || valeur > Integer.MAX_VALUE) {
+            throw new ParseLigneException("entier hors limites");
+        }
+        return (int) valeur;
+    }
+
+    /**
+     * Montant décimal ramené en valeur non mise à l'échelle : "123.4" avec échelle 2 donne 12340.
+     * Le séparateur peut être '.' ou ','; un montant sans séparateur est exprimé en unités.
+     */
+    public static long parseMontant(ByteBuffer buf, int debut, int fin, int echelle) {
+        int d = debutSansBlancs(buf, debut, fin);
+        int f = finSansBlancs(buf, d, fin);
+        if (d == f) {
+            throw new ParseLigneException("montant vide");
+        }
+        boolean negatif = false;
+        byte b = buf.get(d);
+        if (b == '-' || b == '+') {
+            negatif = b == '-';
+            d++;
+        }
+        long valeur = 0;
+        int decimales = -1;
+        boolean chiffreLu = false;
+        for (int i = d; i < f; i++) {
+            byte c = buf.get(i);
+            if (c == '.' || c == ',') {
+                if (decimales >= 0) {
+                    throw new ParseLigneException("montant avec plusieurs séparateurs");
+                }
+                decimales = 0;
+                continue;
+            }
+            int chiffre = c - '0';
+            if (chiffre < 0 || chiffre > 9) {
+                throw new ParseLigneException("caractère non numérique dans le montant en position " + (i - debut));
+            }
+            if (decimales >= 0 && ++decimales > echelle) {
+                throw new ParseLigneException("montant avec plus de " + echelle + " décimales");
+            }
+            if (valeur > (Long.MAX_VALUE - chiffre) / 10) {
+                throw new ParseLigneException("montant hors limites");
+            }
+            valeur = valeur * 10 + chiffre;
+            chiffreLu = true;
+        }
+        if (!chiffreLu) {
+            throw new ParseLigneException("montant sans chiffres");
+        }
+        for (int i = Math.max(decimales, 0); i < echelle; i++) {
+            if (valeur > Long.MAX_VALUE / 10) {
+                throw new ParseLigneException("montant hors limites");
+            }
+            valeur *= 10;
+        }
+        return negatif ? -valeur : valeur;
+    }
+
+    /**
+     * Date au format yyyyMMdd convertie en jour epoch (compatible LocalDate.ofEpochDay).
+     */
+    public static long parseDateYyyyMMdd(ByteBuffer buf, int debut, int fin) {
+        if (fin - debut != 8) {
+            throw new ParseLigneException("date de longueur invalide");
+        }
+        int annee = chiffres(buf, debut, 4);
+        int mois = chiffres(buf, debut + 4, 2);
+        int jour = chiffres(buf, debut + 6, 2);
+        return epochDay(annee, mois, jour);
+    }
+
+    /**
+     * Jour epoch d'une date civile validée (algorithme days_from_civil, sans allocation).
+     */
+    public static long epochDay(int annee, int mois, int jour) {
+        if (mois < 1 || mois > 12) {
+            throw new ParseLigneException("mois invalide : " + mois);
+        }
+        if (jour < 1 || jour > joursDansMois(annee, mois)) {
+            throw new ParseLigneException("jour invalide : " + jour);
+        }
+        long y = mois <= 2 ? annee - 1 : annee;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yoe = y - era * 400;
+        long doy = (153L * (mois + (mois > 2 ? -3 : 9)) + 2) / 5 + jour - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /**
+     * Texte du champ sans les blancs de bordure ; seule allocation du décodage, à réserver
+     * aux champs effectivement matérialisés.
+     */
+    public static String texte(ByteBuffer buf, int debut, int fin) {
+        int d = debutSansBlancs(buf, debut, fin);
+        int f = finSansBlancs(buf, d, fin);
+        if (d == f) {
+            return "";
+        }
+        byte[] octets = new byte[f - d];
+        buf.get(d, octets);
+        return new String(octets, StandardCharsets.ISO_8859_1);
+    }
+
+    private static int chiffres(ByteBuffer buf, int debut, int nombre) {
+        int valeur = 0;
+        for (int i = debut; i < debut + nombre; i++) {
+            int chiffre = buf.get(i) - '0';
+            if (chiffre < 0 || chiffre > 9) {
+                throw new ParseLigneException("date non numérique");
+            }
+            valeur = valeur * 10 + chiffre;
+        }
+        return valeur;
+    }
+
+    private static int joursDansMois(int annee, int mois) {
+        switch (mois) {
+            case 2:
+                boolean bissextile = (annee % 4 == 0 && annee % 100 != 0) || annee % 400 == 0;
+                return bissextile ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean estBlanc(byte b) {
+        return b == ' ' || b == '\t';
+    }
+}
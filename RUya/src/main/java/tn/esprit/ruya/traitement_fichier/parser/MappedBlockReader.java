@@ -0,0 +1,129 @@
+package tn.esprit.ruya.traitement_fichier.parser;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lecture d'un fichier par projection mémoire (NIO), découpé en blocs alignés sur les fins de ligne.
+ * Le fichier est projeté par fenêtres successives pour rester utilisable au-delà de 2 Go.
+ */
+public class MappedBlockReader implements SourceBlocs {
+
+    public static final int TAILLE_BLOC_DEFAUT = 1 << 20;
+    private static final long TAILLE_FENETRE = 64L << 20;
+
+    private final FileChannel channel;
+    private final long taille;
+    private final int tailleBloc;
+
+    private MappedByteBuffer fenetre;
+    private long fenetreDebut;
+    private long position;
+
+    public MappedBlockReader(Path fichier) throws IOException {
+        this(fichier, TAILLE_BLOC_DEFAUT);
+    }
+
+    public MappedBlockReader(Path fichier, int tailleBloc) throws IOException {
+        if (tailleBloc <= 0 || tailleBloc > TAILLE_FENETRE) {
+            throw new IllegalArgumentException("Taille de bloc invalide : " + tailleBloc);
+        }
+        this.channel = FileChannel.open(fichier, StandardOpenOption.READ);
+        this.taille = channel.size();
+        this.tailleBloc = tailleBloc;
+    }
+
+    public long getTaille() {
+        return taille;
+    }
+
+    /**
+     * Octets déjà livrés sous forme de blocs.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Reprend la lecture à offset, qui doit être un début de ligne (typiquement la fin d'un bloc déjà livré).
+     */
+    @Override
+    public void positionner(long offset) {
+        if (offset < 0 || offset > taille) {
+            throw new IllegalArgumentException("Offset hors du fichier : " + offset);
+        }
+        position = offset;
+        fenetre = null;
+    }
+
+    /**
+     * @return le bloc suivant, ou null en fin de fichier
+     */
+    @Override
+    public BlocLignes next() throws IOException {
+        if (position >= taille) {
+            return null;
+        }
+        long fenetreFin = fenetre == null ? -1 : fenetreDebut + fenetre.capacity();
+        if (fenetre == null || (position + tailleBloc > fenetreFin && fenetreFin < taille)) {
+            projeter(position);
+        }
+
+        int debut = (int) (position - fenetreDebut);
+        int capacite = fenetre.capacity();
+        boolean fenetreJusquAuBout = fenetreDebut + capacite == taille;
+        int fin = Math.min(debut + tailleBloc, capacite);
+
+        if (fin < capacite || !fenetreJusquAuBout) {
+            int coupure = dernierSautDeLigne(debut, fin);
+            if (coupure < 0) {
+                // ligne plus longue qu'un bloc : on étend jusqu'au prochain saut de ligne
+                coupure = prochainSautDeLigne(fin, capacite);
+                if (coupure < 0) {
+                    if (!fenetreJusquAuBout) {
+                        throw new IOException("Ligne trop longue à l'offset " + position);
+                    }
+                    coupure = capacite - 1;
+                }
+            }
+            fin = coupure + 1;
+        }
+
+        BlocLignes bloc = new BlocLignes(fenetre.slice(debut, fin - debut), position);
+        position += fin - debut;
+        return bloc;
+    }
+
+    private void projeter(long debut) throws IOException {
+        long longueur = Math.min(TAILLE_FENETRE, taille - debut);
+        fenetre = channel.map(FileChannel.MapMode.READ_ONLY, debut, longueur);
+        fenetreDebut = debut;
+    }
+
+    private int dernierSautDeLigne(int debut, int fin) {
+        for (int i = fin - 1; i >= debut; i--) {
+            if (fenetre.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int prochainSautDeLigne(int debut, int fin) {
+        for (int i = debut; i < fin; i++) {
+            if (fenetre.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        fenetre = null;
+        channel.close();
+    }
+}
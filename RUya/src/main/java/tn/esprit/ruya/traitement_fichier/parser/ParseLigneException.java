@@ -0,0 +1,35 @@
+package tn.esprit.ruya.traitement_fichier.parser;
+
+/**
+ * Erreur de décodage d'une ligne à largeur fixe.
+ * La raison est posée par le décodeur, le numéro de ligne par le parseur qui le connaît.
+ */
+public class ParseLigneException extends RuntimeException {
+
+    private final String raison;
+    private final long ligne;
+
+    public ParseLigneException(String raison) {
+        this(raison, -1);
+    }
+
+    public ParseLigneException(String raison, long ligne) {
+        super(ligne > 0 ? "Erreur de parsing ligne " + ligne + " : " + raison : raison);
+        this.raison = raison;
+        this.ligne = ligne;
+    }
+
+    public String getRaison() {
+        return raison;
+    }
+
+    public long getLigne() {
+        return ligne;
+    }
+
+    public ParseLigneException avecLigne(long numeroLigne) {
+        ParseLigneException e = new ParseLigneException(raison, numeroLigne);
+        e.setStackTrace(getStackTrace());
+        return e;
+    }
+}
@@ -0,0 +1,88 @@
+package tn.esprit.ruya.traitement_fichier.parser;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Source de blocs de lignes complètes. Un fichier texte est projeté en mémoire ; une archive gzip ou zip
+ * est décompressée à la volée, sans être étendue sur disque. Le format est reconnu à sa signature,
+ * pas à l'extension. Les offsets sont exprimés dans le contenu décompressé.
+ */
+public interface SourceBlocs extends Closeable {
+
+    int TAILLE_TAMPON_FLUX = 64 * 1024;
+
+    /**
+     * @return le bloc suivant, ou null en fin de contenu
+     */
+    BlocLignes next() throws IOException;
+
+    /**
+     * Reprend la lecture à offset, qui doit être un début de ligne.
+     */
+    void positionner(long offset) throws IOException;
+
+    static SourceBlocs ouvrir(Path fichier, int tailleBloc) throws IOException {
+        if (Format.detecter(fichier) == Format.TEXTE) {
+            return new MappedBlockReader(fichier, tailleBloc);
+        }
+        return new StreamBlockReader(ouvrirFlux(fichier), tailleBloc);
+    }
+
+    /**
+     * Flux du contenu décompressé ; les entrées d'un zip sont enchaînées comme un seul fichier.
+     */
+    static InputStream ouvrirFlux(Path fichier) throws IOException {
+        return ouvrirFlux(Files.newInputStream(fichier));
+    }
+
+    /**
+     * Flux du contenu décompressé d'un flux brut (upload en cours de copie), reconnu à sa signature.
+     */
+    static InputStream ouvrirFlux(InputStream source) throws IOException {
+        InputStream brut = new BufferedInputStream(source, TAILLE_TAMPON_FLUX);
+        try {
+            brut.mark(4);
+            Format format = Format.detecter(brut.readNBytes(4));
+            brut.reset();
+            switch (format) {
+                case GZIP:
+                    return new GZIPInputStream(brut, TAILLE_TAMPON_FLUX);
+                case ZIP:
+                    return new EntreesZipInputStream(new ZipInputStream(brut));
+                default:
+                    return brut;
+            }
+        } catch (IOException | RuntimeException e) {
+            brut.close();
+            throw e;
+        }
+    }
+
+    enum Format {
+        TEXTE, GZIP, ZIP;
+
+        static Format detecter(Path fichier) throws IOException {
+            try (InputStream in = Files.newInputStream(fichier)) {
+                return detecter(in.readNBytes(4));
+            }
+        }
+
+        static Format detecter(byte[] signature) {
+            if (signature.length >= 2 && (signature[0] & 0xFF) == 0x1F && (signature[1] & 0xFF) == 0x8B) {
+                return GZIP;
+            }
+            if (signature.length == 4 && signature[0] == 'P' && signature[1] == 'K'
+                    && (signature[2] == 3 || signature[2] == 5) && (signature[3] == 4 || signature[3] == 6)) {
+                return ZIP;
+            }
+            return TEXTE;
+        }
+    }
+}
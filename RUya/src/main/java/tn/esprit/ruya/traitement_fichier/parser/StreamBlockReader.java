@@ -0,0 +1,118 @@
+package tn.esprit.ruya.traitement_fichier.parser;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Découpe un flux (contenu décompressé d'une archive) en blocs alignés sur les fins de ligne.
+ * Chaque bloc est un tableau neuf, analysé pendant la lecture du suivant ; la ligne coupée
+ * en fin de tampon est reportée en tête du bloc suivant.
+ */
+public class StreamBlockReader implements SourceBlocs {
+
+    private static final int TAILLE_LIGNE_MAX = 64 << 20;
+
+    private final InputStream flux;
+    private final int tailleBloc;
+
+    private byte[] report = new byte[0];
+    private int reportLongueur;
+    private long position;
+    private boolean finFlux;
+
+    public StreamBlockReader(InputStream flux, int tailleBloc) {
+        if (tailleBloc <= 0 || tailleBloc > TAILLE_LIGNE_MAX) {
+            throw new IllegalArgumentException("Taille de bloc invalide : " + tailleBloc);
+        }
+        this.flux = flux;
+        this.tailleBloc = tailleBloc;
+    }
+
+    /**
+     * Octets décompressés déjà livrés sous forme de blocs.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Saute les offset premiers octets du contenu : le flux est décompressé sans être analysé.
+     * Doit précéder le premier bloc.
+     */
+    @Override
+    public void positionner(long offset) throws IOException {
+        if (position != 0 || reportLongueur != 0) {
+            throw new IllegalStateException("Positionnement après le début de la lecture");
+        }
+        try {
+            flux.skipNBytes(offset);
+        } catch (EOFException e) {
+            throw new IllegalArgumentException("Offset hors du fichier : " + offset);
+        }
+        position = offset;
+    }
+
+    @Override
+    public BlocLignes next() throws IOException {
+        if (finFlux && reportLongueur == 0) {
+            return null;
+        }
+        byte[] tampon = new byte[Math.max(tailleBloc, reportLongueur)];
+        System.arraycopy(report, 0, tampon, 0, reportLongueur);
+        int rempli = reportLongueur;
+        int coupure;
+        while (true) {
+            while (rempli < tampon.length && !finFlux) {
+                int lus = flux.read(tampon, rempli, tampon.length - rempli);
+                if (lus < 0) {
+                    finFlux = true;
+                } else {
+                    rempli += lus;
+                }
+            }
+            if (finFlux) {
+                // dernière ligne livrée telle quelle, même sans saut de ligne final
+                coupure = rempli;
+                break;
+            }
+            coupure = dernierSautDeLigne(tampon, rempli) + 1;
+            if (coupure > 0) {
+                break;
+            }
+            // ligne plus longue qu'un bloc : on agrandit le tampon
+            if (tampon.length >= TAILLE_LIGNE_MAX) {
+                throw new IOException("Ligne trop longue à l'offset " + position);
+            }
+            tampon = Arrays.copyOf(tampon, Math.min(tampon.length * 2, TAILLE_LIGNE_MAX));
+        }
+
+        reportLongueur = rempli - coupure;
+        if (report.length < reportLongueur) {
+            report = new byte[Math.max(reportLongueur, tailleBloc)];
+        }
+        System.arraycopy(tampon, coupure, report, 0, reportLongueur);
+        if (coupure == 0) {
+            return null;
+        }
+        BlocLignes bloc = new BlocLignes(ByteBuffer.wrap(tampon, 0, coupure).slice(), position);
+        position += coupure;
+        return bloc;
+    }
+
+    private static int dernierSautDeLigne(byte[] tampon, int fin) {
+        for (int i = fin - 1; i >= 0; i--) {
+            if (tampon[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flux.close();
+    }
+}
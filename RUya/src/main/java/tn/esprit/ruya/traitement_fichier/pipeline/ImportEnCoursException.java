@@ -0,0 +1,11 @@
+package tn.esprit.ruya.traitement_fichier.pipeline;
+
+/**
+ * Contenu déjà en cours d'import par un autre job : un seul job actif par empreinte.
+ */
+public class ImportEnCoursException extends IllegalStateException {
+
+    public ImportEnCoursException(String nomFichier) {
+        super("Un import du même contenu est déjà en cours : " + nomFichier);
+    }
+}
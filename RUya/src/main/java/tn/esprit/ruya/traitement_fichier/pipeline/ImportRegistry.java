@@ -0,0 +1,150 @@
+package tn.esprit.ruya.traitement_fichier.pipeline;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tn.esprit.ruya.models.ImportFichier;
+import tn.esprit.ruya.models.IngestionCheckpoint;
+import tn.esprit.ruya.traitement_fichier.repository.ICheckpointRepo;
+import tn.esprit.ruya.traitement_fichier.repository.IImportFichierRepo;
+import tn.esprit.ruya.traitement_fichier.repository.ILigneQuarantaineRepo;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registre des imports par empreinte de contenu : un fichier déjà importé avec succès est ignoré,
+ * un fichier dont l'import a échoué reprend sous la même trace (les lignes déjà écrites sont filtrées par clé)
+ * à partir de son point de reprise (INGESTION_CHECKPOINT), quel que soit le job qui le soumet à nouveau.
+ * Un seul job à la fois par empreinte : la trace est verrouillée (SELECT FOR UPDATE) le temps de l'ouverture
+ * et les imports ouverts par cette instance sont tenus en mémoire jusqu'à leur libération. Une trace EN_COURS
+ * absente de ce registre est celle d'un import interrompu par un arrêt, et peut être reprise.
+ */
+@Component
+@RequiredArgsConstructor
+public class ImportRegistry {
+
+    private final IImportFichierRepo importFichierRepo;
+    private final ICheckpointRepo checkpointRepo;
+    private final ILigneQuarantaineRepo ligneQuarantaineRepo;
+    // imports ouverts par un job de cette instance, libérés en fin de job
+    private final Set<Long> actifs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Trace existante pour cette empreinte, sinon nouvelle trace EN_COURS.
+     * Un import interrompu ou en ECHEC est repris (repassé EN_COURS) ; un import TERMINE est rendu tel quel.
+     * Hors import TERMINE, l'appelant doit {@link #liberer} la trace en fin de job.
+     *
+     * @throws ImportEnCoursException si un autre job importe déjà ce contenu
+     */
+    @Transactional
+    public ImportFichier ouvrir(String empreinte, String nomFichier) {
+        Optional<ImportFichier> existante = importFichierRepo.findForUpdateByEmpreinte(empreinte);
+        ImportFichier trace;
+        if (existante.isPresent()) {
+            trace = existante.get();
+            if (trace.getStatut() == ImportFichier.Statut.TERMINE) {
+                return trace;
+            }
+            if (actifs.contains(trace.getId())) {
+                throw new ImportEnCoursException(nomFichier);
+            }
+        } else {
+            trace = new ImportFichier();
+            trace.setEmpreinte(empreinte);
+            trace.setNomFichier(nomFichier);
+        }
+        trace.setStatut(ImportFichier.Statut.EN_COURS);
+        trace.setDateFin(null);
+        try {
+            trace = importFichierRepo.saveAndFlush(trace);
+        } catch (DataIntegrityViolationException e) {
+            // même empreinte insérée par un job concurrent (UK_IMPORT_EMPREINTE)
+            throw new ImportEnCoursException(nomFichier);
+        }
+        reserver(trace.getId());
+        return trace;
+    }
+
+    /**
+     * Refuse d'avance un contenu déjà en cours d'import, sans verrou ; {@link #ouvrir} reste le contrôle de référence.
+     *
+     * @throws ImportEnCoursException si un job de cette instance importe ce contenu
+     */
+    public void verifierDisponible(String empreinte, String nomFichier) {
+        Optional<ImportFichier> trace = importFichierRepo.findByEmpreinte(empreinte);
+        if (trace.isPresent() && estActif(trace.get().getId())) {
+            throw new ImportEnCoursException(nomFichier);
+        }
+    }
+
+    public boolean estActif(Long idImport) {
+        return actifs.contains(idImport);
+    }
+
+    public void liberer(Long idImport) {
+        actifs.remove(idImport);
+    }
+
+    // réservé avant le commit, pour qu'un job en attente du verrou voie l'import actif ; rendu si la transaction échoue
+    private void reserver(Long idImport) {
+        actifs.add(idImport);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        actifs.remove(idImport);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Point de reprise de l'import, rattaché au job courant ; créé au début du fichier s'il n'existe pas.
+     * Les rejets en quarantaine postérieurs au point de reprise sont effacés : la relecture les reproduit.
+     */
+    @Transactional
+    public IngestionCheckpoint ouvrirCheckpoint(Long idImport, IngestionJob job) {
+        IngestionCheckpoint checkpoint = checkpointRepo.findById(idImport).orElseGet(() -> {
+            IngestionCheckpoint nouveau = new IngestionCheckpoint();
+            nouveau.setIdImport(idImport);
+            return nouveau;
+        });
+        checkpoint.setIdJob(job.getId());
+        checkpoint.setChemin(job.getChemin().toAbsolutePath().toString());
+        checkpoint.setNomFichier(job.getNomFichier());
+        checkpoint.setTypeFichier(job.getTypeFichier());
+        checkpoint.setStatut(ImportFichier.Statut.EN_COURS);
+        ligneQuarantaineRepo.deleteApresLigne(idImport, checkpoint.getLigne());
+        return checkpointRepo.save(checkpoint);
+    }
+
+    /**
+     * Lignes en quarantaine de l'import, comptées dans le budget d'erreurs du fichier à la reprise.
+     */
+    public long compterQuarantaine(Long idImport) {
+        return ligneQuarantaineRepo.countByIdImport(idImport);
+    }
+
+    @Transactional
+    public void terminer(Long idImport, ImportFichier.Statut statut, IngestionStats stats) {
+        importFichierRepo.findById(idImport).ifPresent(trace -> {
+            trace.setStatut(statut);
+            trace.setLignesPersistees(trace.getLignesPersistees() + stats.getLignesPersistees());
+            trace.setLignesIgnorees(trace.getLignesIgnorees() + stats.getLignesIgnorees());
+            trace.setDateFin(LocalDateTime.now());
+            importFichierRepo.save(trace);
+        });
+        checkpointRepo.findById(idImport).ifPresent(checkpoint -> {
+            checkpoint.setStatut(statut);
+            checkpointRepo.save(checkpoint);
+        });
+    }
+}
@@ -0,0 +1,119 @@
+package tn.esprit.ruya.traitement_fichier.pipeline;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+/**
+ * Ingestion soumise en arrière-plan : fichier à traiter, état et compteurs d'avancement.
+ */
+public class IngestionJob {
+
+    public enum Statut {
+        EN_ATTENTE, EN_COURS, TERMINE, ECHEC
+    }
+
+    private final String id;
+    private final String nomFichier;
+    private final Path chemin;
+    private final String typeFichier;
+    private final String empreinte;
+    private final IngestionStats stats = new IngestionStats();
+    private final LocalDateTime dateSoumission = LocalDateTime.now();
+
+    private volatile Statut statut = Statut.EN_ATTENTE;
+    private volatile LocalDateTime dateDebut;
+    private volatile LocalDateTime dateFin;
+    private volatile long debutNanos;
+    private volatile long finNanos;
+    private volatile String message;
+
+    public IngestionJob(String id, String nomFichier, Path chemin, String typeFichier) {
+        this(id, nomFichier, chemin, typeFichier, null);
+    }
+
+    /**
+     * @param empreinte empreinte du contenu déjà calculée à la soumission, null pour la calculer à l'ingestion
+     */
+    public IngestionJob(String id, String nomFichier, Path chemin, String typeFichier, String empreinte) {
+        this.id = id;
+        this.nomFichier = nomFichier;
+        this.chemin = chemin;
+        this.typeFichier = typeFichier;
+        this.empreinte = empreinte;
+    }
+
+    public void demarrer() {
+        debutNanos = System.nanoTime();
+        dateDebut = LocalDateTime.now();
+        statut = Statut.EN_COURS;
+    }
+
+    public void terminer(Statut statutFinal, String messageFinal) {
+        finNanos = System.nanoTime();
+        dateFin = LocalDateTime.now();
+        message = messageFinal;
+        statut = statutFinal;
+    }
+
+    /**
+     * Durée écoulée depuis le démarrage, figée à la fin du job.
+     */
+    public double getSecondesEcoulees() {
+        if (debutNanos == 0) {
+            return 0;
+        }
+        long fin = finNanos != 0 ? finNanos : System.nanoTime();
+        return (fin - debutNanos) / 1_000_000_000.0;
+    }
+
+    public boolean estTermine() {
+        return statut == Statut.TERMINE || statut == Statut.ECHEC;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getNomFichier() {
+        return nomFichier;
+    }
+
+    public Path getChemin() {
+        return chemin;
+    }
+
+    /**
+     * Type ou nom de layout indiqué à la soumission, null pour la détection par en-tête.
+     */
+    public String getTypeFichier() {
+        return typeFichier;
+    }
+
+    public String getEmpreinte() {
+        return empreinte;
+    }
+
+    public IngestionStats getStats() {
+        return stats;
+    }
+
+    public Statut getStatut() {
+        return statut;
+    }
+
+    public LocalDateTime getDateSoumission() {
+        return dateSoumission;
+    }
+
+    public LocalDateTime getDateDebut() {
+        return dateDebut;
+    }
+
+    public LocalDateTime getDateFin() {
+        return dateFin;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,126 @@
+package tn.esprit.ruya.traitement_fichier.pipeline;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compteurs d'avancement d'une ingestion, mis à jour par les étages du pipeline.
+ */
+public class IngestionStats {
+
+    private static final int MAX_RAISONS = 20;
+
+    private final AtomicLong octetsTotal = new AtomicLong();
+    private final AtomicLong octetsLus = new AtomicLong();
+    private final AtomicLong lignesLues = new AtomicLong();
+    private final AtomicLong lignesPersistees = new AtomicLong();
+    private final AtomicLong erreurs = new AtomicLong();
+    private final AtomicLong lignesIgnorees = new AtomicLong();
+    private final AtomicLong doublons = new AtomicLong();
+    private volatile boolean dejaImporte;
+    private volatile long ligneReprise;
+    // rejets par raison, bornés en nombre de raisons distinctes
+    private final Map<String, Long> rejetsParRaison = new LinkedHashMap<>();
+
+    public long getOctetsTotal() {
+        return octetsTotal.get();
+    }
+
+    public long getOctetsLus() {
+        return octetsLus.get();
+    }
+
+    public long getLignesLues() {
+        return lignesLues.get();
+    }
+
+    public long getLignesPersistees() {
+        return lignesPersistees.get();
+    }
+
+    public long getErreurs() {
+        return erreurs.get();
+    }
+
+    /**
+     * Lignes non écrites car leur clé naturelle figure déjà dans IMPORT_CLES.
+     */
+    public long getLignesIgnorees() {
+        return lignesIgnorees.get();
+    }
+
+    /**
+     * Parmi les lignes ignorées, celles dont la clé naturelle répète une ligne précédente du même fichier.
+     */
+    public long getDoublons() {
+        return doublons.get();
+    }
+
+    /**
+     * Vrai si le fichier, de même contenu, a déjà été importé avec succès : rien n'a été écrit.
+     */
+    public boolean isDejaImporte() {
+        return dejaImporte;
+    }
+
+    /**
+     * Nombre de lignes déjà écrites par une exécution précédente et sautées à la reprise.
+     */
+    public long getLigneReprise() {
+        return ligneReprise;
+    }
+
+    /**
+     * Résumé des rejets : nombre de lignes par raison (au plus MAX_RAISONS raisons, le reste sous « autres »).
+     */
+    public Map<String, Long> getRejetsParRaison() {
+        synchronized (rejetsParRaison) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(rejetsParRaison));
+        }
+    }
+
+    void setOctetsTotal(long total) {
+        octetsTotal.set(total);
+    }
+
+    void ajouterOctetsLus(long octets) {
+        octetsLus.addAndGet(octets);
+    }
+
+    void ajouterLignesLues(long lignes) {
+        lignesLues.addAndGet(lignes);
+    }
+
+    void ajouterLignesPersistees(long lignes) {
+        lignesPersistees.addAndGet(lignes);
+    }
+
+    void ajouterLignesIgnorees(long lignes) {
+        lignesIgnorees.addAndGet(lignes);
+    }
+
+    void ajouterDoublons(long lignes) {
+        doublons.addAndGet(lignes);
+    }
+
+    void reprendreA(long offset, long ligne, long rejetsPrecedents) {
+        ligneReprise = ligne;
+        octetsLus.set(offset);
+        lignesLues.set(ligne);
+        erreurs.set(rejetsPrecedents);
+    }
+
+    void ajouterRejet(String raison) {
+        erreurs.incrementAndGet();
+        synchronized (rejetsParRaison) {
+            String cle = rejetsParRaison.containsKey(raison) || rejetsParRaison.size() < MAX_RAISONS ? raison : "autres";
+            rejetsParRaison.merge(cle, 1L, Long::sum);
+        }
+    }
+
+    void marquerDejaImporte() {
+        dejaImporte = true;
+    }
+}
@@ -0,0 +1,20 @@
+package tn.esprit.ruya.traitement_fichier.pipeline;
+
+/**
+ * Ligne invalide relevée à l'analyse, avec une copie de ses octets (le bloc projeté ne survit pas à l'écriture).
+ */
+final class LigneRejetee {
+
+    final int indexDansBloc;
+    final long offset;
+    final byte[] octets;
+    final String raison;
+    long numeroLigne;
+
+    LigneRejetee(int indexDansBloc, long offset, byte[] octets, String raison) {
+        this.indexDansBloc = indexDansBloc;
+        this.offset = offset;
+        this.octets = octets;
+        this.raison = raison;
+    }
+}
@@ -0,0 +1,17 @@
+package tn.esprit.ruya.traitement_fichier.pipeline;
+
+/**
+ * Position de reprise : offset d'un début de ligne et nombre de lignes lues avant lui (lignes blanches comprises).
+ */
+final class PointReprise {
+
+    static final PointReprise DEBUT = new PointReprise(0, 0);
+
+    final long offset;
+    final long ligne;
+
+    PointReprise(long offset, long ligne) {
+        this.offset = offset;
+        this.ligne = ligne;
+    }
+}
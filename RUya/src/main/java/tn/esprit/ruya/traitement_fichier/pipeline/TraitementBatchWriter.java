@@ -0,0 +1,129 @@
+package tn.esprit.ruya.traitement_fichier.pipeline;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import tn.esprit.ruya.models.traitement_fichiers;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Étage d'écriture : insertion JDBC par lots dans TRAITEMENT.
+ * L'identifiant étant en IDENTITY, Hibernate ne sait pas regrouper ces inserts ; on passe donc par JdbcTemplate.
+ * Chaque lot est filtré sur les clés naturelles déjà importées (une requête par lot) et ses clés sont
+ * enregistrées dans IMPORT_CLES dans la même transaction : un fichier ré-émis n'insère que ses lignes nouvelles.
+ * Une clé déjà vue dans le même import (même lot, ou lot précédent du même ID_IMPORT) est un doublon du fichier,
+ * compté à part parmi les lignes ignorées.
+ * Les lignes rejetées du lot (quarantaine) et le point de reprise de l'import sont écrits dans cette même transaction.
+ */
+@Component
+@RequiredArgsConstructor
+public class TraitementBatchWriter {
+
+    private static final String INSERT_TRAITEMENT =
+            "INSERT INTO TRAITEMENT (id_fichier, path_reception, path_envoie, date_traitement, nombre, montant, statut) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_CLE = "INSERT INTO IMPORT_CLES (CLE, ID_IMPORT) VALUES (?, ?)";
+    private static final String SELECT_CLES = "SELECT CLE, ID_IMPORT FROM IMPORT_CLES WHERE CLE IN (:cles)";
+    private static final String INSERT_QUARANTAINE =
+            "INSERT INTO QUARANTAINE_LIGNES (ID_IMPORT, NUMERO_LIGNE, OFFSET_OCTETS, CONTENU, RAISON, DATE_CREATION) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_CHECKPOINT =
+            "UPDATE INGESTION_CHECKPOINT SET OFFSET_OCTETS = ?, LIGNE = ?, DATE_MAJ = ? WHERE ID_IMPORT = ?";
+
+    // limite Oracle du nombre d'éléments dans une clause IN
+    private static final int TAILLE_IN = 1000;
+    private static final DateTimeFormatter FORMAT_CLE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Insère les lignes du lot dont la clé naturelle est nouvelle, met les rejets en quarantaine
+     * et porte le point de reprise à reprise, position jusqu'à laquelle tout est écrit une fois ce lot validé.
+     *
+     * @return le nombre de lignes effectivement insérées et, parmi les autres, celles en double dans le fichier
+     */
+    @Transactional
+    public Ecriture inserer(List<traitement_fichiers> lot, List<LigneRejetee> rejets, Long idImport, PointReprise reprise) {
+        Timestamp maintenant = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(UPDATE_CHECKPOINT, reprise.offset, reprise.ligne, maintenant, idImport);
+        if (!rejets.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_QUARANTAINE, rejets, rejets.size(), (ps, rejet) -> {
+                ps.setLong(1, idImport);
+                ps.setLong(2, rejet.numeroLigne);
+                ps.setLong(3, rejet.offset);
+                ps.setBytes(4, rejet.octets);
+                ps.setString(5, rejet.raison.length() > 500 ? rejet.raison.substring(0, 500) : rejet.raison);
+                ps.setTimestamp(6, maintenant);
+            });
+        }
+        if (lot.isEmpty()) {
+            return new Ecriture(0, 0);
+        }
+        Map<String, traitement_fichiers> parCle = new LinkedHashMap<>(lot.size() * 2);
+        int doublons = 0;
+        for (traitement_fichiers tf : lot) {
+            if (parCle.putIfAbsent(cleNaturelle(tf), tf) != null) {
+                doublons++;
+            }
+        }
+        List<String> cles = new ArrayList<>(parCle.keySet());
+        int[] doublonsImport = {0};
+        for (int i = 0; i < cles.size(); i += TAILLE_IN) {
+            List<String> tranche = cles.subList(i, Math.min(i + TAILLE_IN, cles.size()));
+            namedJdbcTemplate.query(SELECT_CLES, Map.of("cles", tranche), rs -> {
+                parCle.remove(rs.getString(1));
+                if (idImport.equals(rs.getLong(2))) {
+                    doublonsImport[0]++;
+                }
+            });
+        }
+        doublons += doublonsImport[0];
+        if (parCle.isEmpty()) {
+            return new Ecriture(0, doublons);
+        }
+
+        List<traitement_fichiers> nouvelles = new ArrayList<>(parCle.values());
+        jdbcTemplate.batchUpdate(INSERT_TRAITEMENT, nouvelles, nouvelles.size(), (ps, tf) -> {
+            if (tf.getFichier() != null && tf.getFichier().getId() != null) {
+                ps.setLong(1, tf.getFichier().getId());
+            } else {
+                ps.setNull(1, Types.NUMERIC);
+            }
+            ps.setString(2, tf.getPathReception());
+            ps.setString(3, tf.getPathEnvoie());
+            ps.setDate(4, Date.valueOf(tf.getDateTraitement()));
+            ps.setInt(5, tf.getNombre());
+            ps.setBigDecimal(6, tf.getMontant());
+            ps.setString(7, tf.getStatut());
+        });
+        List<String> nouvellesCles = new ArrayList<>(parCle.keySet());
+        jdbcTemplate.batchUpdate(INSERT_CLE, nouvellesCles, nouvellesCles.size(), (ps, cle) -> {
+            ps.setString(1, cle);
+            ps.setLong(2, idImport);
+        });
+        return new Ecriture(nouvelles.size(), doublons);
+    }
+
+    /**
+     * Bilan d'un lot : lignes insérées, et lignes écartées comme doublons d'une ligne du même import.
+     */
+    record Ecriture(int inserees, int doublons) {
+    }
+
+    /**
+     * Clé naturelle d'une remise : nomFichier|codeFichier|nombre|date.
+     */
+    static String cleNaturelle(traitement_fichiers tf) {
+        return tf.getPathReception() + '|' + tf.getPathEnvoie() + '|' + tf.getNombre() + '|'
+                + tf.getDateTraitement().format(FORMAT_CLE);
+    }
+}
@@ -0,0 +1,437 @@
+package tn.esprit.ruya.traitement_fichier.pipeline;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tn.esprit.ruya.Fichier.service.FichierLookupCache;
+import tn.esprit.ruya.models.Fichier;
+import tn.esprit.ruya.models.ImportFichier;
+import tn.esprit.ruya.models.IngestionCheckpoint;
+import tn.esprit.ruya.models.traitement_fichiers;
+import tn.esprit.ruya.traitement_fichier.layout.CompiledLayout;
+import tn.esprit.ruya.traitement_fichier.layout.DecodedRecord;
+import tn.esprit.ruya.traitement_fichier.layout.LayoutRegistry;
+import tn.esprit.ruya.traitement_fichier.parser.BlocLignes;
+import tn.esprit.ruya.traitement_fichier.parser.ParseLigneException;
+import tn.esprit.ruya.traitement_fichier.parser.SourceBlocs;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pipeline d'ingestion en trois étages :
+ * lecture (blocs alignés sur les lignes) → analyse (pool de threads) → écriture (inserts par lots).
+ * Les étages communiquent par une file bornée de résultats futurs, consommée dans l'ordre de lecture :
+ * l'écriture garde ainsi l'ordre des lignes (et leurs numéros) tout en laissant l'analyse se paralléliser.
+ * Une passe préalable calcule l'empreinte du contenu : un fichier déjà importé avec succès n'est pas relu.
+ * Une archive gzip ou zip est décompressée à la volée dans la lecture ; empreinte, offsets et points
+ * de reprise portent alors sur le contenu décompressé.
+ * En mode QUARANTAINE, une ligne invalide est écrite dans QUARANTAINE_LIGNES (numéro, octets, raison)
+ * et l'ingestion continue tant que le budget d'erreurs du fichier n'est pas dépassé ; en mode STRICT,
+ * la première ligne invalide arrête l'ingestion.
+ */
+@Component
+public class TraitementPipeline {
+
+    private static final CompletableFuture<BlocAnalyse> FIN = CompletableFuture.completedFuture(null);
+
+    private final TraitementBatchWriter writer;
+    private final FichierLookupCache fichierLookupCache;
+    private final LayoutRegistry layoutRegistry;
+    private final ImportRegistry importRegistry;
+    private final ExecutorService poolAnalyse;
+    private final ExecutorService poolLecture;
+    private final int capaciteFile;
+    private final int tailleLot;
+    private final int tailleBloc;
+    private final boolean quarantaine;
+    private final long budgetErreurs;
+
+    public TraitementPipeline(TraitementBatchWriter writer,
+                              FichierLookupCache fichierLookupCache,
+                              LayoutRegistry layoutRegistry,
+                              ImportRegistry importRegistry,
+                              @Value("${ruya.ingestion.threads-analyse:0}") int threadsAnalyse,
+                              @Value("${ruya.ingestion.capacite-file:16}") int capaciteFile,
+                              @Value("${ruya.ingestion.taille-lot:1000}") int tailleLot,
+                              @Value("${ruya.ingestion.taille-bloc:1048576}") int tailleBloc,
+                              @Value("${ruya.ingestion.mode:STRICT}") String mode,
+                              @Value("${ruya.ingestion.budget-erreurs:1000}") long budgetErreurs) {
+        this.writer = writer;
+        this.fichierLookupCache = fichierLookupCache;
+        this.layoutRegistry = layoutRegistry;
+        this.importRegistry = importRegistry;
+        int threads = threadsAnalyse > 0 ? threadsAnalyse : Runtime.getRuntime().availableProcessors();
+        this.poolAnalyse = Executors.newFixedThreadPool(threads, threadsNommes("ingestion-analyse-"));
+        this.poolLecture = Executors.newCachedThreadPool(threadsNommes("ingestion-lecture-"));
+        this.capaciteFile = capaciteFile;
+        this.tailleLot = tailleLot;
+        this.tailleBloc = tailleBloc;
+        this.quarantaine = "QUARANTAINE".equalsIgnoreCase(mode);
+        this.budgetErreurs = budgetErreurs;
+    }
+
+    /**
+     * Ingère le fichier du job ; l'appelant porte l'étage d'écriture et reste bloqué jusqu'à la fin.
+     * Une ligne invalide arrête l'ingestion après écriture des lignes valides qui la précèdent.
+     * Un contenu dont l'import a été interrompu reprend à son dernier point de reprise, sans relire le début.
+     * Le type de fichier du job (layout) peut être null : détection par en-tête.
+     *
+     * @throws ImportEnCoursException si le même contenu est déjà en cours d'import par un autre job
+     */
+    public IngestionStats executer(IngestionJob job) {
+        Path fichier = job.getChemin();
+        IngestionStats stats = job.getStats();
+        Decodage decodage = new Decodage(selectionnerLayout(fichier, job.getTypeFichier()));
+        Prealable prealable = passePrealable(fichier, decodage, job.getEmpreinte());
+        stats.setOctetsTotal(prealable.octets);
+        ImportFichier trace = importRegistry.ouvrir(prealable.empreinte, job.getNomFichier());
+        if (trace.getStatut() == ImportFichier.Statut.TERMINE) {
+            stats.ajouterOctetsLus(prealable.octets);
+            stats.marquerDejaImporte();
+            return stats;
+        }
+        try {
+            IngestionCheckpoint checkpoint = importRegistry.ouvrirCheckpoint(trace.getId(), job);
+            PointReprise depart = new PointReprise(checkpoint.getOffsetOctets(), checkpoint.getLigne());
+            stats.reprendreA(depart.offset, depart.ligne, importRegistry.compterQuarantaine(trace.getId()));
+
+            FichierLookupCache.Resolution fichiers = fichierLookupCache.prechauffer(prealable.noms);
+            BlockingQueue<CompletableFuture<BlocAnalyse>> file = new ArrayBlockingQueue<>(capaciteFile);
+            AtomicBoolean arret = new AtomicBoolean();
+            Future<?> lecture = poolLecture.submit(() -> lire(fichier, depart.offset, decodage, fichiers, file, arret));
+
+            try {
+                ecrire(file, trace.getId(), depart, stats);
+            } catch (RuntimeException e) {
+                arret.set(true);
+                // débloque le lecteur éventuellement en attente sur une file pleine
+                while (!lecture.isDone()) {
+                    file.clear();
+                    attendre(lecture);
+                }
+                importRegistry.terminer(trace.getId(), ImportFichier.Statut.ECHEC, stats);
+                throw e;
+            }
+            importRegistry.terminer(trace.getId(), ImportFichier.Statut.TERMINE, stats);
+            return stats;
+        } finally {
+            importRegistry.liberer(trace.getId());
+        }
+    }
+
+    /**
+     * Copie le flux dans depot et rend l'empreinte SHA-256 de son contenu (décompressé pour une archive),
+     * telle que l'ingestion la calcule : l'upload n'est lu qu'une fois.
+     */
+    public String deposer(InputStream source, Path depot) throws IOException {
+        MessageDigest sha256 = sha256();
+        try (OutputStream sortie = Files.newOutputStream(depot);
+             CopieInputStream copie = new CopieInputStream(source, sortie)) {
+            InputStream contenu = SourceBlocs.ouvrirFlux(copie);
+            byte[] tampon = new byte[SourceBlocs.TAILLE_TAMPON_FLUX];
+            int lus;
+            while ((lus = contenu.read(tampon)) >= 0) {
+                sha256.update(tampon, 0, lus);
+            }
+            // fin de l'archive non lue par la décompression (répertoire central d'un zip)
+            copie.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+
+    /**
+     * Passe préalable sur le contenu : empreinte SHA-256 (sauf si déjà connue), taille (décompressée)
+     * et noms de fichiers distincts, pour préchauffer la résolution.
+     */
+    private Prealable passePrealable(Path fichier, Decodage decodage, String empreinte) {
+        Prealable prealable = new Prealable();
+        MessageDigest sha256 = empreinte == null ? sha256() : null;
+        try (SourceBlocs reader = SourceBlocs.ouvrir(fichier, tailleBloc)) {
+            BlocLignes bloc;
+            while ((bloc = reader.next()) != null) {
+                prealable.octets = bloc.getOffsetFin();
+                if (sha256 != null) {
+                    sha256.update(bloc.getDonnees().duplicate());
+                }
+                decodage.layout.collecterTextes(bloc, decodage.nomFichier, prealable.noms);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Erreur de lecture du fichier : " + e.getMessage(), e);
+        }
+        prealable.empreinte = sha256 != null ? HexFormat.of().formatHex(sha256.digest()) : empreinte;
+        return prealable;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private CompiledLayout selectionnerLayout(Path fichier, String typeFichier) {
+        try {
+            return layoutRegistry.selectionner(fichier, typeFichier);
+        } catch (IOException e) {
+            throw new IllegalStateException("Erreur de lecture du fichier : " + e.getMessage(), e);
+        }
+    }
+
+    private void lire(Path fichier, long offsetDepart, Decodage decodage, FichierLookupCache.Resolution fichiers,
+                      BlockingQueue<CompletableFuture<BlocAnalyse>> file, AtomicBoolean arret) {
+        try (SourceBlocs reader = SourceBlocs.ouvrir(fichier, tailleBloc)) {
+            reader.positionner(offsetDepart);
+            BlocLignes bloc;
+            while (!arret.get() && (bloc = reader.next()) != null) {
+                BlocLignes courant = bloc;
+                file.put(CompletableFuture.supplyAsync(() -> analyser(courant, decodage, fichiers), poolAnalyse));
+            }
+            file.put(FIN);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            try {
+                file.put(CompletableFuture.failedFuture(e));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private BlocAnalyse analyser(BlocLignes bloc, Decodage decodage, FichierLookupCache.Resolution fichiers) {
+        CompiledLayout layout = decodage.layout;
+        DecodedRecord record = layout.nouvelEnregistrement();
+        BlocAnalyse analyse = new BlocAnalyse(bloc.getOffsetFin() - bloc.getOffsetDebut(), bloc.getOffsetFin());
+        analyse.lignes = bloc.parcourirLignes((buf, debut, fin, index) -> {
+            if (analyse.arretee || layout.estHorsDonnees(buf, debut, fin)) {
+                return;
+            }
+            try {
+                layout.decoder(buf, debut, fin, record);
+                analyse.traitements.add(versTraitement(record, decodage, fichiers));
+            } catch (ParseLigneException e) {
+                byte[] octets = new byte[fin - debut];
+                buf.get(debut, octets);
+                analyse.rejets.add(new LigneRejetee(index, bloc.getOffsetDebut() + debut, octets, e.getRaison()));
+                analyse.arretee = !quarantaine;
+            }
+        });
+        return analyse;
+    }
+
+    /**
+     * Le point de reprise avance à la fin de chaque bloc entièrement versé dans les lots : il est persisté
+     * avec le lot suivant, qui contient (ou suit) toutes ses lignes. Les lignes d'un bloc à demi écrit
+     * sont relues à la reprise et écartées par leur clé naturelle.
+     */
+    private void ecrire(BlockingQueue<CompletableFuture<BlocAnalyse>> file, Long idImport,
+                        PointReprise depart, IngestionStats stats) {
+        List<traitement_fichiers> lot = new ArrayList<>(tailleLot);
+        List<LigneRejetee> rejets = new ArrayList<>();
+        long lignesPrecedentes = depart.ligne;
+        PointReprise reprise = depart;
+        while (true) {
+            BlocAnalyse analyse = prochain(file);
+            if (analyse == null) {
+                break;
+            }
+            stats.ajouterOctetsLus(analyse.octets);
+            stats.ajouterLignesLues(analyse.lignes);
+            for (traitement_fichiers tf : analyse.traitements) {
+                lot.add(tf);
+                if (lot.size() >= tailleLot) {
+                    vider(lot, rejets, idImport, reprise, stats);
+                }
+            }
+            for (LigneRejetee rejet : analyse.rejets) {
+                rejet.numeroLigne = lignesPrecedentes + rejet.indexDansBloc + 1;
+                stats.ajouterRejet(rejet.raison);
+                if (!quarantaine) {
+                    vider(lot, rejets, idImport, reprise, stats);
+                    throw new ParseLigneException(rejet.raison, rejet.numeroLigne);
+                }
+                rejets.add(rejet);
+                if (stats.getErreurs() > budgetErreurs) {
+                    vider(lot, rejets, idImport, reprise, stats);
+                    throw new IllegalStateException("Budget d'erreurs dépassé : plus de " + budgetErreurs
+                            + " lignes en quarantaine (dernière : ligne " + rejet.numeroLigne + " : " + rejet.raison + ")");
+                }
+            }
+            lignesPrecedentes += analyse.lignes;
+            reprise = new PointReprise(analyse.offsetFin, lignesPrecedentes);
+        }
+        vider(lot, rejets, idImport, reprise, stats);
+    }
+
+    private BlocAnalyse prochain(BlockingQueue<CompletableFuture<BlocAnalyse>> file) {
+        try {
+            return file.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ingestion interrompue", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause
+                    : new IllegalStateException("Erreur de lecture du fichier : " + cause.getMessage(), cause);
+        }
+    }
+
+    private void vider(List<traitement_fichiers> lot, List<LigneRejetee> rejets, Long idImport,
+                       PointReprise reprise, IngestionStats stats) {
+        TraitementBatchWriter.Ecriture ecriture = writer.inserer(lot, rejets, idImport, reprise);
+        stats.ajouterLignesPersistees(ecriture.inserees());
+        stats.ajouterLignesIgnorees(lot.size() - ecriture.inserees());
+        stats.ajouterDoublons(ecriture.doublons());
+        lot.clear();
+        rejets.clear();
+    }
+
+    private traitement_fichiers versTraitement(DecodedRecord record, Decodage decodage,
+                                               FichierLookupCache.Resolution fichiers) {
+        String nomFichier = record.getTexte(decodage.nomFichier);
+        String codeFichier = record.getTexte(decodage.codeFichier);
+        Long idFichier = fichiers.resoudre(nomFichier, codeFichier);
+        if (idFichier == null) {
+            throw new ParseLigneException("fichier introuvable dans FICHIERS : " + nomFichier + " / " + codeFichier);
+        }
+
+        traitement_fichiers tf = new traitement_fichiers();
+        tf.setNombre(record.getInt(decodage.nombre));
+        tf.setPathReception(nomFichier);
+        tf.setPathEnvoie(codeFichier);
+        tf.setStatut(record.getTexte(decodage.statut));
+        tf.setDateTraitement(record.getDate(decodage.dateTraitement));
+        tf.setMontant(record.getMontant(decodage.montant));
+
+        // référence au fichier existant : seul l'identifiant est utilisé par l'insert JDBC
+        Fichier fichier = new Fichier();
+        fichier.setId(idFichier);
+        tf.setFichier(fichier);
+
+        return tf;
+    }
+
+    private static void attendre(Future<?> tache) {
+        try {
+            tache.get(100, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException ignored) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory threadsNommes(String prefixe) {
+        AtomicInteger compteur = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefixe + compteur.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @PreDestroy
+    public void arreter() {
+        poolLecture.shutdownNow();
+        poolAnalyse.shutdownNow();
+    }
+
+    /**
+     * Layout retenu pour le fichier et index des champs alimentant TRAITEMENT, résolus une fois par ingestion.
+     */
+    private static final class Decodage {
+        private final CompiledLayout layout;
+        private final int nombre;
+        private final int nomFichier;
+        private final int codeFichier;
+        private final int dateTraitement;
+        private final int montant;
+        private final int statut;
+
+        private Decodage(CompiledLayout layout) {
+            this.layout = layout;
+            this.nombre = layout.indexObligatoire("nombre");
+            this.nomFichier = layout.indexObligatoire("nomFichier");
+            this.codeFichier = layout.indexObligatoire("codeFichier");
+            this.dateTraitement = layout.indexObligatoire("dateTraitement");
+            this.montant = layout.indexObligatoire("montant");
+            this.statut = layout.indexObligatoire("statut");
+        }
+    }
+
+    private static final class Prealable {
+        private final Set<String> noms = new HashSet<>();
+        private long octets;
+        private String empreinte;
+    }
+
+    /**
+     * Flux recopiant dans sortie tout octet lu.
+     */
+    private static final class CopieInputStream extends FilterInputStream {
+
+        private final OutputStream sortie;
+
+        private CopieInputStream(InputStream source, OutputStream sortie) {
+            super(source);
+            this.sortie = sortie;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int octet = super.read();
+            if (octet >= 0) {
+                sortie.write(octet);
+            }
+            return octet;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int lus = super.read(b, off, len);
+            if (lus > 0) {
+                sortie.write(b, off, lus);
+            }
+            return lus;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return read(new byte[(int) Math.min(n, SourceBlocs.TAILLE_TAMPON_FLUX)]);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    private static final class BlocAnalyse {
+        private final long octets;
+        private final long offsetFin;
+        private final List<traitement_fichiers> traitements = new ArrayList<>();
+        private final List<LigneRejetee> rejets = new ArrayList<>(0);
+        private int lignes;
+        private boolean arretee;
+
+        private BlocAnalyse(long octets, long offsetFin) {
+            this.octets = octets;
+            this.offsetFin = offsetFin;
+        }
+    }
+}
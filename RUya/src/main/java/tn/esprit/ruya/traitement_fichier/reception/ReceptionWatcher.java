@@ -0,0 +1,247 @@
+package tn.esprit.ruya.traitement_fichier.reception;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import tn.esprit.ruya.traitement_fichier.layout.LayoutRegistry;
+import tn.esprit.ruya.traitement_fichier.pipeline.IngestionJob;
+import tn.esprit.ruya.traitement_fichier.service.IngestionJobService;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Surveillance des répertoires de réception : chaque fichier complet est ingéré sur place
+ * (sans copie) puis déplacé dans le sous-répertoire des fichiers traités ou en erreur.
+ * <p>
+ * Un fichier est complet quand sa taille et sa date de modification n'ont pas bougé depuis
+ * ruya.reception.stabilite-ms ; les fichiers en cours de dépôt (.tmp, .part, fichiers cachés)
+ * sont ignorés, ce qui permet aussi la convention « écrire puis renommer ».
+ * Le WatchService signale les arrivées au plus tôt ; un balayage périodique couvre les systèmes
+ * de fichiers sans notification (partages réseau) et les événements perdus.
+ */
+@Component
+@ConditionalOnProperty(prefix = "ruya.reception", name = "active", havingValue = "true")
+public class ReceptionWatcher {
+
+    private static final List<String> SUFFIXES_IGNORES = List.of(".tmp", ".part", ".filepart", ".crdownload");
+    private static final DateTimeFormatter HORODATAGE = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final IngestionJobService ingestionJobService;
+    private final LayoutRegistry layoutRegistry;
+    private final List<Path> repertoires;
+    private final String sousRepertoireTraites;
+    private final String sousRepertoireErreurs;
+    private final long stabiliteMs;
+
+    private final Map<Path, Observation> candidats = new ConcurrentHashMap<>();
+    private final Set<Path> enCours = ConcurrentHashMap.newKeySet();
+    private WatchService watchService;
+    private Thread threadSurveillance;
+
+    public ReceptionWatcher(IngestionJobService ingestionJobService,
+                            LayoutRegistry layoutRegistry,
+                            @Value("${ruya.reception.repertoires:}") List<String> repertoires,
+                            @Value("${ruya.reception.traites:traites}") String sousRepertoireTraites,
+                            @Value("${ruya.reception.erreurs:erreurs}") String sousRepertoireErreurs,
+                            @Value("${ruya.reception.stabilite-ms:2000}") long stabiliteMs) {
+        this.ingestionJobService = ingestionJobService;
+        this.layoutRegistry = layoutRegistry;
+        this.repertoires = repertoires.stream()
+                .filter(r -> !r.isBlank())
+                .map(r -> Paths.get(r.trim()).toAbsolutePath().normalize())
+                .collect(Collectors.toList());
+        this.sousRepertoireTraites = sousRepertoireTraites;
+        this.sousRepertoireErreurs = sousRepertoireErreurs;
+        this.stabiliteMs = stabiliteMs;
+    }
+
+    @PostConstruct
+    public void demarrer() throws IOException {
+        for (Path repertoire : repertoires) {
+            Files.createDirectories(repertoire.resolve(sousRepertoireTraites));
+            Files.createDirectories(repertoire.resolve(sousRepertoireErreurs));
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (Path repertoire : repertoires) {
+                repertoire.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+            threadSurveillance = new Thread(this::surveiller, "reception-watcher");
+            threadSurveillance.setDaemon(true);
+            threadSurveillance.start();
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println("❌ WatchService indisponible, balayage périodique seul : " + e.getMessage());
+            watchService = null;
+        }
+    }
+
+    /**
+     * Boucle du WatchService : enregistre les arrivées et vérifie les candidats à chaque réveil,
+     * au plus tard toutes les stabilite-ms pour que les fichiers stabilisés partent sans attendre le balayage.
+     */
+    private void surveiller() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                WatchKey cle = watchService.poll(stabiliteMs, TimeUnit.MILLISECONDS);
+                if (cle != null) {
+                    Path repertoire = (Path) cle.watchable();
+                    for (WatchEvent<?> evenement : cle.pollEvents()) {
+                        if (evenement.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            balayer(repertoire);
+                        } else {
+                            observer(repertoire.resolve((Path) evenement.context()));
+                        }
+                    }
+                    cle.reset();
+                }
+                soumettreFichiersStables();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("❌ Erreur de surveillance de la réception : " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Balayage de secours des répertoires de réception.
+     */
+    @Scheduled(fixedDelayString = "${ruya.reception.intervalle-ms:10000}")
+    public void scruter() {
+        repertoires.forEach(this::balayer);
+        soumettreFichiersStables();
+    }
+
+    private void balayer(Path repertoire) {
+        try (Stream<Path> fichiers = Files.list(repertoire)) {
+            fichiers.forEach(this::observer);
+        } catch (IOException e) {
+            System.err.println("❌ Lecture impossible du répertoire de réception " + repertoire + ": " + e.getMessage());
+        }
+    }
+
+    private void observer(Path fichier) {
+        if (ignore(fichier) || enCours.contains(fichier)) {
+            return;
+        }
+        try {
+            BasicFileAttributes attributs = Files.readAttributes(fichier, BasicFileAttributes.class);
+            // un fichier vide est le plus souvent un dépôt qui commence
+            if (!attributs.isRegularFile() || attributs.size() == 0) {
+                return;
+            }
+            Observation vue = new Observation(attributs.size(), attributs.lastModifiedTime().toMillis());
+            candidats.merge(fichier, vue, (ancienne, nouvelle) -> ancienne.memeEtat(nouvelle) ? ancienne : nouvelle);
+        } catch (NoSuchFileException e) {
+            candidats.remove(fichier);
+        } catch (IOException e) {
+            System.err.println("❌ Lecture impossible de " + fichier + ": " + e.getMessage());
+        }
+    }
+
+    private synchronized void soumettreFichiersStables() {
+        long maintenant = System.currentTimeMillis();
+        for (Map.Entry<Path, Observation> entree : candidats.entrySet()) {
+            Path fichier = entree.getKey();
+            observer(fichier);
+            Observation vue = candidats.get(fichier);
+            if (vue == null || maintenant - vue.depuis < stabiliteMs) {
+                continue;
+            }
+            try {
+                enCours.add(fichier);
+                ingestionJobService.soumettre(fichier, fichier.getFileName().toString(), typeFichier(fichier), this::archiver);
+                candidats.remove(fichier);
+            } catch (RejectedExecutionException e) {
+                // file de jobs pleine : le fichier reste candidat et repart au prochain passage
+                enCours.remove(fichier);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Le nom du répertoire de réception sert d'indication de layout s'il en désigne un (ex. .../cheque).
+     */
+    private String typeFichier(Path fichier) {
+        String repertoire = fichier.getParent().getFileName().toString();
+        return layoutRegistry.estDeclare(repertoire) ? repertoire : null;
+    }
+
+    private void archiver(IngestionJob job) {
+        Path fichier = job.getChemin();
+        boolean succes = job.getStatut() == IngestionJob.Statut.TERMINE;
+        Path destination = fichier.resolveSibling(succes ? sousRepertoireTraites : sousRepertoireErreurs);
+        try {
+            Path archive = deplacer(fichier, destination);
+            if (!succes) {
+                Files.writeString(archive.resolveSibling(archive.getFileName() + ".erreur"),
+                        job.getMessage() != null ? job.getMessage() : "", StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Impossible d'archiver " + fichier + ": " + e.getMessage());
+        } finally {
+            enCours.remove(fichier);
+        }
+    }
+
+    private static Path deplacer(Path fichier, Path repertoire) throws IOException {
+        Path cible = repertoire.resolve(fichier.getFileName());
+        if (Files.exists(cible)) {
+            cible = repertoire.resolve(fichier.getFileName() + "." + LocalDateTime.now().format(HORODATAGE));
+        }
+        try {
+            return Files.move(fichier, cible, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            return Files.move(fichier, cible);
+        }
+    }
+
+    private static boolean ignore(Path fichier) {
+        String nom = fichier.getFileName().toString().toLowerCase();
+        return nom.startsWith(".") || SUFFIXES_IGNORES.stream().anyMatch(nom::endsWith);
+    }
+
+    @PreDestroy
+    public void arreter() throws IOException {
+        if (threadSurveillance != null) {
+            threadSurveillance.interrupt();
+        }
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    /**
+     * Dernier état vu d'un fichier candidat et instant depuis lequel il n'a pas changé.
+     */
+    private static final class Observation {
+        private final long taille;
+        private final long modification;
+        private final long depuis = System.currentTimeMillis();
+
+        private Observation(long taille, long modification) {
+            this.taille = taille;
+            this.modification = modification;
+        }
+
+        private boolean memeEtat(Observation autre) {
+            return taille == autre.taille && modification == autre.modification;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package tn.esprit.ruya.traitement_fichier.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import tn.esprit.ruya.models.IngestionCheckpoint;
+
+import java.util.Optional;
+
+@Repository
+public interface ICheckpointRepo extends JpaRepository<IngestionCheckpoint, Long> {
+
+    Optional<IngestionCheckpoint> findFirstByIdJob(String idJob);
+}
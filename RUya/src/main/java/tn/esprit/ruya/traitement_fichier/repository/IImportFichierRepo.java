@@ -0,0 +1,22 @@
+package tn.esprit.ruya.traitement_fichier.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import tn.esprit.ruya.models.ImportFichier;
+
+import java.util.Optional;
+
+@Repository
+public interface IImportFichierRepo extends JpaRepository<ImportFichier, Long> {
+
+    Optional<ImportFichier> findByEmpreinte(String empreinte);
+
+    // SELECT ... FOR UPDATE : sérialise l'ouverture des imports d'un même contenu
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM ImportFichier i WHERE i.empreinte = :empreinte")
+    Optional<ImportFichier> findForUpdateByEmpreinte(@Param("empreinte") String empreinte);
+}
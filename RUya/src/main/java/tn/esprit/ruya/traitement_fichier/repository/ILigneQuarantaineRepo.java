@@ -0,0 +1,26 @@
+package tn.esprit.ruya.traitement_fichier.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import tn.esprit.ruya.models.LigneQuarantaine;
+
+import java.util.List;
+
+@Repository
+public interface ILigneQuarantaineRepo extends JpaRepository<LigneQuarantaine, Long> {
+
+    List<LigneQuarantaine> findByIdImportOrderByNumeroLigne(Long idImport, Pageable pageable);
+
+    long countByIdImport(Long idImport);
+
+    /**
+     * Rejets postérieurs au point de reprise : ils seront reproduits par la relecture.
+     */
+    @Modifying
+    @Query("DELETE FROM LigneQuarantaine q WHERE q.idImport = :idImport AND q.numeroLigne > :ligne")
+    int deleteApresLigne(@Param("idImport") Long idImport, @Param("ligne") Long ligne);
+}
@@ -0,0 +1,426 @@
+package tn.esprit.ruya.traitement_fichier.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import tn.esprit.ruya.models.ImportFichier;
+import tn.esprit.ruya.models.IngestionCheckpoint;
+import tn.esprit.ruya.models.IngestionJobDTO;
+import tn.esprit.ruya.models.LigneQuarantaineDTO;
+import tn.esprit.ruya.traitement_fichier.layout.LayoutRegistry;
+import tn.esprit.ruya.traitement_fichier.pipeline.ImportEnCoursException;
+import tn.esprit.ruya.traitement_fichier.pipeline.ImportRegistry;
+import tn.esprit.ruya.traitement_fichier.pipeline.IngestionJob;
+import tn.esprit.ruya.traitement_fichier.pipeline.IngestionStats;
+import tn.esprit.ruya.traitement_fichier.pipeline.TraitementPipeline;
+import tn.esprit.ruya.traitement_fichier.repository.ICheckpointRepo;
+import tn.esprit.ruya.traitement_fichier.repository.ILigneQuarantaineRepo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * File de jobs d'ingestion : l'upload est déposé dans le répertoire de travail puis traité
+ * en arrière-plan par un exécuteur borné, sans retenir le thread HTTP.
+ * Chaque dépôt est accompagné d'une description (upload-{id}.dat.job : job, fichier, layout, état),
+ * qui permet de le relancer même si la base a été recréée au démarrage.
+ * Le dépôt d'un job en échec est conservé pour permettre sa reprise (au point de reprise persisté s'il existe) ;
+ * les jobs interrompus par un arrêt de l'application sont relancés au démarrage.
+ */
+@Service
+public class IngestionJobService {
+
+    private static final String PREFIXE_DEPOT = "upload-";
+    private static final String SUFFIXE_DEPOT = ".dat";
+    private static final String SUFFIXE_DESCRIPTION = ".job";
+    private static final String ID = "id";
+    private static final String NOM_FICHIER = "nomFichier";
+    private static final String TYPE_FICHIER = "typeFichier";
+    private static final String STATUT = "statut";
+
+    private final TraitementPipeline traitementPipeline;
+    private final LayoutRegistry layoutRegistry;
+    private final ImportRegistry importRegistry;
+    private final ICheckpointRepo checkpointRepo;
+    private final ILigneQuarantaineRepo ligneQuarantaineRepo;
+    private final ThreadPoolExecutor executeur;
+    private final Path repertoireTravail;
+    private final long retentionMinutes;
+    private final long repriseRetentionHeures;
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+
+    public IngestionJobService(TraitementPipeline traitementPipeline,
+                               LayoutRegistry layoutRegistry,
+                               ImportRegistry importRegistry,
+                               ICheckpointRepo checkpointRepo,
+                               ILigneQuarantaineRepo ligneQuarantaineRepo,
+                               @Value("${ruya.ingestion.jobs-simultanes:2}") int jobsSimultanes,
+                               @Value("${ruya.ingestion.jobs-en-attente:50}") int jobsEnAttente,
+                               @Value("${ruya.ingestion.repertoire-travail:data/ingestion}") String repertoireTravail,
+                               @Value("${ruya.ingestion.jobs-retention-minutes:60}") long retentionMinutes,
+                               @Value("${ruya.ingestion.reprise-retention-heures:72}") long repriseRetentionHeures) {
+        this.traitementPipeline = traitementPipeline;
+        this.layoutRegistry = layoutRegistry;
+        this.importRegistry = importRegistry;
+        this.checkpointRepo = checkpointRepo;
+        this.ligneQuarantaineRepo = ligneQuarantaineRepo;
+        AtomicInteger compteur = new AtomicInteger();
+        this.executeur = new ThreadPoolExecutor(jobsSimultanes, jobsSimultanes, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(jobsEnAttente),
+                r -> new Thread(r, "ingestion-job-" + compteur.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.repertoireTravail = Paths.get(repertoireTravail).toAbsolutePath().normalize();
+        this.retentionMinutes = retentionMinutes;
+        this.repriseRetentionHeures = repriseRetentionHeures;
+    }
+
+    /**
+     * Dépose l'upload dans le répertoire de travail et le met en file.
+     * Son empreinte est calculée pendant la copie, pour refuser d'emblée un contenu déjà en cours d'import.
+     *
+     * @throws RejectedExecutionException si la file de jobs est pleine
+     * @throws IllegalArgumentException si typeFichier ne désigne aucun layout de réception TRAITEMENT
+     * @throws ImportEnCoursException si le même contenu est en cours d'import
+     */
+    public IngestionJob soumettre(MultipartFile file, String typeFichier) throws IOException {
+        layoutRegistry.verifierType(typeFichier);
+        Files.createDirectories(repertoireTravail);
+        String id = UUID.randomUUID().toString();
+        Path depot = Files.createFile(depot(id));
+        try {
+            String empreinte;
+            try (InputStream source = file.getInputStream()) {
+                empreinte = traitementPipeline.deposer(source, depot);
+            }
+            importRegistry.verifierDisponible(empreinte, file.getOriginalFilename());
+            decrire(depot, id, file.getOriginalFilename(), typeFichier, IngestionJob.Statut.EN_COURS);
+            return soumettre(id, depot, file.getOriginalFilename(), typeFichier, empreinte, this::cloturerDepot);
+        } catch (IOException | RuntimeException e) {
+            supprimerDepot(depot);
+            throw e;
+        }
+    }
+
+    /**
+     * Met en file un fichier déjà présent sur disque ; aLaFin est appelé une fois le job terminé
+     * (succès ou échec), depuis le thread du job.
+     */
+    public IngestionJob soumettre(Path fichier, String nomFichier, String typeFichier, Consumer<IngestionJob> aLaFin) {
+        return soumettre(UUID.randomUUID().toString(), fichier, nomFichier, typeFichier, null, aLaFin);
+    }
+
+    private IngestionJob soumettre(String id, Path fichier, String nomFichier, String typeFichier, String empreinte,
+                                   Consumer<IngestionJob> aLaFin) {
+        purgerJobsTermines();
+        IngestionJob job = new IngestionJob(id, nomFichier, fichier, typeFichier, empreinte);
+        jobs.put(job.getId(), job);
+        try {
+            executeur.execute(() -> executer(job, aLaFin));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Relance un job en échec ou interrompu, sous le même identifiant ; l'ingestion repart de son point de reprise,
+     * ou du début du fichier si seul son dépôt est connu (point de reprise perdu avec le schéma).
+     *
+     * @return vide si ni point de reprise ni dépôt ne sont connus pour ce job
+     * @throws IllegalStateException si le job tourne encore, est terminé, si son contenu est en cours d'import
+     *                               par un autre job ou si son fichier a disparu
+     */
+    public Optional<IngestionJob> reprendre(String id) {
+        IngestionJob courant = jobs.get(id);
+        if (courant != null && !courant.estTermine()) {
+            throw new IllegalStateException("Le job " + id + " est encore en cours");
+        }
+        Optional<IngestionCheckpoint> point = checkpointRepo.findFirstByIdJob(id);
+        if (point.isPresent()) {
+            IngestionCheckpoint checkpoint = point.get();
+            if (checkpoint.getStatut() == ImportFichier.Statut.TERMINE) {
+                throw new IllegalStateException("Le job " + id + " est déjà terminé");
+            }
+            if (importRegistry.estActif(checkpoint.getIdImport())) {
+                throw new ImportEnCoursException(checkpoint.getNomFichier());
+            }
+            Path chemin = Paths.get(checkpoint.getChemin());
+            if (!Files.exists(chemin)) {
+                throw new IllegalStateException("Fichier à reprendre introuvable : " + chemin);
+            }
+            return Optional.of(relancer(id, chemin, checkpoint.getNomFichier(), checkpoint.getTypeFichier()));
+        }
+        Path depot = depot(id);
+        Properties description = lireDescription(depot);
+        if (description == null || !Files.exists(depot)) {
+            return Optional.empty();
+        }
+        return Optional.of(relancer(id, depot, description.getProperty(NOM_FICHIER), description.getProperty(TYPE_FICHIER)));
+    }
+
+    private IngestionJob relancer(String id, Path chemin, String nomFichier, String typeFichier) {
+        if (chemin.startsWith(repertoireTravail)) {
+            decrire(chemin, id, nomFichier, typeFichier, IngestionJob.Statut.EN_COURS);
+        }
+        return soumettre(id, chemin, nomFichier, typeFichier, null, this::cloturerDepot);
+    }
+
+    /**
+     * Relance les dépôts décrits EN_COURS, c'est-à-dire interrompus par l'arrêt de l'application.
+     * L'état est lu dans le répertoire de travail, pas en base : le schéma peut avoir été recréé au démarrage.
+     * L'ingestion reprend au point de reprise de son contenu s'il existe encore, sinon au début du fichier.
+     * Les fichiers des répertoires de réception sont repris par leur surveillance, pas ici.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reprendreJobsInterrompus() {
+        for (Path depot : depots()) {
+            Properties description = lireDescription(depot);
+            if (description == null || !IngestionJob.Statut.EN_COURS.name().equals(description.getProperty(STATUT))) {
+                continue;
+            }
+            String nomFichier = description.getProperty(NOM_FICHIER);
+            try {
+                soumettre(description.getProperty(ID), depot, nomFichier, description.getProperty(TYPE_FICHIER), null,
+                        this::cloturerDepot);
+                System.out.println("🔄 Reprise de l'ingestion " + nomFichier);
+            } catch (RejectedExecutionException e) {
+                System.err.println("❌ File d'ingestion pleine, reprise différée de " + nomFichier);
+            }
+        }
+    }
+
+    /**
+     * Supprime les dépôts des jobs en échec non repris au-delà de la rétention, ainsi que les dépôts sans description.
+     */
+    @Scheduled(fixedDelayString = "${ruya.ingestion.reprise-purge-ms:3600000}")
+    public void purgerDepotsEnEchec() {
+        FileTime limite = FileTime.from(Instant.now().minus(Duration.ofHours(repriseRetentionHeures)));
+        for (Path depot : depots()) {
+            Properties description = lireDescription(depot);
+            if (description != null && !IngestionJob.Statut.ECHEC.name().equals(description.getProperty(STATUT))) {
+                continue;
+            }
+            IngestionJob job = description != null ? jobs.get(description.getProperty(ID)) : null;
+            if (job != null && !job.estTermine()) {
+                continue;
+            }
+            try {
+                // la description est réécrite à chaque changement d'état : sa date est celle de l'échec
+                Path reference = description != null ? description(depot) : depot;
+                if (Files.getLastModifiedTime(reference).compareTo(limite) < 0) {
+                    supprimerDepot(depot);
+                }
+            } catch (IOException e) {
+                System.err.println("❌ Impossible de lire la date du dépôt " + depot + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public Optional<IngestionJob> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public List<IngestionJob> getJobs() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing(IngestionJob::getDateSoumission).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Lignes mises en quarantaine par l'import du job, dans l'ordre du fichier.
+     *
+     * @return vide si le job n'a jamais ouvert d'import
+     */
+    public Optional<List<LigneQuarantaineDTO>> getQuarantaine(String id, int limite) {
+        return checkpointRepo.findFirstByIdJob(id)
+                .map(checkpoint -> ligneQuarantaineRepo
+                        .findByIdImportOrderByNumeroLigne(checkpoint.getIdImport(), PageRequest.of(0, limite))
+                        .stream()
+                        .map(ligne -> new LigneQuarantaineDTO(ligne.getNumeroLigne(), ligne.getOffsetOctets(),
+                                new String(ligne.getContenu(), StandardCharsets.ISO_8859_1), ligne.getRaison()))
+                        .collect(Collectors.toList()));
+    }
+
+    public IngestionJobDTO toDto(IngestionJob job) {
+        IngestionStats stats = job.getStats();
+        IngestionJobDTO dto = new IngestionJobDTO();
+        dto.setId(job.getId());
+        dto.setNomFichier(job.getNomFichier());
+        dto.setTypeFichier(job.getTypeFichier());
+        dto.setStatut(job.getStatut().name());
+        dto.setMessage(job.getMessage());
+        dto.setLignesLues(stats.getLignesLues());
+        dto.setLignesPersistees(stats.getLignesPersistees());
+        dto.setErreurs(stats.getErreurs());
+        dto.setResumeErreurs(stats.getRejetsParRaison());
+        dto.setLignesIgnorees(stats.getLignesIgnorees());
+        dto.setDoublons(stats.getDoublons());
+        dto.setDejaImporte(stats.isDejaImporte());
+        dto.setLigneReprise(stats.getLigneReprise());
+        dto.setOctetsLus(stats.getOctetsLus());
+        dto.setOctetsTotal(stats.getOctetsTotal());
+        dto.setDateSoumission(job.getDateSoumission());
+        dto.setDateDebut(job.getDateDebut());
+        dto.setDateFin(job.getDateFin());
+
+        double secondes = job.getSecondesEcoulees();
+        long total = stats.getOctetsTotal();
+        long lus = stats.getOctetsLus();
+        dto.setProgression(total > 0 ? Math.min(100.0, lus * 100.0 / total) : (job.estTermine() ? 100.0 : 0.0));
+        dto.setLignesParSeconde(secondes > 0 ? stats.getLignesPersistees() / secondes : 0.0);
+        if (job.estTermine()) {
+            dto.setEtaSecondes(0L);
+        } else if (secondes > 0 && lus > 0 && total > 0) {
+            double octetsParSeconde = lus / secondes;
+            dto.setEtaSecondes(Math.round((total - lus) / octetsParSeconde));
+        }
+        return dto;
+    }
+
+    private void executer(IngestionJob job, Consumer<IngestionJob> aLaFin) {
+        job.demarrer();
+        try {
+            IngestionStats stats = traitementPipeline.executer(job);
+            job.terminer(IngestionJob.Statut.TERMINE, stats.isDejaImporte()
+                    ? "Fichier déjà importé, ignoré"
+                    : stats.getErreurs() > 0
+                    ? "Fichier traité, " + stats.getErreurs() + " ligne(s) en quarantaine"
+                    : stats.getDoublons() > 0
+                    ? "Fichier traité, " + stats.getDoublons() + " ligne(s) en double ignorée(s)"
+                    : "Fichier traité avec succès");
+        } catch (RuntimeException e) {
+            System.err.println("❌ Erreur lors de l'ingestion du fichier " + job.getNomFichier() + ": " + e.getMessage());
+            job.terminer(IngestionJob.Statut.ECHEC, e.getMessage());
+        } finally {
+            if (aLaFin != null) {
+                aLaFin.accept(job);
+            }
+        }
+    }
+
+    private void purgerJobsTermines() {
+        LocalDateTime limite = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.estTermine() && job.getDateFin().isBefore(limite));
+    }
+
+    /**
+     * Fin d'un job : un dépôt traité est supprimé, un dépôt en échec est conservé et décrit ECHEC pour sa reprise.
+     */
+    private void cloturerDepot(IngestionJob job) {
+        Path depot = job.getChemin();
+        if (!depot.startsWith(repertoireTravail)) {
+            return;
+        }
+        if (job.getStatut() == IngestionJob.Statut.TERMINE) {
+            supprimerDepot(depot);
+        } else {
+            decrire(depot, job.getId(), job.getNomFichier(), job.getTypeFichier(), job.getStatut());
+        }
+    }
+
+    private Path depot(String id) {
+        return repertoireTravail.resolve(PREFIXE_DEPOT + id + SUFFIXE_DEPOT);
+    }
+
+    private static Path description(Path depot) {
+        return depot.resolveSibling(depot.getFileName() + SUFFIXE_DESCRIPTION);
+    }
+
+    private List<Path> depots() {
+        if (!Files.isDirectory(repertoireTravail)) {
+            return List.of();
+        }
+        try (Stream<Path> fichiers = Files.list(repertoireTravail)) {
+            return fichiers.filter(f -> {
+                String nom = f.getFileName().toString();
+                return nom.startsWith(PREFIXE_DEPOT) && nom.endsWith(SUFFIXE_DEPOT);
+            }).collect(Collectors.toList());
+        } catch (IOException e) {
+            System.err.println("❌ Impossible de lister " + repertoireTravail + ": " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Écrit à côté du dépôt ce qu'il faut pour le relancer sans la base : job, fichier, layout et état.
+     */
+    private static void decrire(Path depot, String id, String nomFichier, String typeFichier, IngestionJob.Statut statut) {
+        Properties description = new Properties();
+        description.setProperty(ID, id);
+        description.setProperty(STATUT, statut.name());
+        if (nomFichier != null) {
+            description.setProperty(NOM_FICHIER, nomFichier);
+        }
+        if (typeFichier != null) {
+            description.setProperty(TYPE_FICHIER, typeFichier);
+        }
+        try (Writer out = Files.newBufferedWriter(description(depot), StandardCharsets.UTF_8)) {
+            description.store(out, null);
+        } catch (IOException e) {
+            System.err.println("❌ Impossible de décrire le dépôt " + depot + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return la description du dépôt, ou null s'il n'en a pas
+     */
+    private static Properties lireDescription(Path depot) {
+        Path fichier = description(depot);
+        if (!Files.exists(fichier)) {
+            return null;
+        }
+        Properties description = new Properties();
+        try (Reader in = Files.newBufferedReader(fichier, StandardCharsets.UTF_8)) {
+            description.load(in);
+        } catch (IOException e) {
+            System.err.println("❌ Description illisible pour le dépôt " + depot + ": " + e.getMessage());
+            return null;
+        }
+        return description.getProperty(ID) != null ? description : null;
+    }
+
+    private static void supprimerDepot(Path depot) {
+        supprimer(depot);
+        supprimer(description(depot));
+    }
+
+    private static void supprimer(Path fichier) {
+        try {
+            Files.deleteIfExists(fichier);
+        } catch (IOException e) {
+            System.err.println("❌ Impossible de supprimer " + fichier + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void arreter() {
+        executeur.shutdownNow();
+    }
+}
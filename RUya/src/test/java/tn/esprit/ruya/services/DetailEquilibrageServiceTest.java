@@ -0,0 +1,66 @@
+package tn.esprit.ruya.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DetailEquilibrageServiceTest {
+
+    // triées par montant décroissant, comme les lit detailler ; 2 et 3 ont le même montant
+    private static final List<DetailEquilibrageService.Ligne> LIGNES = List.of(
+            ligne(1, 500),
+            ligne(2, 300),
+            ligne(3, 300),
+            ligne(4, 200),
+            ligne(5, 100));
+
+    private static DetailEquilibrageService.Ligne ligne(long id, long millimes) {
+        return new DetailEquilibrageService.Ligne("CARTHAGO", id, "CHQ" + id, millimes);
+    }
+
+    private static List<List<Long>> ids(List<DetailEquilibrageService.Ligne> lignes, long cible,
+                                        int min, int max, int limite) {
+        return DetailEquilibrageService.combiner(lignes, cible, min, max, limite).stream()
+                .map(c -> c.stream().map(DetailEquilibrageService.Ligne::id).toList())
+                .toList();
+    }
+
+    @Test
+    void combinerTrouveLesLignesSeulesPuisLesPaires() {
+        assertEquals(List.of(List.of(2L), List.of(3L), List.of(4L, 5L)), ids(LIGNES, 300, 1, 3, 10));
+    }
+
+    @Test
+    void combinerTrouveLesPairesEtTriplesSansReutiliserUneLigne() {
+        assertEquals(List.of(List.of(1L, 5L), List.of(2L, 3L), List.of(2L, 4L, 5L), List.of(3L, 4L, 5L)),
+                ids(LIGNES, 600, 1, 3, 10));
+    }
+
+    @Test
+    void combinerNeFormePasUnePaireAvecUneSeuleLigne() {
+        assertEquals(List.of(), ids(List.of(ligne(1, 300), ligne(2, 100)), 600, 2, 2, 10));
+    }
+
+    @Test
+    void combinerRespecteLaTailleDemandee() {
+        assertEquals(List.of(List.of(1L, 5L), List.of(2L, 3L)), ids(LIGNES, 600, 2, 2, 10));
+        assertEquals(List.of(List.of(2L, 4L, 5L), List.of(3L, 4L, 5L)), ids(LIGNES, 600, 3, 3, 10));
+        assertEquals(List.of(List.of(2L), List.of(3L)), ids(LIGNES, 300, 1, 1, 10));
+    }
+
+    @Test
+    void combinerSArreteALaLimite() {
+        assertEquals(List.of(List.of(2L)), ids(LIGNES, 300, 1, 3, 1));
+        assertEquals(List.of(List.of(1L, 5L), List.of(2L, 3L)), ids(LIGNES, 600, 1, 3, 2));
+        assertEquals(List.of(List.of(1L, 5L), List.of(2L, 3L), List.of(2L, 4L, 5L)), ids(LIGNES, 600, 1, 3, 3));
+    }
+
+    @Test
+    void combinerSansSommeExacte() {
+        assertEquals(List.of(), ids(LIGNES, 50, 1, 3, 10));
+        assertEquals(List.of(), ids(LIGNES, 1_200, 1, 3, 10));
+        assertEquals(List.of(), ids(List.of(), 300, 1, 3, 10));
+    }
+}
@@ -0,0 +1,155 @@
+package tn.esprit.ruya.traitement_fichier.layout;
+
+import org.junit.jupiter.api.Test;
+import tn.esprit.ruya.traitement_fichier.parser.ParseLigneException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChampCodecTest {
+
+    private static ChampCodec codec(String spec) {
+        return ChampCodec.compiler(ChampDescriptor.parse(spec));
+    }
+
+    private static ByteBuffer octets(String texte) {
+        return ByteBuffer.wrap(texte.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static String lire(ByteBuffer buf) {
+        return new String(buf.array(), StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    void compilerChoisitLeCodecSelonTypeEtConvertisseur() {
+        assertInstanceOf(ChampCodec.Entier.class, codec("n:0:3:ENTIER"));
+        assertInstanceOf(ChampCodec.MontantDecimal.class, codec("m:0:8:MONTANT"));
+        assertInstanceOf(ChampCodec.MontantDecimal.class, codec("m:0:8:MONTANT:decimal=3"));
+        assertInstanceOf(ChampCodec.MontantImplicite.class, codec("m:0:8:MONTANT:implicite"));
+        assertInstanceOf(ChampCodec.Date.class, codec("d:0:8:DATE"));
+        assertInstanceOf(ChampCodec.Texte.class, codec("t:0:5:TEXTE:trim"));
+        assertInstanceOf(ChampCodec.TexteMajuscules.class, codec("t:0:5:TEXTE:majuscules"));
+    }
+
+    @Test
+    void compilerRejetteLesConvertisseursInvalides() {
+        assertThrows(IllegalArgumentException.class, () -> codec("m:0:8:MONTANT:arrondi"));
+        assertThrows(IllegalArgumentException.class, () -> codec("t:0:5:TEXTE:minuscules"));
+        assertThrows(IllegalArgumentException.class, () -> codec("m:0:8:MONTANT:decimal=7"));
+        assertThrows(IllegalArgumentException.class, () -> codec("m:0:8:MONTANT:implicite=-1"));
+        assertThrows(IllegalArgumentException.class, () -> codec("d:0:6:DATE"));
+        assertThrows(IllegalArgumentException.class, () -> codec("d:0:8:DATE:aaaaMMjj"));
+    }
+
+    @Test
+    void echelleParDefautEtDeclaree() {
+        assertEquals(2, codec("m:0:8:MONTANT").echelle());
+        assertEquals(3, codec("m:0:8:MONTANT:decimal=3").echelle());
+        assertEquals(2, codec("m:0:8:MONTANT:implicite").echelle());
+        assertEquals(3, codec("m:0:8:MONTANT:implicite=3").echelle());
+        assertEquals(0, codec("n:0:3:ENTIER").echelle());
+    }
+
+    @Test
+    void montantImpliciteRendLesChiffresBruts() {
+        // "00000123450" en millimes : 123,450 DT
+        ChampCodec montant = codec("m:2:11:MONTANT:implicite=3");
+        assertEquals(123450, montant.decoder(octets("XX00000123450YY"), 0));
+        assertEquals(-5, montant.decoder(octets("XX-0000000005"), 0));
+        assertThrows(ParseLigneException.class, () -> montant.decoder(octets("XX0000012.450"), 0));
+        assertThrows(ParseLigneException.class, () -> montant.decoder(octets("XX           "), 0));
+    }
+
+    @Test
+    void montantDecimalMetALEchelle() {
+        ChampCodec montant = codec("m:0:8:MONTANT:decimal=3");
+        assertEquals(1234500, montant.decoder(octets("  1234.5"), 0));
+        assertEquals(1234567, montant.decoder(octets("1234,567"), 0));
+        assertThrows(ParseLigneException.class, () -> montant.decoder(octets("1.234567"), 0));
+    }
+
+    @Test
+    void decoderTientCompteDuDebutDeLigne() {
+        ChampCodec entier = codec("n:1:3:ENTIER");
+        ByteBuffer buf = octets("x001\ny042\n");
+        assertEquals(1, entier.decoder(buf, 0));
+        assertEquals(42, entier.decoder(buf, 5));
+    }
+
+    @Test
+    void dateSelonLeMotif() {
+        ByteBuffer buf = octets("20240229|29022024|240229");
+        assertEquals(LocalDate.of(2024, 2, 29).toEpochDay(), codec("d:0:8:DATE").decoder(buf, 0));
+        assertEquals(LocalDate.of(2024, 2, 29).toEpochDay(), codec("d:9:8:DATE:ddMMyyyy").decoder(buf, 0));
+        assertEquals(LocalDate.of(2024, 2, 29).toEpochDay(), codec("d:18:6:DATE:yyMMdd").decoder(buf, 0));
+    }
+
+    @Test
+    void dateRejetteLesValeursInvalides() {
+        ChampCodec date = codec("d:0:8:DATE:ddMMyyyy");
+        assertThrows(ParseLigneException.class, () -> date.decoder(octets("30022024"), 0));
+        assertThrows(ParseLigneException.class, () -> date.decoder(octets("01132024"), 0));
+        assertThrows(ParseLigneException.class, () -> date.decoder(octets("0102 024"), 0));
+    }
+
+    @Test
+    void encoderPuisDecoderRestitueLaValeur() {
+        ValeursLigne valeurs = new ValeursLigne(4);
+        valeurs.setLong(0, 123450);
+        valeurs.setLong(1, -1250);
+        valeurs.setLong(2, LocalDate.of(2025, 1, 7).toEpochDay());
+        valeurs.setTexte(3, "abcdefgh");
+
+        ChampCodec implicite = codec("m:0:8:MONTANT:implicite=3");
+        ChampCodec decimal = codec("m:8:8:MONTANT:decimal=2");
+        ChampCodec date = codec("d:16:6:DATE:ddMMyy");
+        ChampCodec texte = codec("t:22:5:TEXTE:majuscules");
+
+        ByteBuffer out = ByteBuffer.allocate(27);
+        implicite.encoder(out, 0, valeurs, 0);
+        decimal.encoder(out, 0, valeurs, 1);
+        date.encoder(out, 0, valeurs, 2);
+        texte.encoder(out, 0, valeurs, 3);
+
+        assertEquals("00123450  -12.50070125ABCDE", lire(out));
+        assertEquals(123450, implicite.decoder(out, 0));
+        assertEquals(-1250, decimal.decoder(out, 0));
+        assertEquals(valeurs.valeurs[2], date.decoder(out, 0));
+        assertEquals("ABCDE", texte.texte(out, 0));
+    }
+
+    @Test
+    void ecrireNombreCadreADroite() {
+        ByteBuffer out = ByteBuffer.allocate(6);
+        ChampCodec.ecrireNombre(out, 0, 6, -42, 0, (byte) '0');
+        assertEquals("-00042", lire(out));
+        ChampCodec.ecrireNombre(out, 0, 6, 5, 2, (byte) ' ');
+        assertEquals("  0.05", lire(out));
+        ChampCodec.ecrireNombre(out, 0, 6, 0, 0, (byte) '0');
+        assertEquals("000000", lire(out));
+    }
+
+    @Test
+    void ecrireNombreRejetteUneValeurTropLongue() {
+        ByteBuffer out = ByteBuffer.allocate(4);
+        assertThrows(IllegalArgumentException.class, () -> ChampCodec.ecrireNombre(out, 0, 4, 12345, 0, (byte) '0'));
+        assertThrows(IllegalArgumentException.class, () -> ChampCodec.ecrireNombre(out, 0, 4, -1234, 0, (byte) '0'));
+        assertThrows(IllegalArgumentException.class, () -> ChampCodec.ecrireNombre(out, 0, 4, 1000, 2, (byte) ' '));
+    }
+
+    @Test
+    void ecrireTexteCompleteEtTronque() {
+        ByteBuffer out = ByteBuffer.allocate(5);
+        ChampCodec.ecrireTexte(out, 0, 5, "ab");
+        assertEquals("ab   ", lire(out));
+        ChampCodec.ecrireTexte(out, 0, 5, "abcdefg");
+        assertEquals("abcde", lire(out));
+        ChampCodec.ecrireTexte(out, 0, 5, null);
+        assertEquals("     ", lire(out));
+    }
+}
@@ -0,0 +1,120 @@
+package tn.esprit.ruya.traitement_fichier.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FixedWidthBytesTest {
+
+    private static ByteBuffer octets(String texte) {
+        return ByteBuffer.wrap(texte.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static long montant(String texte, int echelle) {
+        return FixedWidthBytes.parseMontant(octets(texte), 0, texte.length(), echelle);
+    }
+
+    private static long date(String texte) {
+        return FixedWidthBytes.parseDateYyyyMMdd(octets(texte), 0, texte.length());
+    }
+
+    @Test
+    void parseLongTolereBlancsEtSigne() {
+        assertEquals(42, FixedWidthBytes.parseLong(octets("  42 "), 0, 5));
+        assertEquals(-7, FixedWidthBytes.parseLong(octets("\t-7"), 0, 3));
+        assertEquals(7, FixedWidthBytes.parseLong(octets("+007"), 0, 4));
+    }
+
+    @Test
+    void parseLongRespecteLesBornesDuChamp() {
+        ByteBuffer buf = octets("AB12345CD");
+        assertEquals(345, FixedWidthBytes.parseLong(buf, 4, 7));
+    }
+
+    @Test
+    void parseLongRejette() {
+        assertThrows(ParseLigneException.class, () -> FixedWidthBytes.parseLong(octets("    "), 0, 4));
+        assertThrows(ParseLigneException.class, () -> FixedWidthBytes.parseLong(octets(" - "), 0, 3));
+        assertThrows(ParseLigneException.class, () -> FixedWidthBytes.parseLong(octets("12a4"), 0, 4));
+        assertThrows(ParseLigneException.class, () -> FixedWidthBytes.parseLong(octets("1 2"), 0, 3));
+        assertThrows(ParseLigneException.class,
+                () -> FixedWidthBytes.parseLong(octets("9223372036854775808"), 0, 19));
+        assertEquals(Long.MAX_VALUE, FixedWidthBytes.parseLong(octets("9223372036854775807"), 0, 19));
+    }
+
+    @Test
+    void parseIntRejetteHorsLimites() {
+        assertEquals(Integer.MAX_VALUE, FixedWidthBytes.parseInt(octets("2147483647"), 0, 10));
+        assertThrows(ParseLigneException.class, () -> FixedWidthBytes.parseInt(octets("2147483648"), 0, 10));
+    }
+
+    @Test
+    void parseMontantCompleteLesDecimalesImplicites() {
+        assertEquals(12340, montant("123.4", 2));
+        assertEquals(12345, montant("123,45", 2));
+        assertEquals(12300, montant("123", 2));
+        assertEquals(12300, montant("123.", 2));
+        assertEquals(50, montant(".5", 2));
+        assertEquals(123450, montant("  123.450 ", 3));
+        assertEquals(-1050, montant("-10.5", 2));
+        assertEquals(7, montant("7", 0));
+    }
+
+    @Test
+    void parseMontantRejette() {
+        assertThrows(ParseLigneException.class, () -> montant("   ", 2));
+        assertThrows(ParseLigneException.class, () -> montant("-", 2));
+        assertThrows(ParseLigneException.class, () -> montant(".", 2));
+        assertThrows(ParseLigneException.class, () -> montant("1.2.3", 2));
+        assertThrows(ParseLigneException.class, () -> montant("1,2.3", 2));
+        assertThrows(ParseLigneException.class, () -> montant("12.345", 2));
+        assertThrows(ParseLigneException.class, () -> montant("1.5", 0));
+        assertThrows(ParseLigneException.class, () -> montant("12x.5", 2));
+        assertThrows(ParseLigneException.class, () -> montant("9223372036854775808", 0));
+        // la mise à l'échelle elle-même peut déborder
+        assertThrows(ParseLigneException.class, () -> montant("922337203685477581", 2));
+    }
+
+    @Test
+    void parseDateDonneLeJourEpoch() {
+        assertEquals(LocalDate.of(2024, 2, 29).toEpochDay(), date("20240229"));
+        assertEquals(LocalDate.of(1970, 1, 1).toEpochDay(), date("19700101"));
+        assertEquals(LocalDate.of(1969, 12, 31).toEpochDay(), date("19691231"));
+        assertEquals(LocalDate.of(2000, 2, 29).toEpochDay(), date("20000229"));
+        assertEquals(LocalDate.of(2025, 12, 31).toEpochDay(), date("20251231"));
+    }
+
+    @Test
+    void epochDayCorrespondALocalDate() {
+        for (LocalDate d = LocalDate.of(1899, 12, 25); d.isBefore(LocalDate.of(2101, 1, 5)); d = d.plusDays(1)) {
+            assertEquals(d.toEpochDay(), FixedWidthBytes.epochDay(d.getYear(), d.getMonthValue(), d.getDayOfMonth()));
+        }
+    }
+
+    @Test
+    void parseDateRejette() {
+        assertThrows(ParseLigneException.class, () -> date("2024021"));
+        assertThrows(ParseLigneException.class, () -> date("2024 229"));
+        assertThrows(ParseLigneException.class, () -> date("20241301"));
+        assertThrows(ParseLigneException.class, () -> date("20240001"));
+        assertThrows(ParseLigneException.class, () -> date("20240230"));
+        assertThrows(ParseLigneException.class, () -> date("20230229"));
+        assertThrows(ParseLigneException.class, () -> date("19000229"));
+        assertThrows(ParseLigneException.class, () -> date("20240431"));
+        assertThrows(ParseLigneException.class, () -> date("20240100"));
+    }
+
+    @Test
+    void texteRetireLesBlancsDeBordure() {
+        ByteBuffer buf = octets("xx  Café  yy");
+        assertEquals("Café", FixedWidthBytes.texte(buf, 2, 10));
+        assertEquals("", FixedWidthBytes.texte(octets("    "), 0, 4));
+        assertTrue(FixedWidthBytes.estVide(octets(" \t "), 0, 3));
+    }
+}
@@ -0,0 +1,144 @@
+package tn.esprit.ruya.traitement_fichier.parser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedBlockReaderTest {
+
+    @TempDir
+    Path dossier;
+
+    private Path fichier(String contenu) throws IOException {
+        return Files.write(dossier.resolve("lignes.txt"), contenu.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static String texte(BlocLignes bloc) {
+        ByteBuffer donnees = bloc.getDonnees();
+        byte[] octets = new byte[donnees.remaining()];
+        donnees.duplicate().get(octets);
+        return new String(octets, StandardCharsets.ISO_8859_1);
+    }
+
+    private static List<BlocLignes> blocs(MappedBlockReader reader) throws IOException {
+        List<BlocLignes> blocs = new ArrayList<>();
+        for (BlocLignes bloc = reader.next(); bloc != null; bloc = reader.next()) {
+            blocs.add(bloc);
+        }
+        return blocs;
+    }
+
+    @Test
+    void blocsCoupesSurLesFinsDeLigne() throws IOException {
+        String contenu = "aaaa\nbbbb\ncccc\ndddd\n";
+        try (MappedBlockReader reader = new MappedBlockReader(fichier(contenu), 12)) {
+            List<BlocLignes> blocs = blocs(reader);
+            assertEquals(List.of("aaaa\nbbbb\n", "cccc\ndddd\n"), blocs.stream().map(MappedBlockReaderTest::texte).toList());
+            assertEquals(0, blocs.get(0).getOffsetDebut());
+            assertEquals(10, blocs.get(0).getOffsetFin());
+            assertEquals(10, blocs.get(1).getOffsetDebut());
+            assertEquals(contenu.length(), blocs.get(1).getOffsetFin());
+            assertEquals(contenu.length(), reader.getPosition());
+        }
+    }
+
+    @Test
+    void blocExactementSurUneFinDeLigne() throws IOException {
+        try (MappedBlockReader reader = new MappedBlockReader(fichier("aaaa\nbbbb\ncccc\n"), 5)) {
+            assertEquals(List.of("aaaa\n", "bbbb\n", "cccc\n"), blocs(reader).stream().map(MappedBlockReaderTest::texte).toList());
+        }
+    }
+
+    @Test
+    void ligneTropLongueEtendLeBloc() throws IOException {
+        try (MappedBlockReader reader = new MappedBlockReader(fichier("aaaaaaaaaa\nb\ncc\n"), 4)) {
+            assertEquals(List.of("aaaaaaaaaa\n", "b\n", "cc\n"), blocs(reader).stream().map(MappedBlockReaderTest::texte).toList());
+        }
+    }
+
+    @Test
+    void derniereLigneSansSautDeLigne() throws IOException {
+        try (MappedBlockReader reader = new MappedBlockReader(fichier("aaaa\r\nbbbb\r\ncc"), 7)) {
+            List<BlocLignes> blocs = blocs(reader);
+            assertEquals(List.of("aaaa\r\n", "bbbb\r\n", "cc"), blocs.stream().map(MappedBlockReaderTest::texte).toList());
+            int lignes = 0;
+            for (BlocLignes bloc : blocs) {
+                lignes += bloc.parcourirLignes((buf, debut, fin, index) ->
+                        assertTrue(fin - debut == 4 || fin - debut == 2));
+            }
+            assertEquals(3, lignes);
+        }
+    }
+
+    @Test
+    void lignesBlanchesCompteesDansLaNumerotation() throws IOException {
+        try (MappedBlockReader reader = new MappedBlockReader(fichier("aaaa\n\n   \r\nbbbb\ncccc\n\n"), 12)) {
+            List<BlocLignes> blocs = blocs(reader);
+            assertEquals(List.of("aaaa\n\n   \r\n", "bbbb\ncccc\n\n"), blocs.stream().map(MappedBlockReaderTest::texte).toList());
+            List<String> numerotees = new ArrayList<>();
+            long lignesPrecedentes = 0;
+            for (BlocLignes bloc : blocs) {
+                long precedentes = lignesPrecedentes;
+                lignesPrecedentes += bloc.parcourirLignes((buf, debut, fin, index) -> {
+                    byte[] octets = new byte[fin - debut];
+                    buf.get(debut, octets);
+                    numerotees.add((precedentes + index + 1) + ":" + new String(octets, StandardCharsets.ISO_8859_1));
+                });
+            }
+            assertEquals(List.of("1:aaaa", "4:bbbb", "5:cccc"), numerotees);
+            assertEquals(6, lignesPrecedentes);
+        }
+    }
+
+    @Test
+    void derniereLigneSansSautDeLignePlusLongueQueLeBloc() throws IOException {
+        try (MappedBlockReader reader = new MappedBlockReader(fichier("aa\nbbbbbbbb"), 4)) {
+            assertEquals(List.of("aa\n", "bbbbbbbb"), blocs(reader).stream().map(MappedBlockReaderTest::texte).toList());
+        }
+    }
+
+    @Test
+    void reprendALaPositionDonnee() throws IOException {
+        try (MappedBlockReader reader = new MappedBlockReader(fichier("aaaa\nbbbb\ncccc\n"), 6)) {
+            BlocLignes premier = reader.next();
+            assertEquals("aaaa\n", texte(premier));
+            reader.positionner(premier.getOffsetFin() + 5);
+            BlocLignes suivant = reader.next();
+            assertEquals("cccc\n", texte(suivant));
+            assertEquals(10, suivant.getOffsetDebut());
+            assertNull(reader.next());
+
+            reader.positionner(0);
+            assertEquals("aaaa\n", texte(reader.next()));
+            assertThrows(IllegalArgumentException.class, () -> reader.positionner(-1));
+            assertThrows(IllegalArgumentException.class, () -> reader.positionner(reader.getTaille() + 1));
+        }
+    }
+
+    @Test
+    void fichierVide() throws IOException {
+        try (MappedBlockReader reader = new MappedBlockReader(fichier(""))) {
+            assertEquals(0, reader.getTaille());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void tailleDeBlocInvalide() throws IOException {
+        Path chemin = fichier("a\n");
+        assertThrows(IllegalArgumentException.class, () -> new MappedBlockReader(chemin, 0));
+        assertThrows(IllegalArgumentException.class, () -> new MappedBlockReader(chemin, -1));
+    }
+}
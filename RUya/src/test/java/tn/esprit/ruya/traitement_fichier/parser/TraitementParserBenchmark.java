@@ -0,0 +1,150 @@
+package tn.esprit.ruya.traitement_fichier.parser;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tn.esprit.ruya.traitement_fichier.layout.CompiledLayout;
+import tn.esprit.ruya.traitement_fichier.layout.DecodedRecord;
+import tn.esprit.ruya.traitement_fichier.layout.LayoutProperties;
+import tn.esprit.ruya.traitement_fichier.layout.LayoutRegistry;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare l'ancien parseLine (BufferedReader + substring/trim) au layout TRAITEMENT compilé, sur fichier projeté.
+ * Lancement : mvn test-compile puis exécuter main() avec le classpath de test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TraitementParserBenchmark {
+
+    @Param({"100000"})
+    private int lignes;
+
+    private Path fichier;
+    private CompiledLayout layout;
+    private int nombre;
+    private int nomFichier;
+    private int codeFichier;
+    private int typeFichier;
+    private int dateTraitement;
+    private int montant;
+    private int statut;
+
+    @Setup(Level.Trial)
+    public void genererFichier() throws IOException {
+        layout = new LayoutRegistry(new LayoutProperties()).getLayout(LayoutRegistry.LAYOUT_DEFAUT).orElseThrow();
+        nombre = layout.indexObligatoire("nombre");
+        nomFichier = layout.indexObligatoire("nomFichier");
+        codeFichier = layout.indexObligatoire("codeFichier");
+        typeFichier = layout.indexObligatoire("typeFichier");
+        dateTraitement = layout.indexObligatoire("dateTraitement");
+        montant = layout.indexObligatoire("montant");
+        statut = layout.indexObligatoire("statut");
+        fichier = Files.createTempFile("bench-traitement-", ".dat");
+        Random random = new Random(42);
+        String[] types = {"cheque", "effet", "virement", "prelev"};
+        try (BufferedWriter writer = Files.newBufferedWriter(fichier, StandardCharsets.ISO_8859_1)) {
+            for (int i = 0; i < lignes; i++) {
+                writer.write(String.format("%05d%-16s%-8s%-7s%s%11s%-2s%n",
+                        i % 100000,
+                        "fichier_" + (i % 500),
+                        "3" + random.nextInt(5),
+                        types[i % types.length],
+                        String.format("2025%02d%02d", 1 + random.nextInt(12), 1 + random.nextInt(28)),
+                        String.format("%.2f", random.nextInt(10_000_000) / 100.0).replace(',', '.'),
+                        "0" + random.nextInt(4)));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void supprimerFichier() throws IOException {
+        Files.deleteIfExists(fichier);
+    }
+
+    @Benchmark
+    public void ancienParseur(Blackhole bh) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(fichier, StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String idStr = line.substring(0, 5).trim();
+                String nomFichier = line.substring(5, 21).trim();
+                String codeFichier = line.substring(21, 29).trim();
+                String typeFichier = line.substring(29, 36).trim();
+                String dateStr = line.substring(36, 44).trim();
+                String montantStr = line.substring(44, 55).trim();
+                String codeStatut = line.substring(55, 57).trim();
+
+                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd");
+                bh.consume(Integer.parseInt(idStr));
+                bh.consume(LocalDate.parse(dateStr, formatter));
+                bh.consume(new BigDecimal(montantStr));
+                bh.consume(nomFichier);
+                bh.consume(codeFichier);
+                bh.consume(typeFichier);
+                bh.consume(codeStatut);
+            }
+        }
+    }
+
+    @Benchmark
+    public void parseurProjeteChampsNumeriques(Blackhole bh) throws IOException {
+        DecodedRecord record = layout.nouvelEnregistrement();
+        try (MappedBlockReader reader = new MappedBlockReader(fichier)) {
+            BlocLignes bloc;
+            while ((bloc = reader.next()) != null) {
+                bloc.parcourirLignes((buf, debut, fin, index) -> {
+                    layout.decoder(buf, debut, fin, record);
+                    bh.consume(record.getLong(nombre));
+                    bh.consume(record.getEpochDay(dateTraitement));
+                    bh.consume(record.getLong(montant));
+                });
+            }
+        }
+    }
+
+    @Benchmark
+    public void parseurProjeteAvecTextes(Blackhole bh) throws IOException {
+        DecodedRecord record = layout.nouvelEnregistrement();
+        try (MappedBlockReader reader = new MappedBlockReader(fichier)) {
+            BlocLignes bloc;
+            while ((bloc = reader.next()) != null) {
+                bloc.parcourirLignes((buf, debut, fin, index) -> {
+                    layout.decoder(buf, debut, fin, record);
+                    bh.consume(record.getLong(nombre));
+                    bh.consume(record.getEpochDay(dateTraitement));
+                    bh.consume(record.getLong(montant));
+                    bh.consume(record.getTexte(nomFichier));
+                    bh.consume(record.getTexte(codeFichier));
+                    bh.consume(record.getTexte(typeFichier));
+                    bh.consume(record.getTexte(statut));
+                });
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TraitementParserBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -1,7 +1,7 @@
 import { Injectable } from '@angular/core';
 import { HttpClient } from '@angular/common/http';
 import { BehaviorSubject, Observable } from 'rxjs';
-import { tap } from 'rxjs/operators';
+import { map, tap } from 'rxjs/operators';
 
 export interface Notification {
   id: number;
@@ -20,6 +20,13 @@ export interface Notification {
   icon: string;
 }
 
+// Page du fil de notifications de l'utilisateur (curseurSuivant null en fin de fil)
+export interface PageNotifications {
+  notifications: Notification[];
+  curseurSuivant: string | null;
+  nonLues: number;
+}
+
 @Injectable({
   providedIn: 'root'
 })
@@ -34,9 +41,16 @@ export class NotificationService {
 
   constructor(private http: HttpClient) {}
 
-  // Charger toutes les notifications
+  // Identifiant de l'utilisateur connecté : l'état lu est propre à chaque utilisateur
+  private get userId(): number | null {
+    const user = localStorage.getItem('user');
+    return user ? JSON.parse(user).id ?? null : null;
+  }
+
+  // Charger la première page des notifications de l'utilisateur
   loadNotifications(): Observable<Notification[]> {
-    return this.http.get<Notification[]>(this.baseUrl).pipe(
+    return this.http.get<PageNotifications>(this.baseUrl, { params: { userId: `${this.userId}` } }).pipe(
+      map(page => page.notifications),
       tap(notifications => {
         this.notificationsSubject.next(notifications);
         this.updateUnreadCount();
@@ -46,7 +60,8 @@ export class NotificationService {
 
   // Charger les notifications non lues
   loadNotificationsNonLues(): Observable<Notification[]> {
-    return this.http.get<Notification[]>(`${this.baseUrl}/non-lues`).pipe(
+    return this.http.get<PageNotifications>(`${this.baseUrl}/non-lues`, { params: { userId: `${this.userId}` } }).pipe(
+      map(page => page.notifications),
       tap(notifications => {
         console.log('🔍 DEBUG - Notifications non lues chargées:', notifications.length);
         this.notificationsSubject.next(notifications);
@@ -58,7 +73,7 @@ export class NotificationService {
   // Marquer une notification comme lue
   marquerCommeLue(notificationId: number): Observable<Notification> {
     console.log('🔍 DEBUG - Marquer notification comme lue:', notificationId);
-    return this.http.put<Notification>(`${this.baseUrl}/${notificationId}/marquer-lue`, {}).pipe(
+    return this.http.put<Notification>(`${this.baseUrl}/${notificationId}/marquer-lue`, {}, { params: { userId: `${this.userId}` } }).pipe(
       tap((updatedNotification) => {
         console.log('🔍 DEBUG - Notification marquée comme lue:', updatedNotification);
         // Mettre à jour le cache local
@@ -86,7 +101,7 @@ export class NotificationService {
   // Marquer toutes les notifications comme lues
   marquerToutesCommeLues(): Observable<void> {
     console.log('🔍 DEBUG - Marquer toutes les notifications comme lues');
-    return this.http.put<void>(`${this.baseUrl}/marquer-toutes-lues`, {}).pipe(
+    return this.http.put<void>(`${this.baseUrl}/marquer-toutes-lues`, {}, { params: { userId: `${this.userId}` } }).pipe(
       tap(() => {
         console.log('🔍 DEBUG - Toutes les notifications marquées comme lues');
         // Mettre à jour le cache local
@@ -113,7 +128,7 @@ export class NotificationService {
 
   // Obtenir le nombre de notifications non lues
   getUnreadCount(): Observable<number> {
-    return this.http.get<number>(`${this.baseUrl}/count-non-lues`);
+    return this.http.get<number>(`${this.baseUrl}/count-non-lues`, { params: { userId: `${this.userId}` } });
   }
 
   // Mettre à jour le compteur de notifications non lues